@@ -0,0 +1,73 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j.benchmark;
+
+import chunk4j.ChunkChopper;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of chopping data blobs into chunks, in both the copying and the zero-copy mode. Run with
+ * {@code -prof gc} to report the allocation rate, and with {@code -t} to vary the number of chopping threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class ChopBenchmark {
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    int payloadByteSize;
+
+    @Param({"1024", "65536", "1048576"})
+    int chunkCapacity;
+
+    byte[] payload;
+    ChunkChopper chopper;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadByteSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        chopper = ChunkChopper.ofByteSize(chunkCapacity);
+    }
+
+    @Benchmark
+    public void chop(Blackhole blackhole) {
+        blackhole.consume(chopper.chop(payload));
+    }
+
+    @Benchmark
+    public void chopByteBuffer(Blackhole blackhole) {
+        blackhole.consume(chopper.chop(ByteBuffer.wrap(payload)));
+    }
+}
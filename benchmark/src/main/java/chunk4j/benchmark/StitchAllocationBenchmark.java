@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j.benchmark;
+
+import chunk4j.Chunk;
+import chunk4j.ChunkChopper;
+import chunk4j.ChunkStitcher;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the garbage allocated by stitching chunks, through the Optional-returning and the listener-delivering
+ * stitch API. Each invocation stitches one group of a fixed payload byte size, chopped into more or fewer chunks by the
+ * chunk capacity. Since a group's buffer and bookkeeping are allocated once per group, a {@code gc.alloc.rate.norm}
+ * that does not grow with the number of chunks per group shows that adding a chunk which does not complete its group
+ * allocates nothing. Run with {@code -prof gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StitchAllocationBenchmark {
+
+    @Param({"65536"})
+    int payloadByteSize;
+
+    @Param({"64", "1024", "8192"})
+    int chunkCapacity;
+
+    List<Chunk> chunks;
+    ChunkStitcher stitcher;
+    ChunkStitcher listeningStitcher;
+    byte[] lastStitched;
+
+    @Setup
+    public void setUp() {
+        byte[] payload = new byte[payloadByteSize];
+        ThreadLocalRandom.current().nextBytes(payload);
+        chunks = ChunkChopper.ofByteSize(chunkCapacity).chop(payload);
+        stitcher = new ChunkStitcher.Builder().build();
+        listeningStitcher = new ChunkStitcher.Builder()
+                .stitchListener((groupId, originalBytes) -> lastStitched = originalBytes)
+                .build();
+    }
+
+    @Benchmark
+    public void stitch(Blackhole blackhole) {
+        for (Chunk chunk : chunks) {
+            blackhole.consume(stitcher.stitch(chunk));
+        }
+    }
+
+    @Benchmark
+    public byte[] stitchToListener(Blackhole blackhole) {
+        for (Chunk chunk : chunks) {
+            blackhole.consume(listeningStitcher.stitchToListener(chunk));
+        }
+        return lastStitched;
+    }
+}
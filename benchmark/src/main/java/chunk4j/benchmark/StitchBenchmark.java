@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j.benchmark;
+
+import chunk4j.Chunk;
+import chunk4j.ChunkChopper;
+import chunk4j.ChunkStitcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of stitching chunk groups back into data blobs, for chunks arriving in order, shuffled, or
+ * shuffled with duplicates. Each benchmark thread stitches its own group into the shared stitcher; run with {@code -t}
+ * to vary the number of threads, and with {@code -prof gc} to report the allocation rate. Logging is off in the forked
+ * JVM, so that the warning logged per duplicate chunk is not measured along with the stitching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+        value = 1,
+        jvmArgsAppend = {"-Xms6g", "-Xmx6g", "-Delf4j.service.provider.fqcn=elf4j.util.NoopLogServiceProvider"})
+public class StitchBenchmark {
+
+    @Param({"1024", "1048576", "67108864", "1073741824"})
+    int payloadByteSize;
+
+    @Param({"1024", "65536", "1048576"})
+    int chunkCapacity;
+
+    @Param({"IN_ORDER", "SHUFFLED", "DUPLICATED"})
+    ArrivalOrder arrivalOrder;
+
+    ChunkStitcher stitcher;
+
+    @Setup
+    public void setUp() {
+        stitcher = new ChunkStitcher.Builder().build();
+    }
+
+    @Benchmark
+    public void stitch(ThreadChunks threadChunks, Blackhole blackhole) {
+        for (Chunk chunk : threadChunks.chunks) {
+            blackhole.consume(stitcher.stitch(chunk));
+        }
+    }
+
+    /** The order in which the chunks of a group arrive at the stitcher. */
+    public enum ArrivalOrder {
+        IN_ORDER,
+        SHUFFLED,
+        /** Shuffled, with every chunk but the group's last arriving twice. */
+        DUPLICATED
+    }
+
+    /**
+     * The chunks of one group, in arrival order, stitched by one benchmark thread. Since a group is removed from the
+     * stitcher once complete, the same chunks are stitched anew on every invocation.
+     */
+    @State(Scope.Thread)
+    public static class ThreadChunks {
+        List<Chunk> chunks;
+
+        @Setup
+        public void setUp(StitchBenchmark benchmark) {
+            byte[] payload = new byte[benchmark.payloadByteSize];
+            ThreadLocalRandom.current().nextBytes(payload);
+            List<Chunk> group = ChunkChopper.ofByteSize(benchmark.chunkCapacity).chop(payload);
+            switch (benchmark.arrivalOrder) {
+                case IN_ORDER:
+                    chunks = group;
+                    break;
+                case SHUFFLED:
+                    chunks = new ArrayList<>(group);
+                    Collections.shuffle(chunks);
+                    break;
+                case DUPLICATED:
+                    Chunk last = group.get(group.size() - 1);
+                    chunks = new ArrayList<>(group.subList(0, group.size() - 1));
+                    chunks.addAll(group.subList(0, group.size() - 1));
+                    Collections.shuffle(chunks);
+                    chunks.add(last);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown arrival order: " + benchmark.arrivalOrder);
+            }
+        }
+    }
+}
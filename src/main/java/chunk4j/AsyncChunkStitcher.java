@@ -0,0 +1,338 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import elf4j.Logger;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * The AsyncChunkStitcher class stitches chunks without making the thread delivering a group's last chunk also process
+ * the restored data. Each chunk is copied into its group by the wrapped stitcher on the calling thread, which then
+ * returns right away; the restored data of a completed group is handed over on a configurable executor, to a
+ * {@link StitchListener}, and to the {@link CompletableFuture} of the group, if any caller is waiting on it.
+ *
+ * <p>A caller gets the future of a group by its ID from {@link #completion(UUID)}. The future is completed
+ * exceptionally if the group is not stitched within the configured max wait time, if the wrapped stitcher evicts the
+ * group, or discards it as corrupt. Futures are completed on the executor either way, so that no dependent stage runs
+ * on a stitching thread, or under a lock of the wrapped stitcher's cache while it evicts a group. The IDs of recently
+ * completed groups are remembered, so that a future requested after its group completed fails right away rather than
+ * wait in vain; the restored data itself is not retained. It is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class AsyncChunkStitcher {
+    private static final Duration DEFAULT_MAX_WAIT_TIME = Duration.ofMinutes(5);
+    private static final int DEFAULT_TOMBSTONE_CAPACITY = 16 * 1024;
+    private static final Logger logger = Logger.instance();
+    private final Stitcher stitcher;
+    private final Executor executor;
+    private final Duration maxWaitTime;
+
+    @Nullable private final StitchListener listener;
+
+    private final Cache<UUID, CompletableFuture<byte[]>> completions;
+    private final TombstoneSet tombstones;
+
+    /**
+     * Private constructor for the AsyncChunkStitcher class. It is used by the Builder class to create a new instance of
+     * AsyncChunkStitcher.
+     *
+     * @param builder The builder used to configure the AsyncChunkStitcher.
+     */
+    private AsyncChunkStitcher(@NonNull Builder builder) {
+        if (builder.maxWaitTime.isNegative() || builder.maxWaitTime.isZero()) {
+            throw new IllegalArgumentException("Max wait time has to be positive: " + builder.maxWaitTime);
+        }
+        this.executor = builder.executor;
+        this.listener = builder.listener;
+        this.maxWaitTime = builder.maxWaitTime;
+        this.tombstones = new TombstoneSet(builder.tombstoneCapacity);
+        this.completions = Caffeine.newBuilder()
+                .expireAfter(new SinceCreation<UUID, CompletableFuture<byte[]>>(maxWaitTime))
+                .executor(executor)
+                .scheduler(Scheduler.systemScheduler())
+                .<UUID, CompletableFuture<byte[]>>removalListener((groupId, completion, cause) -> {
+                    if (cause.wasEvicted() && completion != null) {
+                        completion.completeExceptionally(new TimeoutException(
+                                "Group [" + groupId + "] not stitched within [" + maxWaitTime + "]"));
+                    }
+                })
+                .build();
+        if (builder.stitcher != null) {
+            this.stitcher = builder.stitcher;
+        } else {
+            ChunkStitcher.Builder stitcherBuilder =
+                    builder.stitcherBuilder == null ? new ChunkStitcher.Builder() : builder.stitcherBuilder;
+            this.stitcher = stitcherBuilder.evictionListener(this::evicted).build();
+        }
+    }
+
+    /**
+     * Adds a chunk to its corresponding chunk group on the calling thread. If the chunk is the last one expected by the
+     * group, the restored original data is handed over to the listener and the group's future on the executor.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @return true if the chunk completed its group, false otherwise.
+     * @throws CorruptChunkException if the chunk, or the group it completes, fails verification; a discarded group also
+     *     fails its future
+     */
+    public boolean stitch(@NonNull Chunk chunk) {
+        UUID groupId = chunk.getGroupId();
+        Optional<byte[]> stitched;
+        try {
+            stitched = stitcher.stitch(chunk);
+        } catch (CorruptChunkException e) {
+            if (e.isGroupDiscarded()) {
+                fail(groupId, e);
+            }
+            throw e;
+        }
+        if (!stitched.isPresent()) {
+            return false;
+        }
+        byte[] originalBytes = stitched.get();
+        CompletableFuture<byte[]> completion = remove(groupId);
+        executor.execute(() -> deliver(groupId, originalBytes, completion));
+        return true;
+    }
+
+    /**
+     * Returns the future of a group, completed with the group's original data bytes once the group's last chunk is
+     * stitched. The same future is returned to all callers waiting on the group. If the group recently completed, the
+     * future is already completed exceptionally with an {@link IllegalStateException}; if the group was discarded, and
+     * the max wait time has not elapsed since, the future already failed for that cause. A future requested after its
+     * group was evicted only fails once the max wait time elapses.
+     *
+     * @param groupId The group ID.
+     * @return The future of the group.
+     */
+    public CompletableFuture<byte[]> completion(@NonNull UUID groupId) {
+        return completions.get(groupId, k -> {
+            CompletableFuture<byte[]> completion = new CompletableFuture<>();
+            if (tombstones.contains(k)) {
+                completion.completeExceptionally(
+                        new IllegalStateException("Group [" + k + "] already stitched and handed over"));
+            }
+            return completion;
+        });
+    }
+
+    /**
+     * Removes the future of a completed group, and remembers the group as completed, atomically with respect to
+     * {@link #completion(UUID)}, so that no caller gets a future of the group that is never completed.
+     *
+     * @param groupId The group ID.
+     * @return The future of the group still to complete, or null if no caller is waiting on it.
+     */
+    @Nullable private CompletableFuture<byte[]> remove(UUID groupId) {
+        CompletableFuture<?>[] removed = new CompletableFuture<?>[1];
+        completions.asMap().compute(groupId, (k, completion) -> {
+            tombstones.add(k);
+            removed[0] = completion;
+            return null;
+        });
+        @SuppressWarnings("unchecked")
+        CompletableFuture<byte[]> completion = (CompletableFuture<byte[]>) removed[0];
+        return completion == null || completion.isDone() ? null : completion;
+    }
+
+    /**
+     * Fails the future of a group evicted by the wrapped stitcher, if any caller is waiting on it. Called by the
+     * wrapped stitcher's cache as it evicts the group, so no future is created, and the failure is left to the
+     * executor.
+     *
+     * @param groupId The group ID.
+     * @param expired Whether the group expired, rather than being evicted to bound the pending groups.
+     */
+    private void evicted(UUID groupId, boolean expired) {
+        CompletableFuture<byte[]> completion = completions.getIfPresent(groupId);
+        if (completion == null) {
+            return;
+        }
+        failOnExecutor(
+                completion,
+                expired
+                        ? new TimeoutException("Group [" + groupId + "] expired before stitched")
+                        : new IllegalStateException("Group [" + groupId + "] evicted before stitched"));
+    }
+
+    /**
+     * Fails the future of a group discarded by the wrapped stitcher, keeping the failed future for callers asking for
+     * it later, until the max wait time elapses.
+     *
+     * @param groupId The group ID.
+     * @param cause The cause of the failure.
+     */
+    private void fail(UUID groupId, Throwable cause) {
+        failOnExecutor(completions.get(groupId, k -> new CompletableFuture<>()), cause);
+    }
+
+    /**
+     * Completes the future of a group exceptionally on the executor.
+     *
+     * @param completion The future of the group.
+     * @param cause The cause of the failure.
+     */
+    private void failOnExecutor(CompletableFuture<byte[]> completion, Throwable cause) {
+        executor.execute(() -> completion.completeExceptionally(cause));
+    }
+
+    /**
+     * Hands the original data bytes of a completed group over to the listener and the group's future.
+     *
+     * @param groupId The group ID.
+     * @param originalBytes The restored original data bytes.
+     * @param completion The future of the group, or null if no caller is waiting on it.
+     */
+    private void deliver(UUID groupId, byte[] originalBytes, @Nullable CompletableFuture<byte[]> completion) {
+        if (listener != null) {
+            try {
+                listener.onStitched(groupId, originalBytes);
+            } catch (RuntimeException e) {
+                logger.atWarn().log(e, "Stitch listener failed on group [{}]", groupId);
+            }
+        }
+        if (completion != null) {
+            completion.complete(originalBytes);
+        }
+    }
+
+    /** The Builder class provides a fluent API for configuring and creating a new AsyncChunkStitcher. */
+    public static class Builder {
+        @Nullable private Stitcher stitcher;
+
+        @Nullable private ChunkStitcher.Builder stitcherBuilder;
+
+        private Executor executor = ForkJoinPool.commonPool();
+        private Duration maxWaitTime = DEFAULT_MAX_WAIT_TIME;
+        private int tombstoneCapacity = DEFAULT_TOMBSTONE_CAPACITY;
+
+        @Nullable private StitchListener listener;
+
+        /**
+         * Builds a new AsyncChunkStitcher with the current configuration of the Builder.
+         *
+         * @return A new AsyncChunkStitcher.
+         */
+        public AsyncChunkStitcher build() {
+            return new AsyncChunkStitcher(this);
+        }
+
+        /**
+         * Sets the stitcher that chunks are added to on the calling thread. The async stitcher is not told of groups
+         * the given stitcher evicts, whose futures only fail once the max wait time elapses; prefer
+         * {@link #stitcher(ChunkStitcher.Builder)} for a ChunkStitcher. Defaults to a ChunkStitcher of default
+         * configuration.
+         *
+         * @param stitcher The wrapped stitcher.
+         * @return The Builder, for method chaining.
+         */
+        public Builder stitcher(@NonNull Stitcher stitcher) {
+            this.stitcher = stitcher;
+            this.stitcherBuilder = null;
+            return this;
+        }
+
+        /**
+         * Sets the builder of the ChunkStitcher that chunks are added to on the calling thread. The async stitcher sets
+         * itself as the eviction listener of the builder, replacing any set before, to fail the futures of evicted
+         * groups right away.
+         *
+         * @param stitcherBuilder The builder of the wrapped stitcher.
+         * @return The Builder, for method chaining.
+         */
+        public Builder stitcher(@NonNull ChunkStitcher.Builder stitcherBuilder) {
+            this.stitcherBuilder = stitcherBuilder;
+            this.stitcher = null;
+            return this;
+        }
+
+        /**
+         * Sets the executor that the restored data of completed groups is handed over on. Defaults to the common
+         * fork-join pool.
+         *
+         * @param executor The executor.
+         * @return The Builder, for method chaining.
+         */
+        public Builder executor(@NonNull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the listener to be notified of each restored original data blob.
+         *
+         * @param listener The listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder listener(@NonNull StitchListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration that the future of a group is kept waiting for the group to complete, from the
+         * first call to {@link AsyncChunkStitcher#completion(UUID)} for the group, after which it is completed
+         * exceptionally with a {@link TimeoutException}. This should normally match the max stitch time of the wrapped
+         * stitcher. Defaults to 5 minutes.
+         *
+         * @param maxWaitTime The maximum duration, positive.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxWaitTime(@NonNull Duration maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+            return this;
+        }
+
+        /**
+         * Sets the number of recently completed group IDs to remember, so that a future requested after its group
+         * completed fails right away. Between the given number and twice as many of the most recently completed groups
+         * are remembered, in fixed memory of 64 to 128 bytes per unit of capacity. Defaults to 16384. With
+         * {@link GroupIdGenerator#contentDerived() content-derived} group IDs, the future of an identical data blob
+         * sent again while its group is remembered fails right away, as already handed over; and the wrapped stitcher
+         * must not be given tombstones of its own, which drop the chunks of such a blob altogether.
+         *
+         * @param v The number of completed group IDs to remember, positive.
+         * @return The Builder, for method chaining.
+         */
+        public Builder tombstoneCapacity(int v) {
+            this.tombstoneCapacity = v;
+            return this;
+        }
+    }
+}
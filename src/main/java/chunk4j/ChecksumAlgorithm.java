@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+import lombok.NonNull;
+
+/**
+ * The ChecksumAlgorithm enum lists the algorithms that a chopper can compute per-chunk checksums with, for stitchers to
+ * verify each chunk as it arrives. Checksums cover the data bytes of a chunk as transported, i.e. compressed if the
+ * chunk is compressed.
+ *
+ * @author Qingtian Wang
+ */
+public enum ChecksumAlgorithm {
+    /** CRC-32, fast and guarding against accidental corruption. */
+    CRC32((byte) 1),
+    /** SHA-256 digest, guarding against deliberate tampering as well. */
+    SHA_256((byte) 2);
+
+    private final byte id;
+
+    /**
+     * Constructor for the ChecksumAlgorithm enum.
+     *
+     * @param id The ID of the algorithm in the binary encoding of chunks.
+     */
+    ChecksumAlgorithm(byte id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the ID of the algorithm in the binary encoding of chunks.
+     *
+     * @return The algorithm ID.
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Returns the algorithm of an ID.
+     *
+     * @param id The algorithm ID.
+     * @return The algorithm.
+     * @throws IllegalArgumentException if no algorithm has the ID
+     */
+    public static @NonNull ChecksumAlgorithm ofId(byte id) {
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.id == id) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown checksum algorithm ID: " + id);
+    }
+
+    /**
+     * Returns the byte size of the checksums computed by the algorithm.
+     *
+     * @return The checksum byte size.
+     */
+    public int getChecksumByteSize() {
+        return this == CRC32 ? Integer.BYTES : 32;
+    }
+
+    /**
+     * Computes the checksum of data bytes.
+     *
+     * @param bytes The data bytes, from position to limit; not modified.
+     * @return The checksum.
+     */
+    public byte[] checksum(@NonNull ByteBuffer bytes) {
+        if (this == CRC32) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes.duplicate());
+            return ByteBuffer.allocate(Integer.BYTES)
+                    .putInt((int) crc32.getValue())
+                    .array();
+        }
+        MessageDigest digest = ChunkChopper.newFingerprintDigest();
+        digest.update(bytes.duplicate());
+        return digest.digest();
+    }
+
+    /**
+     * Checks the data bytes of a chunk against its checksum, if it carries one.
+     *
+     * @param chunk The received chunk.
+     * @return false if the chunk carries a checksum algorithm, but its data bytes do not match its checksum.
+     */
+    static boolean matches(@NonNull Chunk chunk) {
+        ChecksumAlgorithm algorithm = chunk.getChecksumAlgorithm();
+        if (algorithm == null || chunk.isReference()) {
+            return true;
+        }
+        byte[] expected = chunk.getChecksum();
+        return expected != null && MessageDigest.isEqual(expected, algorithm.checksum(chunk.getByteBuffer()));
+    }
+}
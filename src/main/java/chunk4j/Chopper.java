@@ -24,6 +24,7 @@
 
 package chunk4j;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -47,4 +48,19 @@ public interface Chopper {
      * @return the group of chunks which the original data blob is chopped into.
      */
     List<Chunk> chop(byte[] bytes);
+
+    /**
+     * Chops the remaining bytes of a byte buffer into a list of Chunk objects. The position of the passed-in buffer is
+     * not changed. Implementations may let the returned chunks hold read-only views over regions of the buffer instead
+     * of copies, in which case the buffer content should not be modified while the chunks are in use. The default
+     * implementation copies the remaining bytes and chops the copy.
+     *
+     * @param bytes the original data blob to be chopped into chunks
+     * @return the group of chunks which the original data blob is chopped into.
+     */
+    default List<Chunk> chop(ByteBuffer bytes) {
+        byte[] copy = new byte[bytes.remaining()];
+        bytes.duplicate().get(copy);
+        return chop(copy);
+    }
 }
@@ -25,7 +25,9 @@
 package chunk4j;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.UUID;
+import javax.annotation.Nullable;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -35,11 +37,19 @@ import lombok.Value;
  * The Chunk class represents a chunk of data that is part of a larger data blob. The data blob can be chopped up into
  * smaller chunks to form a group. When needed, often on a different network node than the one where the data was
  * chopped, the group of chunks can be collectively stitched back together to restore the original data. The Chunk class
- * is thread-safe and serializable. @author Qingtian Wang
+ * is thread-safe and serializable.
+ *
+ * <p>The data portion of a chunk is held either as its own byte array, or as a read-only {@link ByteBuffer} view over a
+ * region of the original data blob, without copying. A chunk of the latter form is converted to the former when
+ * serialized. A chunk chopped in content-defined mode also carries a fingerprint of its data; such a chunk can be
+ * turned into a reference chunk that carries only the fingerprint, to be resolved from a {@link ChunkStore} on
+ * stitching.
+ *
+ * @author Qingtian Wang
  */
 @Value
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-@Builder
+@Builder(toBuilder = true)
 public class Chunk implements Serializable {
 
     private static final long serialVersionUID = -1879320933982945956L;
@@ -56,10 +66,197 @@ public class Chunk implements Serializable {
     @EqualsAndHashCode.Include
     int index;
 
-    /** Total number of chunks the original data blob is chopped to form the group. */
+    /** Total number of chunks the original data blob is chopped to form the group, not counting parity chunks. */
     int groupSize;
 
-    /** Data bytes chopped for this current chunk to hold. */
+    /**
+     * Number of parity chunks added per stripe of the group's data chunks for forward error correction, indexed after
+     * all data chunks; 0 if none. A group of at most 256 data and parity chunks is a single stripe, and the data chunks
+     * of a larger group are split into stripes within that bound. Each stripe can be restored from any of its data and
+     * parity chunks, as long as there are as many of them as there are data chunks in the stripe.
+     */
+    int parityChunkCount;
+
+    /**
+     * Position of this current chunk's first data byte inside the original data blob, e.g. the chunk's index times the
+     * chunk capacity of the chopper in fixed-size mode. For a parity chunk, its index times the parity chunk size.
+     */
+    long offset;
+
+    /** Total byte size of the original data blob. */
+    long blobByteSize;
+
+    /** Data bytes chopped for this current chunk to hold; null if the data is held as a byte buffer view instead. */
+    @ToString.Exclude
+    @Nullable byte[] bytes;
+
+    /** Read-only view over the region of the original data that this chunk holds; null if held as a byte array. */
     @ToString.Exclude
-    byte[] bytes;
+    @Nullable transient ByteBuffer byteBuffer;
+
+    /** SHA-256 digest of the data bytes of this chunk; null if the chunk was not chopped in content-defined mode. */
+    @ToString.Exclude
+    @Nullable byte[] fingerprint;
+
+    /**
+     * ID of the {@link CompressionCodec} that the data bytes of this chunk are compressed with; 0 if not compressed.
+     * The offset and blob byte size of a compressed chunk still refer to the uncompressed data.
+     */
+    byte compressionId;
+
+    /** Algorithm of the checksum of this chunk; null if the chunk carries no checksum. */
+    @Nullable ChecksumAlgorithm checksumAlgorithm;
+
+    /** Checksum of the data bytes of this chunk, as transported; null if the chunk carries no checksum. */
+    @ToString.Exclude
+    @Nullable byte[] checksum;
+
+    /**
+     * Root of the Merkle tree over the checksums of all chunks in the group, carried by every chunk of the group; null
+     * if the group was not chopped as a whole, e.g. from a stream, or without checksums.
+     */
+    @ToString.Exclude
+    @Nullable byte[] merkleRoot;
+
+    /**
+     * Returns a copy of this chunk that holds no data bytes but only the fingerprint, to be sent in place of this chunk
+     * when the receiving stitcher's {@link ChunkStore} is known to hold the data already.
+     *
+     * @return the reference chunk
+     * @throws IllegalStateException if this chunk has no fingerprint
+     */
+    public Chunk toReference() {
+        if (fingerprint == null) {
+            throw new IllegalStateException("Chunk without fingerprint cannot be referenced: " + this);
+        }
+        return toBuilder().bytes(null).byteBuffer(null).compressionId((byte) 0).build();
+    }
+
+    /**
+     * Checks if this chunk is a reference chunk, holding no data bytes but only the fingerprint.
+     *
+     * @return true if this is a reference chunk
+     */
+    public boolean isReference() {
+        return bytes == null && byteBuffer == null;
+    }
+
+    /**
+     * Returns the data bytes of this chunk. If the chunk holds a byte buffer view rather than its own byte array, the
+     * bytes of the view are copied into a new array.
+     *
+     * @return the data bytes of this chunk
+     */
+    public byte[] getBytes() {
+        checkNotReference();
+        if (bytes != null) {
+            return bytes;
+        }
+        byte[] copy = new byte[byteBuffer.remaining()];
+        byteBuffer.duplicate().get(copy);
+        return copy;
+    }
+
+    /**
+     * Returns a read-only view of the data bytes of this chunk, without copying. Each call returns an independent view
+     * whose position and limit can be changed without affecting the chunk.
+     *
+     * @return read-only byte buffer over the data bytes of this chunk
+     */
+    public ByteBuffer getByteBuffer() {
+        checkNotReference();
+        return bytes != null ? ByteBuffer.wrap(bytes).asReadOnlyBuffer() : byteBuffer.duplicate();
+    }
+
+    /**
+     * Returns the number of data bytes this chunk holds, without copying; compressed, if the chunk is compressed.
+     *
+     * @return byte size of the data of this chunk
+     */
+    public int getByteSize() {
+        checkNotReference();
+        return bytes != null ? bytes.length : byteBuffer.remaining();
+    }
+
+    /**
+     * Copies the data bytes of this chunk into a buffer at the given index, without changing the buffer's position.
+     * When the buffer is backed by an accessible array, the bytes are copied without allocating a view of either side:
+     * between the arrays directly if the chunk's data is backed by an accessible array too, or else read at absolute
+     * indexes of the chunk's buffer one at a time, as for the read-only buffers of chunks decoded by
+     * {@link ChunkCodec}, since there is no absolute bulk get in Java 8.
+     *
+     * @param target The buffer to copy into.
+     * @param targetIndex The index in the buffer of the first byte copied.
+     */
+    void copyBytesTo(ByteBuffer target, int targetIndex) {
+        checkNotReference();
+        if (target.hasArray()) {
+            byte[] targetArray = target.array();
+            int targetOffset = target.arrayOffset() + targetIndex;
+            if (bytes != null) {
+                System.arraycopy(bytes, 0, targetArray, targetOffset, bytes.length);
+                return;
+            }
+            int start = byteBuffer.position();
+            int byteSize = byteBuffer.remaining();
+            if (byteBuffer.hasArray()) {
+                System.arraycopy(
+                        byteBuffer.array(), byteBuffer.arrayOffset() + start, targetArray, targetOffset, byteSize);
+                return;
+            }
+            for (int i = 0; i < byteSize; i++) {
+                targetArray[targetOffset + i] = byteBuffer.get(start + i);
+            }
+            return;
+        }
+        ByteBuffer chunkTarget = target.duplicate();
+        chunkTarget.position(targetIndex);
+        chunkTarget.put(getByteBuffer());
+    }
+
+    /**
+     * Checks if this chunk, with its data uncompressed, comes from a producer predating offsets, which chopped
+     * fixed-size chunks and left their offset and blob byte size at 0, e.g. deserialized from such a producer's chunk.
+     *
+     * @return true if this chunk holds data bytes but no blob byte size
+     */
+    boolean isLegacy() {
+        return blobByteSize == 0 && !isReference() && getByteSize() > 0;
+    }
+
+    /**
+     * Ensures this chunk, with its data uncompressed, carries the byte size of its original data blob, for stitchers
+     * that cannot derive it from the other chunks of a group from a producer predating offsets.
+     *
+     * @throws IllegalArgumentException if this chunk holds data bytes but no blob byte size
+     */
+    void checkPositioned() {
+        if (isLegacy()) {
+            throw new IllegalArgumentException(
+                    "Chunk carries no offset and blob byte size, which this stitcher requires: " + this);
+        }
+    }
+
+    /**
+     * Ensures this chunk holds data bytes.
+     *
+     * @throws IllegalStateException if this is a reference chunk
+     */
+    private void checkNotReference() {
+        if (isReference()) {
+            throw new IllegalStateException("Reference chunk holds no data bytes: " + this);
+        }
+    }
+
+    /**
+     * Replaces a chunk holding a byte buffer view with one holding its own byte array on serialization, since byte
+     * buffers are not serializable.
+     *
+     * @return the object to be serialized in place of this chunk
+     */
+    private Object writeReplace() {
+        return bytes != null || byteBuffer == null
+                ? this
+                : toBuilder().bytes(getBytes()).byteBuffer(null).build();
+    }
 }
@@ -24,36 +24,86 @@
 
 package chunk4j;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 import lombok.NonNull;
 
 /**
  * The ChunkChopper class is responsible for chopping data into chunks. It is thread-safe and provides a static factory
- * method for creating new instances. Each instance is configured with a maximum chunk byte size.
+ * method as well as a Builder for creating new instances. Each instance is configured with a maximum chunk byte size,
+ * and a {@link GroupIdGenerator} for the group ID of each chopped data blob. By default, data blobs are cut into chunks
+ * at fixed offsets; in content-defined mode, the boundaries are picked from the data content instead.
  *
  * @author Qingtian Wang
  */
 @ThreadSafe
 public final class ChunkChopper implements Chopper {
 
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+    /**
+     * Byte size of the leading sample of a chunk's data compressed to probe whether the whole chunk is compressible.
+     */
+    private static final int COMPRESSION_PROBE_BYTE_SIZE = 4096;
+    /** Compressed byte size, in eighths of the uncompressed size, above which compression is deemed not to pay off. */
+    private static final int MAX_COMPRESSED_EIGHTHS = 7;
+
     private final int chunkCapacity;
+    private final GroupIdGenerator groupIdGenerator;
+
+    @Nullable private final ContentDefinedBoundaries contentDefinedBoundaries;
+
+    @Nullable private final CompressionCodec compressionCodec;
+
+    @Nullable private final ChecksumAlgorithm checksumAlgorithm;
+
+    private final int parityChunkCount;
 
     /**
-     * Private constructor for the ChunkChopper class. It is used by the static factory method to create a new instance
-     * of ChunkChopper.
+     * Private constructor for the ChunkChopper class. It is used by the static factory method and the Builder to create
+     * a new instance of ChunkChopper.
      *
-     * @param chunkByteCapacity The maximum size of the byte array in a chunk.
+     * @param builder The Builder used to construct the ChunkChopper.
      */
-    private ChunkChopper(int chunkByteCapacity) {
-        if (chunkByteCapacity <= 0) {
+    private ChunkChopper(@NonNull Builder builder) {
+        this.contentDefinedBoundaries = builder.contentDefinedBoundaries;
+        this.chunkCapacity = contentDefinedBoundaries == null
+                ? builder.chunkByteCapacity
+                : contentDefinedBoundaries.getMaxChunkByteSize();
+        if (chunkCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Max size of the byte array in a chunk has to be a positive int: " + chunkCapacity);
+        }
+        this.groupIdGenerator = builder.groupIdGenerator;
+        this.compressionCodec = builder.compressionCodec;
+        this.checksumAlgorithm = builder.checksumAlgorithm;
+        this.parityChunkCount = builder.parityChunkCount;
+        if (parityChunkCount < 0 || parityChunkCount >= ReedSolomon.MAX_TOTAL_SHARDS) {
+            throw new IllegalArgumentException("Parity chunk count has to be non-negative and less than "
+                    + ReedSolomon.MAX_TOTAL_SHARDS + ": " + parityChunkCount);
+        }
+        if (parityChunkCount > 0 && (contentDefinedBoundaries != null || compressionCodec != null)) {
             throw new IllegalArgumentException(
-                    "Max size of the byte array in a chunk has to be a positive int: " + chunkByteCapacity);
+                    "Parity chunks require equal-sized chunks, and cannot be combined with content-defined chopping or"
+                            + " compression");
+        }
+        if (compressionCodec != null && compressionCodec.getId() == 0) {
+            throw new IllegalArgumentException("Compression codec ID 0 is reserved for uncompressed chunks");
         }
-        this.chunkCapacity = chunkByteCapacity;
     }
 
     /**
@@ -63,7 +113,7 @@ public final class ChunkChopper implements Chopper {
      * @return A new ChunkChopper.
      */
     public static @NonNull ChunkChopper ofByteSize(int maxChunkByteSize) {
-        return new ChunkChopper(maxChunkByteSize);
+        return new Builder().chunkByteCapacity(maxChunkByteSize).build();
     }
 
     /**
@@ -75,32 +125,613 @@ public final class ChunkChopper implements Chopper {
      */
     @Override
     public @NonNull List<Chunk> chop(byte[] bytes) {
-        final List<Chunk> chunks = new ArrayList<>();
-        final UUID groupId = UUID.randomUUID();
-        final int groupSize = numberOfChunks(bytes);
-        int chunkIndex = 0;
+        if (contentDefinedBoundaries != null) {
+            return chopContentDefined(ByteBuffer.wrap(bytes).asReadOnlyBuffer(), true);
+        }
+        final List<Chunk.ChunkBuilder> chunks = new ArrayList<>();
+        final List<byte[]> checksums = new ArrayList<>();
+        final UUID groupId = groupIdGenerator.generate(ByteBuffer.wrap(bytes).asReadOnlyBuffer());
+        final int groupSize = numberOfChunks(bytes.length);
         for (int chunkBytesStart = 0; chunkBytesStart < bytes.length; chunkBytesStart += this.chunkCapacity) {
             int chunkBytesEnd = Math.min(bytes.length, chunkBytesStart + this.chunkCapacity);
-            final byte[] chunkBytes = Arrays.copyOfRange(bytes, chunkBytesStart, chunkBytesEnd);
-            chunks.add(Chunk.builder()
+            Chunk.ChunkBuilder chunk = Chunk.builder()
                     .groupId(groupId)
                     .groupSize(groupSize)
-                    .index(chunkIndex++)
-                    .bytes(chunkBytes)
-                    .build());
+                    .parityChunkCount(parityChunkCount)
+                    .index(chunks.size())
+                    .offset(chunkBytesStart)
+                    .blobByteSize(bytes.length);
+            checksums.add(checksum(chunk, bytes(chunk, Arrays.copyOfRange(bytes, chunkBytesStart, chunkBytesEnd))));
+            chunks.add(chunk);
         }
         assert groupSize == chunks.size();
-        return chunks;
+        addParityChunks(chunks, checksums, groupId, ByteBuffer.wrap(bytes));
+        return seal(chunks, checksums, groupSize);
     }
 
     /**
-     * Calculates the number of chunks that a byte array will be chopped into.
+     * Chops the remaining bytes of a byte buffer into chunks without copying. Each chunk holds a read-only view (slice)
+     * over its own portion of the buffer, so the buffer content should not be modified while the chunks are in use. The
+     * position of the passed-in buffer is not changed. Use {@code chop(ByteBuffer.wrap(bytes))} to chop a byte array in
+     * this zero-copy mode.
      *
-     * @param bytes The byte array to chop into chunks.
+     * @param bytes The byte buffer to chop into chunks.
+     * @return A list of chunks.
+     */
+    @Override
+    public @NonNull List<Chunk> chop(@NonNull ByteBuffer bytes) {
+        if (contentDefinedBoundaries != null) {
+            return chopContentDefined(bytes.asReadOnlyBuffer(), false);
+        }
+        final List<Chunk.ChunkBuilder> chunks = new ArrayList<>();
+        final List<byte[]> checksums = new ArrayList<>();
+        final ByteBuffer source = bytes.asReadOnlyBuffer();
+        final UUID groupId = groupIdGenerator.generate(source.duplicate());
+        final int groupSize = numberOfChunks(bytes.remaining());
+        final int sourceStart = source.position();
+        final int sourceEnd = source.limit();
+        for (int chunkBytesStart = source.position();
+                chunkBytesStart < sourceEnd;
+                chunkBytesStart += this.chunkCapacity) {
+            int chunkBytesEnd = Math.min(sourceEnd, chunkBytesStart + this.chunkCapacity);
+            source.limit(chunkBytesEnd);
+            source.position(chunkBytesStart);
+            Chunk.ChunkBuilder chunk = Chunk.builder()
+                    .groupId(groupId)
+                    .groupSize(groupSize)
+                    .parityChunkCount(parityChunkCount)
+                    .index(chunks.size())
+                    .offset(chunkBytesStart - sourceStart)
+                    .blobByteSize(sourceEnd - sourceStart);
+            checksums.add(checksum(chunk, byteBuffer(chunk, source.slice())));
+            chunks.add(chunk);
+        }
+        assert groupSize == chunks.size();
+        source.limit(sourceEnd);
+        source.position(sourceStart);
+        addParityChunks(chunks, checksums, groupId, source);
+        return seal(chunks, checksums, groupSize);
+    }
+
+    /**
+     * Lazily chops the data read from an input stream into chunks. Only the bytes of the chunk being returned are read
+     * from the stream on each call to {@link Iterator#next()}, so the data blob never has to be held in memory as a
+     * whole. Since all chunks carry the size of their group, the total number of bytes to read has to be known upfront.
+     * The stream is neither read beyond that number of bytes, nor closed by the chopper. An I/O error, including the
+     * stream ending before the expected number of bytes are read, is rethrown as {@link UncheckedIOException} from
+     * {@link Iterator#next()}. Not supported in content-defined mode, where the group size is not known upfront.
+     *
+     * @param inputStream The input stream to read the data blob from.
+     * @param byteSize The total number of bytes of the data blob to read from the stream.
+     * @return An iterator of the chunks, in index order.
+     */
+    public @NonNull Iterator<Chunk> chop(@NonNull InputStream inputStream, long byteSize) {
+        return new StreamChunkIterator(inputStream::read, byteSize);
+    }
+
+    /**
+     * Lazily chops the data read from a blocking readable channel into chunks. Only the bytes of the chunk being
+     * returned are read from the channel on each call to {@link Iterator#next()}, so the data blob never has to be held
+     * in memory as a whole. Since all chunks carry the size of their group, the total number of bytes to read has to be
+     * known upfront, e.g. the size of a file channel. The channel is neither read beyond that number of bytes, nor
+     * closed by the chopper. An I/O error, including the channel ending before the expected number of bytes are read,
+     * is rethrown as {@link UncheckedIOException} from {@link Iterator#next()}. Not supported in content-defined mode,
+     * where the group size is not known upfront.
+     *
+     * @param channel The blocking channel to read the data blob from.
+     * @param byteSize The total number of bytes of the data blob to read from the channel.
+     * @return An iterator of the chunks, in index order.
+     */
+    public @NonNull Iterator<Chunk> chop(@NonNull ReadableByteChannel channel, long byteSize) {
+        return new StreamChunkIterator(
+                (bytes, offset, length) -> channel.read(ByteBuffer.wrap(bytes, offset, length)), byteSize);
+    }
+
+    /**
+     * Chops the remaining bytes of a read-only buffer into chunks at content-defined boundaries, each chunk carrying
+     * the fingerprint of its data.
+     *
+     * @param source The read-only buffer to chop, whose position and limit may be changed.
+     * @param copy Whether each chunk holds a copy of its data, or a read-only view over the source.
+     * @return A list of chunks.
+     */
+    private List<Chunk> chopContentDefined(ByteBuffer source, boolean copy) {
+        assert contentDefinedBoundaries != null;
+        final UUID groupId = groupIdGenerator.generate(source.duplicate());
+        final int sourceStart = source.position();
+        final int sourceEnd = source.limit();
+        final List<Integer> chunkEnds = new ArrayList<>();
+        for (int chunkBytesStart = sourceStart; chunkBytesStart < sourceEnd; ) {
+            chunkBytesStart = contentDefinedBoundaries.nextBoundary(source, chunkBytesStart, sourceEnd);
+            chunkEnds.add(chunkBytesStart);
+        }
+        final MessageDigest digest = newFingerprintDigest();
+        final List<Chunk.ChunkBuilder> chunks = new ArrayList<>(chunkEnds.size());
+        final List<byte[]> checksums = new ArrayList<>(chunkEnds.size());
+        int chunkBytesStart = sourceStart;
+        for (int chunkBytesEnd : chunkEnds) {
+            source.limit(chunkBytesEnd);
+            source.position(chunkBytesStart);
+            ByteBuffer chunkBytes = source.slice();
+            digest.update(chunkBytes.duplicate());
+            Chunk.ChunkBuilder chunk = Chunk.builder()
+                    .groupId(groupId)
+                    .groupSize(chunkEnds.size())
+                    .index(chunks.size())
+                    .offset(chunkBytesStart - sourceStart)
+                    .blobByteSize(sourceEnd - sourceStart)
+                    .fingerprint(digest.digest());
+            ByteBuffer heldBytes;
+            if (copy) {
+                byte[] chunkBytesCopy = new byte[chunkBytes.remaining()];
+                chunkBytes.get(chunkBytesCopy);
+                heldBytes = bytes(chunk, chunkBytesCopy);
+            } else {
+                heldBytes = byteBuffer(chunk, chunkBytes);
+            }
+            checksums.add(checksum(chunk, heldBytes));
+            chunks.add(chunk);
+            chunkBytesStart = chunkBytesEnd;
+        }
+        return seal(chunks, checksums, chunks.size());
+    }
+
+    /**
+     * Sets the data of a chunk being built to a byte array it owns, compressed with the configured codec if that pays
+     * off.
+     *
+     * @param chunk The builder of the chunk.
+     * @param bytes The uncompressed data bytes.
+     * @return A view of the data bytes as held by the chunk.
+     */
+    private ByteBuffer bytes(Chunk.ChunkBuilder chunk, byte[] bytes) {
+        byte[] compressed = compress(ByteBuffer.wrap(bytes));
+        if (compressed != null) {
+            return compressedBytes(chunk, compressed);
+        }
+        chunk.bytes(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Sets the data of a chunk being built to a read-only view over the original data blob, unless compressing it with
+     * the configured codec pays off, in which case the chunk owns the compressed bytes instead.
+     *
+     * @param chunk The builder of the chunk.
+     * @param byteBuffer The read-only view of the uncompressed data bytes.
+     * @return A view of the data bytes as held by the chunk.
+     */
+    private ByteBuffer byteBuffer(Chunk.ChunkBuilder chunk, ByteBuffer byteBuffer) {
+        byte[] compressed = compress(byteBuffer.duplicate());
+        if (compressed != null) {
+            return compressedBytes(chunk, compressed);
+        }
+        chunk.byteBuffer(byteBuffer);
+        return byteBuffer.duplicate();
+    }
+
+    /**
+     * Sets the data of a chunk being built to the compressed bytes of its data.
+     *
+     * @param chunk The builder of the chunk.
+     * @param compressed The compressed data bytes.
+     * @return A view of the compressed data bytes.
+     */
+    private ByteBuffer compressedBytes(Chunk.ChunkBuilder chunk, byte[] compressed) {
+        assert compressionCodec != null;
+        chunk.bytes(compressed).compressionId(compressionCodec.getId());
+        return ByteBuffer.wrap(compressed);
+    }
+
+    /**
+     * Compresses the data of a chunk with the configured codec, unless compressing a leading sample of the data shows
+     * that the data is not compressible enough, or the compressed data turns out to be no smaller than the original.
+     *
+     * @param uncompressed The uncompressed data bytes of the chunk.
+     * @return The compressed data bytes, or null if the data is not to be compressed.
+     */
+    @Nullable private byte[] compress(ByteBuffer uncompressed) {
+        if (compressionCodec == null) {
+            return null;
+        }
+        int byteSize = uncompressed.remaining();
+        if (byteSize > COMPRESSION_PROBE_BYTE_SIZE) {
+            ByteBuffer sample = uncompressed.duplicate();
+            sample.limit(sample.position() + COMPRESSION_PROBE_BYTE_SIZE);
+            if (!paysOff(compressionCodec.compress(sample).remaining(), COMPRESSION_PROBE_BYTE_SIZE)) {
+                return null;
+            }
+        }
+        ByteBuffer compressed = compressionCodec.compress(uncompressed);
+        if (!paysOff(compressed.remaining(), byteSize)) {
+            return null;
+        }
+        byte[] compressedBytes = new byte[compressed.remaining()];
+        compressed.get(compressedBytes);
+        return compressedBytes;
+    }
+
+    /**
+     * Sets the checksum of a chunk being built with the configured algorithm, if any.
+     *
+     * @param chunk The builder of the chunk.
+     * @param heldBytes The data bytes as held by the chunk, compressed if applicable.
+     * @return The checksum, or null if no checksum algorithm is configured.
+     */
+    @Nullable private byte[] checksum(Chunk.ChunkBuilder chunk, ByteBuffer heldBytes) {
+        if (checksumAlgorithm == null) {
+            return null;
+        }
+        byte[] checksum = checksumAlgorithm.checksum(heldBytes);
+        chunk.checksumAlgorithm(checksumAlgorithm).checksum(checksum);
+        return checksum;
+    }
+
+    /**
+     * Adds parity chunks to the data chunks of a group, if configured, stripe by stripe.
+     *
+     * @param chunks The builders of all data chunks of a group, in index order, to which those of the parity chunks are
+     *     appended.
+     * @param checksums The checksums of the data chunks, to which those of the parity chunks are appended.
+     * @param groupId The group ID.
+     * @param source The read-only view of the original data blob, whose position and limit may be changed.
+     */
+    private void addParityChunks(
+            List<Chunk.ChunkBuilder> chunks, List<byte[]> checksums, UUID groupId, ByteBuffer source) {
+        if (parityChunkCount == 0 || chunks.isEmpty()) {
+            return;
+        }
+        int groupSize = chunks.size();
+        int sourceStart = source.position();
+        int sourceEnd = source.limit();
+        int parityChunkByteSize = Math.min(chunkCapacity, sourceEnd - sourceStart);
+        ParityStripes stripes = new ParityStripes(groupSize, parityChunkCount);
+        for (int stripe = 0; stripe < stripes.stripeCount(); stripe++) {
+            ReedSolomon reedSolomon = stripes.codeOf(stripe);
+            int firstDataChunkIndex = stripes.firstDataChunkIndex(stripe);
+            byte[][] parity = new byte[parityChunkCount][parityChunkByteSize];
+            for (int i = 0; i < stripes.dataChunkCount(stripe); i++) {
+                int chunkBytesStart = sourceStart + (firstDataChunkIndex + i) * chunkCapacity;
+                source.limit(Math.min(sourceEnd, chunkBytesStart + chunkCapacity));
+                source.position(chunkBytesStart);
+                reedSolomon.addToParity(i, source, parity);
+            }
+            for (int p = 0; p < parityChunkCount; p++) {
+                int index = stripes.parityChunkIndex(stripe, p);
+                Chunk.ChunkBuilder chunk = Chunk.builder()
+                        .groupId(groupId)
+                        .groupSize(groupSize)
+                        .parityChunkCount(parityChunkCount)
+                        .index(index)
+                        .offset((long) index * parityChunkByteSize)
+                        .blobByteSize(sourceEnd - sourceStart)
+                        .bytes(parity[p]);
+                checksums.add(checksum(chunk, ByteBuffer.wrap(parity[p])));
+                chunks.add(chunk);
+            }
+        }
+    }
+
+    /**
+     * Builds the chunks of a group, each carrying the Merkle root over the checksums of the data chunks of the group,
+     * if checksums are configured. The checksums are computed as the chunks are chopped, so that the root is the only
+     * part left to add, and each chunk is built only once.
+     *
+     * @param chunks The builders of all chunks of a group, in index order, including parity chunks.
+     * @param checksums The checksums of all chunks of the group, in index order; null entries if checksums are not
+     *     configured.
+     * @param groupSize The number of data chunks of the group.
+     * @return The chunks of the group.
+     */
+    private List<Chunk> seal(List<Chunk.ChunkBuilder> chunks, List<byte[]> checksums, int groupSize) {
+        byte[] merkleRoot = checksumAlgorithm == null || chunks.isEmpty()
+                ? null
+                : MerkleTree.rootOf(checksums.subList(0, groupSize).toArray(new byte[0][]));
+        List<Chunk> sealed = new ArrayList<>(chunks.size());
+        for (Chunk.ChunkBuilder chunk : chunks) {
+            sealed.add(chunk.merkleRoot(merkleRoot).build());
+        }
+        return sealed;
+    }
+
+    /**
+     * Checks if data compressed to the given byte size is small enough to be worth the cost of decompression.
+     *
+     * @param compressedByteSize The compressed byte size.
+     * @param uncompressedByteSize The uncompressed byte size.
+     * @return true if compression pays off.
+     */
+    private static boolean paysOff(int compressedByteSize, int uncompressedByteSize) {
+        return (long) compressedByteSize * 8 <= (long) uncompressedByteSize * MAX_COMPRESSED_EIGHTHS;
+    }
+
+    /**
+     * Creates a new digest computing the fingerprint of chunk data.
+     *
+     * @return The fingerprint digest.
+     */
+    static MessageDigest newFingerprintDigest() {
+        try {
+            return MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(FINGERPRINT_ALGORITHM + " not supported", e);
+        }
+    }
+
+    /**
+     * Calculates the number of chunks that a data blob will be chopped into.
+     *
+     * @param byteSize The byte size of the data blob to chop into chunks.
      * @return The number of chunks.
      */
-    private int numberOfChunks(byte @NonNull [] bytes) {
-        int chunkCount = bytes.length / this.chunkCapacity;
-        return bytes.length % this.chunkCapacity == 0 ? chunkCount : chunkCount + 1;
+    private int numberOfChunks(long byteSize) {
+        long chunkCount = byteSize / this.chunkCapacity;
+        if (byteSize % this.chunkCapacity != 0) {
+            chunkCount++;
+        }
+        if (chunkCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Data blob of byte size " + byteSize
+                    + " would be chopped into more chunks than an int can count with chunk capacity "
+                    + this.chunkCapacity);
+        }
+        return (int) chunkCount;
+    }
+
+    /** The ByteSource interface abstracts the sequential reading of bytes from an input stream or a channel. */
+    @FunctionalInterface
+    private interface ByteSource {
+
+        /**
+         * Reads up to the given number of bytes into a byte array.
+         *
+         * @param bytes The array to read bytes into.
+         * @param offset The position in the array to start storing bytes at.
+         * @param length The maximum number of bytes to read.
+         * @return The number of bytes actually read, or -1 if the end of the source has been reached.
+         * @throws IOException If an I/O error occurs.
+         */
+        int read(byte[] bytes, int offset, int length) throws IOException;
+    }
+
+    /** The StreamChunkIterator class reads and chops one chunk at a time from a byte source. It is not thread-safe. */
+    @NotThreadSafe
+    private final class StreamChunkIterator implements Iterator<Chunk> {
+        private final ByteSource byteSource;
+        private final long byteSize;
+        private final UUID groupId;
+        private final int groupSize;
+        private final int chunkTotal;
+
+        @Nullable private final ParityStripes stripes;
+
+        /** Parity chunks of the current stripe, being accumulated or emitted. */
+        @Nullable private byte[][] parity;
+
+        private int chunkIndex;
+        private int emittedChunkTotal;
+        private long chunkBytesStart;
+
+        /** The stripe of the next data chunk, or of the parity chunks being emitted. */
+        private int stripe;
+
+        /** Index within the current stripe of the next parity chunk to emit, or -1 while data chunks are emitted. */
+        private int parityIndex = -1;
+
+        /**
+         * Constructor for the StreamChunkIterator class.
+         *
+         * @param byteSource The source to read the data blob from.
+         * @param byteSize The total number of bytes of the data blob.
+         */
+        StreamChunkIterator(ByteSource byteSource, long byteSize) {
+            if (contentDefinedBoundaries != null) {
+                throw new IllegalStateException("Content-defined chopping requires the whole data blob upfront");
+            }
+            if (byteSize < 0) {
+                throw new IllegalArgumentException("Byte size of data blob cannot be negative: " + byteSize);
+            }
+            this.byteSource = byteSource;
+            this.byteSize = byteSize;
+            this.groupSize = numberOfChunks(byteSize);
+            this.groupId = groupIdGenerator.generate(null);
+            if (parityChunkCount == 0 || groupSize == 0) {
+                this.chunkTotal = groupSize;
+                this.stripes = null;
+                this.parity = null;
+            } else {
+                this.stripes = new ParityStripes(groupSize, parityChunkCount);
+                this.chunkTotal = groupSize + stripes.parityChunkTotal();
+                this.parity = new byte[parityChunkCount][(int) Math.min(chunkCapacity, byteSize)];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return emittedChunkTotal < chunkTotal;
+        }
+
+        @Override
+        public Chunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            emittedChunkTotal++;
+            if (parityIndex >= 0) {
+                return nextParityChunk();
+            }
+            byte[] chunkBytes = new byte[(int) Math.min(chunkCapacity, byteSize - chunkBytesStart)];
+            readFully(chunkBytes);
+            if (stripes != null) {
+                int firstDataChunkIndex = stripes.firstDataChunkIndex(stripe);
+                stripes.codeOf(stripe)
+                        .addToParity(chunkIndex - firstDataChunkIndex, ByteBuffer.wrap(chunkBytes), parity);
+                if (chunkIndex + 1 == firstDataChunkIndex + stripes.dataChunkCount(stripe)) {
+                    parityIndex = 0;
+                }
+            }
+            Chunk.ChunkBuilder chunk = Chunk.builder()
+                    .groupId(groupId)
+                    .groupSize(groupSize)
+                    .parityChunkCount(parityChunkCount)
+                    .index(chunkIndex++)
+                    .offset(chunkBytesStart)
+                    .blobByteSize(byteSize);
+            checksum(chunk, bytes(chunk, chunkBytes));
+            chunkBytesStart += chunkBytes.length;
+            return chunk.build();
+        }
+
+        /**
+         * Returns the next parity chunk of the current stripe, moving on to the next stripe after its last one.
+         *
+         * @return The parity chunk.
+         */
+        private Chunk nextParityChunk() {
+            assert stripes != null && parity != null;
+            int index = stripes.parityChunkIndex(stripe, parityIndex);
+            Chunk.ChunkBuilder parityChunk = Chunk.builder()
+                    .groupId(groupId)
+                    .groupSize(groupSize)
+                    .parityChunkCount(parityChunkCount)
+                    .index(index)
+                    .offset((long) index * parity[0].length)
+                    .blobByteSize(byteSize)
+                    .bytes(parity[parityIndex]);
+            checksum(parityChunk, ByteBuffer.wrap(parity[parityIndex++]));
+            if (parityIndex == parityChunkCount) {
+                parityIndex = -1;
+                if (++stripe < stripes.stripeCount()) {
+                    parity = new byte[parityChunkCount][parity[0].length];
+                }
+            }
+            return parityChunk.build();
+        }
+
+        /**
+         * Reads from the byte source until the given array is filled.
+         *
+         * @param chunkBytes The array to fill.
+         */
+        private void readFully(byte[] chunkBytes) {
+            try {
+                int read = 0;
+                while (read < chunkBytes.length) {
+                    int n = byteSource.read(chunkBytes, read, chunkBytes.length - read);
+                    if (n < 0) {
+                        throw new EOFException("Expected " + byteSize + " bytes of data blob but source ended after "
+                                + (chunkBytesStart + read));
+                    }
+                    read += n;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** The Builder class provides a fluent API for creating a new ChunkChopper. */
+    public static class Builder {
+        private int chunkByteCapacity;
+        private GroupIdGenerator groupIdGenerator = GroupIdGenerator.random();
+
+        @Nullable private ContentDefinedBoundaries contentDefinedBoundaries;
+
+        @Nullable private CompressionCodec compressionCodec;
+
+        @Nullable private ChecksumAlgorithm checksumAlgorithm;
+
+        private int parityChunkCount;
+
+        /**
+         * Builds a new ChunkChopper with the current configuration of the Builder.
+         *
+         * @return A new ChunkChopper.
+         */
+        public ChunkChopper build() {
+            return new ChunkChopper(this);
+        }
+
+        /**
+         * Sets the maximum size of the byte array in a chunk. Required unless in content-defined mode.
+         *
+         * @param chunkByteCapacity The maximum chunk byte size.
+         * @return The Builder, for method chaining.
+         */
+        public Builder chunkByteCapacity(int chunkByteCapacity) {
+            this.chunkByteCapacity = chunkByteCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the generator of the group ID for each chopped data blob. Defaults to {@link GroupIdGenerator#random()}.
+         *
+         * @param groupIdGenerator The group ID generator.
+         * @return The Builder, for method chaining.
+         */
+        public Builder groupIdGenerator(GroupIdGenerator groupIdGenerator) {
+            this.groupIdGenerator = groupIdGenerator;
+            return this;
+        }
+
+        /**
+         * Switches the chopper to content-defined mode, where chunk boundaries are cut by a rolling hash of the data
+         * rather than at fixed offsets, so that an insertion or deletion in a data blob only changes the chunks around
+         * it. Each chunk then carries a fingerprint of its data, see {@link ChunkStore}. The maximum chunk byte size
+         * takes the place of the chunk byte capacity.
+         *
+         * @param minChunkByteSize The minimum byte size of a chunk, except for the last chunk of a data blob.
+         * @param avgChunkByteSize The targeted average byte size of a chunk.
+         * @param maxChunkByteSize The maximum byte size of a chunk.
+         * @return The Builder, for method chaining.
+         */
+        public Builder contentDefined(int minChunkByteSize, int avgChunkByteSize, int maxChunkByteSize) {
+            this.contentDefinedBoundaries =
+                    new ContentDefinedBoundaries(minChunkByteSize, avgChunkByteSize, maxChunkByteSize);
+            return this;
+        }
+
+        /**
+         * Sets the codec to compress the data of each chunk with. Data that does not compress well is left
+         * uncompressed, judged first by compressing a leading sample of each chunk. In content-defined mode, chunk
+         * boundaries and fingerprints are those of the uncompressed data.
+         *
+         * @param compressionCodec The compression codec, e.g. {@link DeflateCodec}.
+         * @return The Builder, for method chaining.
+         */
+        public Builder compressionCodec(CompressionCodec compressionCodec) {
+            this.compressionCodec = compressionCodec;
+            return this;
+        }
+
+        /**
+         * Sets the algorithm to compute the checksum of each chunk with, for stitchers to verify each chunk as it
+         * arrives. Chunks of a data blob chopped as a whole also carry the Merkle root over all checksums of the group,
+         * for stitchers to verify the restored blob without another pass over its bytes.
+         *
+         * @param checksumAlgorithm The checksum algorithm.
+         * @return The Builder, for method chaining.
+         */
+        public Builder checksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+            this.checksumAlgorithm = checksumAlgorithm;
+            return this;
+        }
+
+        /**
+         * Sets the number of Reed-Solomon parity chunks to add to each group for forward error correction, so that the
+         * original data blob can be restored without resending lost chunks. A Reed-Solomon code covers at most 256 data
+         * and parity chunks, so the data chunks of a larger group are split into stripes of near-equal size, each with
+         * its own parity chunks; each stripe is restored from any of its data and parity chunks, as many as it has data
+         * chunks. A group of at most 256 data and parity chunks is a single stripe. Parity chunks require equal-sized
+         * chunks, and cannot be combined with content-defined mode or compression. When chopping a stream, the parity
+         * chunks of each stripe follow its data chunks, and are accumulated in memory as the data chunks are read.
+         * Defaults to 0.
+         *
+         * @param parityChunkCount The number of parity chunks per stripe, less than 256.
+         * @return The Builder, for method chaining.
+         */
+        public Builder parityChunks(int parityChunkCount) {
+            this.parityChunkCount = parityChunkCount;
+            return this;
+        }
     }
 }
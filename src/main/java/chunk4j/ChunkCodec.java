@@ -0,0 +1,393 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import lombok.NonNull;
+
+/**
+ * The ChunkCodec class encodes chunks into, and decodes chunks from, a compact fixed-layout binary format, as an
+ * alternative to Java serialization for transporting chunks over the network. Each encoded chunk is laid out as:
+ *
+ * <ol>
+ *   <li>the group ID, as its most and least significant 64 bits, 8 bytes each, big-endian
+ *   <li>a flags byte, marking the optional fields present
+ *   <li>the chunk index, group size, offset, and blob byte size, each as an unsigned varint
+ *   <li>if flagged, the number of parity chunks of the chunk's group, as an unsigned varint
+ *   <li>if flagged, the ID of the codec the chunk's data is compressed with, as a single byte
+ *   <li>if flagged, the ID of the chunk's checksum algorithm, as a single byte, followed by the checksum bytes
+ *   <li>if flagged, the 32 bytes of the Merkle root of the chunk's group
+ *   <li>if flagged, the byte size of the chunk's fingerprint, as an unsigned varint, followed by the fingerprint bytes
+ *   <li>unless flagged as a reference chunk, the byte size of the chunk's data, as an unsigned varint, followed by the
+ *       data bytes
+ * </ol>
+ *
+ * <p>A decoded chunk holds a read-only view over its data bytes in the buffer decoded from, rather than a copy; the
+ * buffer content should not be modified while the chunk is in use. The class is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+public final class ChunkCodec {
+    private static final int GROUP_ID_BYTE_SIZE = 2 * Long.BYTES;
+    private static final int MAX_VARINT_BYTE_SIZE = 5;
+    private static final int MAX_VARLONG_BYTE_SIZE = 10;
+    private static final int VARINT_PAYLOAD_BITS = 7;
+    private static final int VARINT_PAYLOAD_MASK = 0x7F;
+    private static final int VARINT_CONTINUATION_BIT = 0x80;
+    private static final byte FLAG_FINGERPRINT = 0x01;
+    private static final byte FLAG_REFERENCE = 0x02;
+    private static final byte FLAG_COMPRESSED = 0x04;
+    private static final byte FLAG_CHECKSUM = 0x08;
+    private static final byte FLAG_MERKLE_ROOT = 0x10;
+    private static final byte FLAG_PARITY = 0x20;
+    private static final byte KNOWN_FLAGS =
+            FLAG_FINGERPRINT | FLAG_REFERENCE | FLAG_COMPRESSED | FLAG_CHECKSUM | FLAG_MERKLE_ROOT | FLAG_PARITY;
+    private static final int MERKLE_ROOT_BYTE_SIZE = 32;
+
+    private ChunkCodec() {}
+
+    /**
+     * Returns the number of bytes that the given chunk takes up when encoded.
+     *
+     * @param chunk The chunk to encode.
+     * @return The encoded byte size of the chunk.
+     */
+    public static int encodedByteSize(@NonNull Chunk chunk) {
+        int byteSize = GROUP_ID_BYTE_SIZE
+                + 1
+                + varintByteSize(chunk.getIndex())
+                + varintByteSize(chunk.getGroupSize())
+                + varintByteSize(chunk.getOffset())
+                + varintByteSize(chunk.getBlobByteSize());
+        if (chunk.getParityChunkCount() != 0) {
+            byteSize += varintByteSize(chunk.getParityChunkCount());
+        }
+        if (chunk.getCompressionId() != 0) {
+            byteSize++;
+        }
+        if (chunk.getChecksumAlgorithm() != null) {
+            byteSize += 1 + chunk.getChecksumAlgorithm().getChecksumByteSize();
+        }
+        if (chunk.getMerkleRoot() != null) {
+            byteSize += MERKLE_ROOT_BYTE_SIZE;
+        }
+        byte[] fingerprint = chunk.getFingerprint();
+        if (fingerprint != null) {
+            byteSize += varintByteSize(fingerprint.length) + fingerprint.length;
+        }
+        if (!chunk.isReference()) {
+            byteSize += varintByteSize(chunk.getByteSize()) + chunk.getByteSize();
+        }
+        return byteSize;
+    }
+
+    /**
+     * Encodes a chunk into a new heap buffer, sized exactly to the encoded chunk.
+     *
+     * @param chunk The chunk to encode.
+     * @return The buffer of the encoded chunk, positioned at its start.
+     */
+    public static @NonNull ByteBuffer encode(@NonNull Chunk chunk) {
+        ByteBuffer encoded = ByteBuffer.allocate(encodedByteSize(chunk));
+        encode(chunk, encoded);
+        encoded.flip();
+        return encoded;
+    }
+
+    /**
+     * Encodes a chunk into the given buffer, starting at its current position, and advances the position past the
+     * encoded chunk. The chunk's data bytes are copied straight from the chunk's own storage.
+     *
+     * @param chunk The chunk to encode.
+     * @param target The buffer to encode the chunk into, with at least {@link #encodedByteSize(Chunk)} bytes remaining.
+     * @throws java.nio.BufferOverflowException if the buffer does not have enough bytes remaining
+     */
+    public static void encode(@NonNull Chunk chunk, @NonNull ByteBuffer target) {
+        target.putLong(chunk.getGroupId().getMostSignificantBits());
+        target.putLong(chunk.getGroupId().getLeastSignificantBits());
+        byte[] fingerprint = chunk.getFingerprint();
+        target.put(flagsOf(chunk));
+        putVarint(target, chunk.getIndex());
+        putVarint(target, chunk.getGroupSize());
+        putVarint(target, chunk.getOffset());
+        putVarint(target, chunk.getBlobByteSize());
+        if (chunk.getParityChunkCount() != 0) {
+            putVarint(target, chunk.getParityChunkCount());
+        }
+        if (chunk.getCompressionId() != 0) {
+            target.put(chunk.getCompressionId());
+        }
+        if (chunk.getChecksumAlgorithm() != null) {
+            target.put(chunk.getChecksumAlgorithm().getId());
+            target.put(
+                    fixedSize(chunk.getChecksum(), chunk.getChecksumAlgorithm().getChecksumByteSize(), chunk));
+        }
+        if (chunk.getMerkleRoot() != null) {
+            target.put(fixedSize(chunk.getMerkleRoot(), MERKLE_ROOT_BYTE_SIZE, chunk));
+        }
+        if (fingerprint != null) {
+            putVarint(target, fingerprint.length);
+            target.put(fingerprint);
+        }
+        if (!chunk.isReference()) {
+            putVarint(target, chunk.getByteSize());
+            target.put(chunk.getByteBuffer());
+        }
+    }
+
+    /**
+     * Decodes a chunk from the given buffer, starting at its current position, and advances the position past the
+     * encoded chunk. The decoded chunk holds a read-only view over its data bytes in the buffer, without copying.
+     *
+     * @param source The buffer to decode the chunk from.
+     * @return The decoded chunk.
+     * @throws IllegalArgumentException if the buffer does not start with a well-formed encoded chunk
+     */
+    public static @NonNull Chunk decode(@NonNull ByteBuffer source) {
+        if (source.remaining() < GROUP_ID_BYTE_SIZE + 1) {
+            throw new IllegalArgumentException("Truncated chunk: " + source);
+        }
+        UUID groupId = new UUID(source.getLong(), source.getLong());
+        byte flags = source.get();
+        if ((flags & ~KNOWN_FLAGS) != 0 || (flags & (FLAG_REFERENCE | FLAG_FINGERPRINT)) == FLAG_REFERENCE) {
+            throw new IllegalArgumentException("Unsupported or malformed chunk flags: " + flags);
+        }
+        Chunk.ChunkBuilder chunk = Chunk.builder()
+                .groupId(groupId)
+                .index(getVarint(source))
+                .groupSize(getVarint(source))
+                .offset(getVarlong(source))
+                .blobByteSize(getVarlong(source));
+        if ((flags & FLAG_PARITY) != 0) {
+            chunk.parityChunkCount(getVarint(source));
+        }
+        if ((flags & FLAG_COMPRESSED) != 0) {
+            if (!source.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated chunk: " + source);
+            }
+            byte compressionId = source.get();
+            if (compressionId == 0) {
+                throw new IllegalArgumentException("Compressed chunk with reserved compression ID 0: " + source);
+            }
+            chunk.compressionId(compressionId);
+        }
+        if ((flags & FLAG_CHECKSUM) != 0) {
+            checkRemaining(source, 1);
+            ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.ofId(source.get());
+            byte[] checksum = new byte[checksumAlgorithm.getChecksumByteSize()];
+            checkRemaining(source, checksum.length);
+            source.get(checksum);
+            chunk.checksumAlgorithm(checksumAlgorithm).checksum(checksum);
+        }
+        if ((flags & FLAG_MERKLE_ROOT) != 0) {
+            byte[] merkleRoot = new byte[MERKLE_ROOT_BYTE_SIZE];
+            checkRemaining(source, merkleRoot.length);
+            source.get(merkleRoot);
+            chunk.merkleRoot(merkleRoot);
+        }
+        if ((flags & FLAG_FINGERPRINT) != 0) {
+            byte[] fingerprint = new byte[getVarint(source)];
+            checkRemaining(source, fingerprint.length);
+            source.get(fingerprint);
+            chunk.fingerprint(fingerprint);
+        }
+        if ((flags & FLAG_REFERENCE) == 0) {
+            int byteSize = getVarint(source);
+            checkRemaining(source, byteSize);
+            ByteBuffer bytes = source.slice();
+            bytes.limit(byteSize);
+            source.position(source.position() + byteSize);
+            chunk.byteBuffer(bytes.asReadOnlyBuffer());
+        }
+        return chunk.build();
+    }
+
+    /**
+     * Reads the most significant bits of the group ID of an encoded chunk starting at the buffer's current position,
+     * without advancing the position or decoding the chunk. Together with
+     * {@link #peekGroupIdLeastSignificantBits(ByteBuffer)}, this allows routing or looking up the group of an encoded
+     * chunk without allocating a UUID.
+     *
+     * @param source The buffer holding the encoded chunk.
+     * @return The most significant bits of the group ID.
+     * @throws IllegalArgumentException if the buffer is too short to hold a group ID
+     */
+    public static long peekGroupIdMostSignificantBits(@NonNull ByteBuffer source) {
+        checkRemaining(source, GROUP_ID_BYTE_SIZE);
+        return source.getLong(source.position());
+    }
+
+    /**
+     * Reads the least significant bits of the group ID of an encoded chunk starting at the buffer's current position,
+     * without advancing the position or decoding the chunk.
+     *
+     * @param source The buffer holding the encoded chunk.
+     * @return The least significant bits of the group ID.
+     * @throws IllegalArgumentException if the buffer is too short to hold a group ID
+     */
+    public static long peekGroupIdLeastSignificantBits(@NonNull ByteBuffer source) {
+        checkRemaining(source, GROUP_ID_BYTE_SIZE);
+        return source.getLong(source.position() + Long.BYTES);
+    }
+
+    /**
+     * Returns the flags byte of a chunk, marking the optional fields it has.
+     *
+     * @param chunk The chunk to encode.
+     * @return The flags byte.
+     */
+    private static byte flagsOf(Chunk chunk) {
+        byte flags = 0;
+        if (chunk.getFingerprint() != null) {
+            flags |= FLAG_FINGERPRINT;
+        }
+        if (chunk.isReference()) {
+            flags |= FLAG_REFERENCE;
+        }
+        if (chunk.getCompressionId() != 0) {
+            flags |= FLAG_COMPRESSED;
+        }
+        if (chunk.getChecksumAlgorithm() != null) {
+            flags |= FLAG_CHECKSUM;
+        }
+        if (chunk.getMerkleRoot() != null) {
+            flags |= FLAG_MERKLE_ROOT;
+        }
+        if (chunk.getParityChunkCount() != 0) {
+            flags |= FLAG_PARITY;
+        }
+        return flags;
+    }
+
+    /**
+     * Ensures a fixed-size field of a chunk being encoded has its expected byte size.
+     *
+     * @param field The field bytes.
+     * @param byteSize The expected byte size.
+     * @param chunk The chunk being encoded.
+     * @return The field bytes.
+     * @throws IllegalArgumentException if the field is missing or not of the expected byte size
+     */
+    private static byte[] fixedSize(@Nullable byte[] field, int byteSize, Chunk chunk) {
+        if (field == null || field.length != byteSize) {
+            throw new IllegalArgumentException("Chunk field not of expected byte size " + byteSize + ": " + chunk);
+        }
+        return field;
+    }
+
+    /**
+     * Ensures the buffer has enough bytes remaining for a field being decoded.
+     *
+     * @param source The buffer to decode from.
+     * @param byteSize The byte size of the field.
+     * @throws IllegalArgumentException if fewer bytes remain
+     */
+    private static void checkRemaining(ByteBuffer source, int byteSize) {
+        if (byteSize > source.remaining()) {
+            throw new IllegalArgumentException(
+                    "Truncated chunk data: expected " + byteSize + " bytes but only " + source.remaining() + " left");
+        }
+    }
+
+    /**
+     * Returns the number of bytes a non-negative value takes up as an unsigned varint.
+     *
+     * @param value The value to encode.
+     * @return The varint byte size.
+     */
+    static int varintByteSize(long value) {
+        int byteSize = 1;
+        while ((value >>>= VARINT_PAYLOAD_BITS) != 0) {
+            byteSize++;
+        }
+        return byteSize;
+    }
+
+    /**
+     * Writes a value as an unsigned varint: seven bits per byte, least significant first, with the high bit of each
+     * byte set if more bytes follow.
+     *
+     * @param target The buffer to write to.
+     * @param value The value to write.
+     */
+    static void putVarint(ByteBuffer target, long value) {
+        while ((value & ~VARINT_PAYLOAD_MASK) != 0) {
+            target.put((byte) ((value & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION_BIT));
+            value >>>= VARINT_PAYLOAD_BITS;
+        }
+        target.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned varint that has to fit in a non-negative int.
+     *
+     * @param source The buffer to read from.
+     * @return The value read.
+     */
+    static int getVarint(ByteBuffer source) {
+        long value = getVarlong(source, MAX_VARINT_BYTE_SIZE);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Varint out of int range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads an unsigned varint that has to fit in a non-negative long.
+     *
+     * @param source The buffer to read from.
+     * @return The value read.
+     */
+    static long getVarlong(ByteBuffer source) {
+        return getVarlong(source, MAX_VARLONG_BYTE_SIZE);
+    }
+
+    /**
+     * Reads an unsigned varint of up to the given number of bytes.
+     *
+     * @param source The buffer to read from.
+     * @param maxByteSize The maximum number of bytes of the varint.
+     * @return The value read.
+     */
+    private static long getVarlong(ByteBuffer source, int maxByteSize) {
+        long value = 0;
+        for (int i = 0; i < maxByteSize; i++) {
+            if (!source.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated varint: " + source);
+            }
+            byte b = source.get();
+            value |= (long) (b & VARINT_PAYLOAD_MASK) << (i * VARINT_PAYLOAD_BITS);
+            if ((b & VARINT_CONTINUATION_BIT) == 0) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("Varint out of long range: " + source);
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint longer than " + maxByteSize + " bytes: " + source);
+    }
+}
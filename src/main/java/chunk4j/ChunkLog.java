@@ -0,0 +1,670 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import elf4j.Logger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * The ChunkLog class is a write-ahead log of the chunks of pending stitching groups, for a stitcher to rebuild its
+ * pending groups after a restart. The log is a directory of memory-mapped segment files, partitioned into a fixed
+ * number of stripes by group ID, so that chunks of different groups are mostly appended under different locks; all
+ * records of a group go to the same stripe, in order. Each stripe is a sequence of segments, appended to one at a time.
+ * Each segment starts with a magic number, followed by records, each laid out as:
+ *
+ * <ol>
+ *   <li>the byte size of the record payload, as a 4-byte int, written last so that a partially written record reads as
+ *       the end of the segment
+ *   <li>the record type, as a single byte: a chunk, or the completion or eviction of a group
+ *   <li>the payload: the chunk as encoded by {@link ChunkCodec}, or the 16 bytes of the group ID
+ * </ol>
+ *
+ * <p>A done record cancels the chunk records of its group that precede it in the stripe; chunk records following it,
+ * e.g. of a group re-created under the same content-derived ID, start a new pending group. The log tracks the byte size
+ * of the chunk records of pending groups in each segment. Segments are deleted oldest first, once they hold no records
+ * of pending groups, so that a done record never outlives the chunk records it cancels; an oldest segment mostly
+ * holding garbage is compacted by copying the records of its pending groups into the current segment. Records are
+ * written to mapped memory, and survive the restart of the process, but are not forced to the storage device. It is
+ * thread-safe.
+ */
+@ThreadSafe
+final class ChunkLog implements AutoCloseable {
+    /** Default byte size of a segment file. */
+    static final int DEFAULT_SEGMENT_BYTE_SIZE = 64 * 1024 * 1024;
+
+    /** Number of stripes, fixed so that a log is always reopened with the same partitioning of groups. */
+    static final int STRIPES = 8;
+
+    private static final int MAGIC = 0x43484E4B;
+    private static final int RECORD_HEADER_BYTE_SIZE = Integer.BYTES + 1;
+    private static final int GROUP_ID_BYTE_SIZE = 2 * Long.BYTES;
+    private static final byte CHUNK_RECORD = 1;
+    private static final byte DONE_RECORD = 2;
+    /** An oldest segment is compacted when at most this inverse fraction of its bytes belongs to pending groups. */
+    private static final int COMPACTION_RATIO = 4;
+
+    private static final String SEGMENT_FILE_PREFIX = "chunk4j-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+    private static final String SEGMENT_FILE_NAME_FORMAT = SEGMENT_FILE_PREFIX + "%02d-%020d" + SEGMENT_FILE_SUFFIX;
+    private static final Logger logger = Logger.instance();
+
+    private final Path directory;
+    private final int segmentByteSize;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Constructor for the ChunkLog class.
+     *
+     * @param directory The directory of the segment files.
+     * @param segmentByteSize The byte size of a segment file.
+     */
+    private ChunkLog(Path directory, int segmentByteSize) {
+        this.directory = directory;
+        this.segmentByteSize = segmentByteSize;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    /**
+     * Opens the log in the given directory, creating the directory if it does not exist, and loads the chunks of the
+     * groups left pending in the existing segments, to be replayed by {@link #replay(Consumer)}.
+     *
+     * @param directory The directory of the segment files.
+     * @param segmentByteSize The byte size of a segment file.
+     * @return The opened log.
+     * @throws UncheckedIOException if reading the existing segments or creating a new one fails
+     */
+    static ChunkLog open(@NonNull Path directory, int segmentByteSize) {
+        if (segmentByteSize <= Integer.BYTES) {
+            throw new IllegalArgumentException("Segment byte size too small: " + segmentByteSize);
+        }
+        ChunkLog chunkLog = new ChunkLog(directory, segmentByteSize);
+        List<List<Path>> stripePaths = chunkLog.listSegments();
+        for (Stripe stripe : chunkLog.stripes) {
+            synchronized (stripe) {
+                stripe.load(stripePaths.get(stripe.index));
+                stripe.roll(0);
+            }
+        }
+        return chunkLog;
+    }
+
+    /**
+     * Feeds the chunks of the groups left pending in the log, in the order they were appended, to the given consumer,
+     * and releases them. The chunks hold read-only views over their data bytes in the mapped segments. A group whose
+     * logged chunks would complete it, e.g. if the process stopped between logging the completing chunk and marking the
+     * group done, is replayed without the chunk completing it, which the producer has to resend: that chunk was never
+     * acknowledged as stitched.
+     *
+     * @param consumer The consumer of the replayed chunks, typically stitching them into rebuilt groups.
+     */
+    void replay(Consumer<Chunk> consumer) {
+        List<List<Chunk>> groups = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                groups.addAll(stripe.replayedChunks.values());
+                stripe.replayedChunks.clear();
+            }
+        }
+        logger.atInfo().log("Replaying [{}] pending groups from chunk log in [{}]", groups.size(), directory);
+        groups.forEach(chunks -> pendingChunksOf(chunks).forEach(consumer));
+    }
+
+    /**
+     * Appends a chunk of a pending group to the log, unless the group is no longer pending. Checking the group under
+     * the stripe's lock ensures that no chunk record follows the done record of its group.
+     *
+     * @param chunk The chunk with its data resolved and decompressed.
+     * @param pending Whether the chunk's group is still pending.
+     * @return true if appended.
+     * @throws IllegalStateException if the log is closed
+     */
+    boolean append(@NonNull Chunk chunk, @NonNull BooleanSupplier pending) {
+        return stripeOf(chunk.getGroupId()).append(chunk, pending);
+    }
+
+    /**
+     * Marks a group as done upon completion or eviction, so that its chunk records become garbage, and compacts the
+     * group's stripe. No done record is appended if the log holds no chunk records of the group, or is closed.
+     *
+     * @param groupId The ID of the group.
+     */
+    void done(@NonNull UUID groupId) {
+        stripeOf(groupId).done(groupId);
+    }
+
+    /**
+     * Closes the log, unmapping its segments. The segment files are kept, for the log to be reopened. Chunks replayed
+     * from the log must no longer be accessed.
+     */
+    @Override
+    public void close() {
+        for (Stripe stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    /**
+     * Returns the chunks of a logged group to replay: all of them, unless they would complete the group, in which case
+     * the chunks from the first one completing the group on are left out.
+     *
+     * @param chunks The logged chunks of the group, in order of appending.
+     * @return The chunks to replay.
+     */
+    private static List<Chunk> pendingChunksOf(List<Chunk> chunks) {
+        int groupSize = chunks.get(0).getGroupSize();
+        Set<Integer> indexes = new HashSet<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            Integer index = chunks.get(i).getIndex();
+            if (!indexes.contains(index) && indexes.size() + 1 >= groupSize) {
+                logger.atWarn()
+                        .log(
+                                "Left out of replay the chunk completing group [{}]",
+                                chunks.get(i).getGroupId());
+                return chunks.subList(0, i);
+            }
+            indexes.add(index);
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the stripe of a group.
+     *
+     * @param groupId The group ID.
+     * @return The stripe.
+     */
+    private Stripe stripeOf(UUID groupId) {
+        long hash = (groupId.getMostSignificantBits() ^ groupId.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (STRIPES - 1)];
+    }
+
+    /**
+     * Lists the existing segment files of each stripe, in sequence order.
+     *
+     * @return The paths of the segment files, by stripe index.
+     */
+    private List<List<Path>> listSegments() {
+        List<Path> paths;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                paths = files.filter(path -> {
+                            String name = path.getFileName().toString();
+                            return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+                        })
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list chunk log segments in " + directory, e);
+        }
+        List<List<Path>> stripePaths = new ArrayList<>();
+        for (int i = 0; i < STRIPES; i++) {
+            stripePaths.add(new ArrayList<>());
+        }
+        for (Path path : paths) {
+            int stripeIndex = stripeIndexOf(path);
+            if (stripeIndex < 0) {
+                logger.atWarn().log("Skipped chunk log file of unexpected name [{}]", path);
+                continue;
+            }
+            stripePaths.get(stripeIndex).add(path);
+        }
+        return stripePaths;
+    }
+
+    /**
+     * Parses the stripe index from the name of a segment file.
+     *
+     * @param path The path of the segment file.
+     * @return The stripe index, or -1 if the name is not that of a segment file.
+     */
+    private static int stripeIndexOf(Path path) {
+        String[] parts = fileNameParts(path);
+        try {
+            int stripeIndex = parts.length == 2 ? Integer.parseInt(parts[0]) : -1;
+            return stripeIndex < STRIPES ? stripeIndex : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses the sequence number of a segment file within its stripe.
+     *
+     * @param path The path of the segment file, of a name checked by {@link #stripeIndexOf(Path)}.
+     * @return The sequence number.
+     */
+    private static long sequenceOf(Path path) {
+        return Long.parseLong(fileNameParts(path)[1]);
+    }
+
+    /**
+     * Splits the name of a segment file into its stripe index and sequence number parts.
+     *
+     * @param path The path of the segment file.
+     * @return The parts of the name between the prefix and the suffix.
+     */
+    private static String[] fileNameParts(Path path) {
+        String name = path.getFileName().toString();
+        return name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length())
+                .split("-", -1);
+    }
+
+    /**
+     * Deletes the file of a segment no longer needed.
+     *
+     * @param segment The segment to delete.
+     */
+    private static void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            logger.atWarn().log(e, "Failed to delete chunk log segment [{}]", segment.path);
+        }
+    }
+
+    /**
+     * Unmaps a mapped buffer right away rather than upon garbage collection, on a best-effort basis since Java offers
+     * no public API for it. Any later access to the buffer, or a view of it, is invalid.
+     *
+     * @param buffer The mapped buffer.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.atDebug().log(e, "Left chunk log segment to be unmapped upon garbage collection");
+        }
+    }
+
+    /**
+     * The Stripe class is a partition of the log, a sequence of segments holding the records of the groups whose IDs
+     * hash to it. All its state is guarded by its own lock.
+     */
+    private final class Stripe {
+        private final int index;
+        private final Deque<Segment> segments = new ArrayDeque<>();
+        private final Map<UUID, List<Chunk>> replayedChunks = new LinkedHashMap<>();
+        private long nextSegmentSequence;
+        private boolean compacting;
+        private boolean closed;
+
+        /**
+         * Constructor for the Stripe class.
+         *
+         * @param index The index of the stripe.
+         */
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Appends a chunk of a pending group to the stripe, unless the group is no longer pending.
+         *
+         * @param chunk The chunk with its data resolved and decompressed.
+         * @param pending Whether the chunk's group is still pending.
+         * @return true if appended.
+         */
+        synchronized boolean append(Chunk chunk, BooleanSupplier pending) {
+            if (closed) {
+                throw new IllegalStateException("Chunk log is closed");
+            }
+            if (!pending.getAsBoolean()) {
+                return false;
+            }
+            int payloadByteSize = ChunkCodec.encodedByteSize(chunk);
+            ByteBuffer payload = reserve(RECORD_HEADER_BYTE_SIZE + payloadByteSize);
+            ChunkCodec.encode(chunk, payload);
+            commit(CHUNK_RECORD, payloadByteSize, chunk.getGroupId());
+            return true;
+        }
+
+        /**
+         * Marks a group as done, and compacts the stripe.
+         *
+         * @param groupId The ID of the group.
+         */
+        synchronized void done(UUID groupId) {
+            if (closed) {
+                return;
+            }
+            boolean logged = false;
+            for (Segment segment : segments) {
+                logged |= segment.removePendingGroup(groupId);
+            }
+            if (!logged) {
+                return;
+            }
+            ByteBuffer payload = reserve(RECORD_HEADER_BYTE_SIZE + GROUP_ID_BYTE_SIZE);
+            payload.putLong(groupId.getMostSignificantBits());
+            payload.putLong(groupId.getLeastSignificantBits());
+            commit(DONE_RECORD, GROUP_ID_BYTE_SIZE, null);
+            compact();
+        }
+
+        /** Closes the stripe, unmapping its segments. */
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            replayedChunks.clear();
+            segments.forEach(segment -> unmap(segment.buffer));
+            segments.clear();
+        }
+
+        /**
+         * Reserves room for a record in the current segment, rolling over to a new segment if the current one is full.
+         *
+         * @param recordByteSize The byte size of the record, including its header.
+         * @return A view of the current segment positioned at the record payload, and limited to its end.
+         */
+        private ByteBuffer reserve(int recordByteSize) {
+            Segment current = segments.peekLast();
+            while (current == null || current.getRemaining() < recordByteSize) {
+                roll(recordByteSize);
+                current = segments.peekLast();
+            }
+            ByteBuffer payload = current.buffer.duplicate();
+            payload.limit(current.position + recordByteSize);
+            payload.position(current.position + RECORD_HEADER_BYTE_SIZE);
+            return payload;
+        }
+
+        /**
+         * Commits the record whose payload has been written at the current position of the current segment, by writing
+         * its header, byte size last.
+         *
+         * @param type The record type.
+         * @param payloadByteSize The byte size of the payload.
+         * @param pendingGroupId The ID of the group whose chunk the record holds, or null for a done record.
+         */
+        private void commit(byte type, int payloadByteSize, @Nullable UUID pendingGroupId) {
+            Segment current = segments.getLast();
+            int recordByteSize = RECORD_HEADER_BYTE_SIZE + payloadByteSize;
+            current.buffer.put(current.position + Integer.BYTES, type);
+            current.buffer.putInt(current.position, payloadByteSize);
+            current.position += recordByteSize;
+            if (pendingGroupId != null) {
+                current.addPendingGroup(pendingGroupId, recordByteSize);
+            }
+        }
+
+        /**
+         * Starts a new segment, and compacts the stripe.
+         *
+         * @param minRecordByteSize The byte size of the record to fit in the new segment, which is enlarged if needed.
+         */
+        private void roll(int minRecordByteSize) {
+            Path path = directory.resolve(String.format(SEGMENT_FILE_NAME_FORMAT, index, nextSegmentSequence++));
+            int byteSize = Math.max(segmentByteSize, Integer.BYTES + minRecordByteSize);
+            try (FileChannel fileChannel = FileChannel.open(
+                    path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, byteSize);
+                buffer.putInt(0, MAGIC);
+                segments.addLast(new Segment(path, buffer, Integer.BYTES));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to create chunk log segment " + path, e);
+            }
+            compact();
+        }
+
+        /**
+         * Deletes the oldest segments that hold no chunk records of pending groups, and compacts an oldest segment
+         * mostly holding garbage, until reaching one that holds enough records of pending groups, or the current
+         * segment.
+         */
+        private void compact() {
+            if (compacting) {
+                return;
+            }
+            compacting = true;
+            try {
+                while (segments.size() > 1) {
+                    Segment oldest = segments.getFirst();
+                    if (oldest.pendingByteSize > 0) {
+                        if (oldest.pendingByteSize * COMPACTION_RATIO > oldest.position) {
+                            return;
+                        }
+                        copyPendingRecords(oldest);
+                    }
+                    segments.removeFirst();
+                    delete(oldest);
+                }
+            } finally {
+                compacting = false;
+            }
+        }
+
+        /**
+         * Copies the chunk records of pending groups from a segment into the current segment.
+         *
+         * @param segment The segment to copy from.
+         */
+        private void copyPendingRecords(Segment segment) {
+            ByteBuffer records = segment.buffer.duplicate();
+            records.limit(segment.position);
+            records.position(Integer.BYTES);
+            int copied = 0;
+            while (records.remaining() >= RECORD_HEADER_BYTE_SIZE) {
+                int start = records.position();
+                int payloadByteSize = records.getInt(start);
+                byte type = records.get(start + Integer.BYTES);
+                records.position(start + RECORD_HEADER_BYTE_SIZE + payloadByteSize);
+                if (type != CHUNK_RECORD) {
+                    continue;
+                }
+                UUID groupId = new UUID(
+                        records.getLong(start + RECORD_HEADER_BYTE_SIZE),
+                        records.getLong(start + RECORD_HEADER_BYTE_SIZE + Long.BYTES));
+                if (!segment.pendingGroupByteSizes.containsKey(groupId)) {
+                    continue;
+                }
+                ByteBuffer payload = records.duplicate();
+                payload.limit(records.position());
+                payload.position(start + RECORD_HEADER_BYTE_SIZE);
+                reserve(RECORD_HEADER_BYTE_SIZE + payloadByteSize).put(payload);
+                commit(CHUNK_RECORD, payloadByteSize, groupId);
+                copied++;
+            }
+            logger.atDebug().log("Compacted chunk log segment [{}], copying [{}] records", segment.path, copied);
+        }
+
+        /**
+         * Loads the existing segments of the stripe in sequence order, tracking the chunk records of pending groups,
+         * and collecting their chunks to replay.
+         *
+         * @param paths The paths of the segment files of the stripe, in sequence order.
+         */
+        private void load(List<Path> paths) {
+            for (Path path : paths) {
+                nextSegmentSequence = Math.max(nextSegmentSequence, sequenceOf(path) + 1);
+                ByteBuffer buffer;
+                try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to map chunk log segment " + path, e);
+                }
+                if (buffer.capacity() < Integer.BYTES || buffer.getInt(0) != MAGIC) {
+                    logger.atWarn().log("Skipped chunk log file without segment header [{}]", path);
+                    continue;
+                }
+                Segment segment = new Segment(path, buffer, Integer.BYTES);
+                segments.addLast(segment);
+                loadRecords(segment);
+            }
+        }
+
+        /**
+         * Loads the records of a segment, up to the first partially written or malformed record. A done record cancels
+         * the chunk records of its group loaded so far, but not those following it.
+         *
+         * @param segment The segment to load, positioned right after its header.
+         */
+        private void loadRecords(Segment segment) {
+            ByteBuffer buffer = segment.buffer;
+            while (buffer.capacity() - segment.position >= RECORD_HEADER_BYTE_SIZE) {
+                int start = segment.position;
+                int payloadByteSize = buffer.getInt(start);
+                if (payloadByteSize <= 0) {
+                    return;
+                }
+                if (payloadByteSize > buffer.capacity() - start - RECORD_HEADER_BYTE_SIZE) {
+                    logger.atWarn().log("Truncated record at [{}] of chunk log segment [{}]", start, segment.path);
+                    return;
+                }
+                ByteBuffer payload = buffer.duplicate();
+                payload.limit(start + RECORD_HEADER_BYTE_SIZE + payloadByteSize);
+                payload.position(start + RECORD_HEADER_BYTE_SIZE);
+                byte type = buffer.get(start + Integer.BYTES);
+                if (type == CHUNK_RECORD) {
+                    Chunk chunk;
+                    try {
+                        chunk = ChunkCodec.decode(payload);
+                    } catch (IllegalArgumentException e) {
+                        logger.atWarn()
+                                .log(e, "Malformed record at [{}] of chunk log segment [{}]", start, segment.path);
+                        return;
+                    }
+                    replayedChunks
+                            .computeIfAbsent(chunk.getGroupId(), k -> new ArrayList<>())
+                            .add(chunk);
+                    segment.addPendingGroup(chunk.getGroupId(), RECORD_HEADER_BYTE_SIZE + payloadByteSize);
+                } else if (type == DONE_RECORD && payloadByteSize == GROUP_ID_BYTE_SIZE) {
+                    UUID groupId = new UUID(payload.getLong(), payload.getLong());
+                    replayedChunks.remove(groupId);
+                    segments.forEach(s -> s.removePendingGroup(groupId));
+                } else {
+                    logger.atWarn().log("Malformed record at [{}] of chunk log segment [{}]", start, segment.path);
+                    return;
+                }
+                segment.position = start + RECORD_HEADER_BYTE_SIZE + payloadByteSize;
+            }
+        }
+    }
+
+    /**
+     * The Segment class represents a segment file of the log, mapped into memory, along with the byte sizes of the
+     * chunk records it holds of pending groups. It is guarded by the lock of its stripe.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final ByteBuffer buffer;
+        private final Map<UUID, Integer> pendingGroupByteSizes = new HashMap<>();
+        private int position;
+        private long pendingByteSize;
+
+        /**
+         * Constructor for the Segment class.
+         *
+         * @param path The path of the segment file.
+         * @param buffer The mapped content of the segment file.
+         * @param position The position to read or write the next record at.
+         */
+        Segment(Path path, ByteBuffer buffer, int position) {
+            this.path = path;
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        /**
+         * Returns the byte size left for records in the segment.
+         *
+         * @return The remaining byte size.
+         */
+        int getRemaining() {
+            return buffer.capacity() - position;
+        }
+
+        /**
+         * Tracks a chunk record of a pending group held in the segment.
+         *
+         * @param groupId The ID of the group.
+         * @param recordByteSize The byte size of the record.
+         */
+        void addPendingGroup(UUID groupId, int recordByteSize) {
+            pendingGroupByteSizes.merge(groupId, recordByteSize, Integer::sum);
+            pendingByteSize += recordByteSize;
+        }
+
+        /**
+         * Stops tracking the chunk records of a group no longer pending.
+         *
+         * @param groupId The ID of the group.
+         * @return true if the segment held chunk records of the group.
+         */
+        boolean removePendingGroup(UUID groupId) {
+            Integer recordByteSize = pendingGroupByteSizes.remove(groupId);
+            if (recordByteSize == null) {
+                return false;
+            }
+            pendingByteSize -= recordByteSize;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * The ChunkPublisher class is a Reactive Streams {@link Publisher} of chunks, pulling each chunk from an iterator only
+ * when the subscriber has requested it, e.g. the lazy iterator of {@link ChunkChopper#chop(java.io.InputStream, long)}
+ * that reads the next chunk from its stream upon iteration. Chunks are emitted on the thread requesting them. As the
+ * iterator can only be consumed once, the publisher accepts a single subscriber. It requires the optional
+ * {@code org.reactivestreams:reactive-streams} dependency. It is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class ChunkPublisher implements Publisher<Chunk> {
+    private final Iterator<Chunk> chunks;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * Constructor for the ChunkPublisher class.
+     *
+     * @param chunks The chunks to publish.
+     */
+    private ChunkPublisher(Iterator<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * Creates a publisher of the chunks of an iterator.
+     *
+     * @param chunks The chunks to publish, e.g. as chopped by a {@link Chopper}.
+     * @return A new ChunkPublisher.
+     */
+    public static ChunkPublisher of(@NonNull Iterator<Chunk> chunks) {
+        return new ChunkPublisher(chunks);
+    }
+
+    @Override
+    public void subscribe(@NonNull Subscriber<? super Chunk> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(CancelledSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Chunk publisher allows only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    /**
+     * The ChunkSubscription class emits chunks to the subscriber as requested. Only the thread raising the outstanding
+     * demand from zero emits; other requests only add to the demand, so that signals to the subscriber are serialized.
+     */
+    private final class ChunkSubscription implements Subscription {
+        private final Subscriber<? super Chunk> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile boolean invalidRequest;
+
+        /**
+         * Constructor for the ChunkSubscription class.
+         *
+         * @param subscriber The subscriber.
+         */
+        ChunkSubscription(Subscriber<? super Chunk> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = true;
+                n = 1;
+            }
+            if (Demand.add(requested, n) == 0) {
+                emit();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /** Emits chunks until the outstanding demand is met, or the chunks run out. */
+        private void emit() {
+            long emitted = 0;
+            while (true) {
+                long demand = requested.get();
+                while (emitted != demand) {
+                    if (cancelled) {
+                        return;
+                    }
+                    if (invalidRequest) {
+                        cancelled = true;
+                        subscriber.onError(new IllegalArgumentException("Requested chunk count has to be positive"));
+                        return;
+                    }
+                    if (terminated()) {
+                        return;
+                    }
+                    Chunk chunk;
+                    try {
+                        chunk = chunks.next();
+                    } catch (RuntimeException e) {
+                        cancelled = true;
+                        subscriber.onError(e);
+                        return;
+                    }
+                    subscriber.onNext(chunk);
+                    emitted++;
+                }
+                if (cancelled || terminated()) {
+                    return;
+                }
+                if (Demand.consume(requested, emitted) == 0) {
+                    return;
+                }
+                emitted = 0;
+            }
+        }
+
+        /**
+         * Checks whether the chunks have run out, signalling completion if so, or the error if reading ahead in the
+         * stream fails, instead of throwing it to the requesting thread.
+         *
+         * @return true if the subscription is terminated, false if there is a next chunk to emit.
+         */
+        private boolean terminated() {
+            try {
+                if (chunks.hasNext()) {
+                    return false;
+                }
+            } catch (RuntimeException e) {
+                cancelled = true;
+                subscriber.onError(e);
+                return true;
+            }
+            cancelled = true;
+            subscriber.onComplete();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import elf4j.Logger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The ChunkRouter class routes each chunk to the one node, among a set of stitcher nodes, that owns the chunk's group,
+ * so that all chunks of a group are stitched on the same node even when a group's chunks are received by different
+ * nodes. Group ownership is decided by rendezvous (highest random weight) hashing of the group ID over the node IDs:
+ * each node scores every group by a hash of both IDs, and the node of the highest score owns the group. When a node
+ * joins or leaves, only the groups it wins or owned change owners, and no other node's groups move.
+ *
+ * <p>A chunk of a group owned by the local node is stitched by the local stitcher; any other chunk is forwarded to its
+ * owner through the {@link ChunkTransport}, and arrives at the owner's {@link #receive(Chunk)}. Groups pending on a
+ * node that loses their ownership upon a membership change are not handed over, and expire as configured on the local
+ * stitcher, unless their remaining chunks are still routed to it. It is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class ChunkRouter implements Stitcher {
+    private static final Logger logger = Logger.instance();
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final String localNodeId;
+    private final Stitcher localStitcher;
+    private final ChunkTransport transport;
+    private volatile Node[] nodes;
+
+    /**
+     * Private constructor for the ChunkRouter class. It is used by the Builder class to create a new instance of
+     * ChunkRouter.
+     *
+     * @param builder The builder used to configure the ChunkRouter.
+     */
+    private ChunkRouter(@NonNull Builder builder) {
+        if (builder.localNodeId == null || builder.localStitcher == null || builder.transport == null) {
+            throw new IllegalArgumentException("Local node ID, local stitcher, and transport have to be configured");
+        }
+        this.localNodeId = builder.localNodeId;
+        this.localStitcher = builder.localStitcher;
+        this.transport = builder.transport;
+        setNodes(builder.nodeIds);
+    }
+
+    /**
+     * Replaces the set of nodes that groups are routed over, e.g. when a node joins or leaves. Only the groups owned by
+     * a leaving node, or won by a joining node, change owners.
+     *
+     * @param nodeIds The IDs of the nodes, including the local node if it stitches any groups.
+     */
+    public void setNodes(@NonNull Collection<String> nodeIds) {
+        Set<String> distinctNodeIds = new LinkedHashSet<>(nodeIds);
+        if (distinctNodeIds.isEmpty() || distinctNodeIds.contains(null)) {
+            throw new IllegalArgumentException("Nodes have to be a non-empty set of node IDs: " + nodeIds);
+        }
+        this.nodes = distinctNodeIds.stream()
+                .map(nodeId -> new Node(nodeId, hashOf(nodeId)))
+                .toArray(Node[]::new);
+        logger.atInfo().log("Routing chunk groups of local node [{}] over nodes {}", localNodeId, distinctNodeIds);
+    }
+
+    /**
+     * Returns the IDs of the nodes that groups are currently routed over.
+     *
+     * @return The node IDs.
+     */
+    public Set<String> getNodes() {
+        Set<String> nodeIds = new LinkedHashSet<>();
+        for (Node node : nodes) {
+            nodeIds.add(node.getId());
+        }
+        return Collections.unmodifiableSet(nodeIds);
+    }
+
+    /**
+     * Returns the ID of the node owning a group, i.e. the node whose rendezvous score for the group is the highest.
+     *
+     * @param groupId The group ID.
+     * @return The ID of the owner node.
+     */
+    public String ownerOf(@NonNull UUID groupId) {
+        long groupHash = mix(groupId.getMostSignificantBits() ^ mix(groupId.getLeastSignificantBits()));
+        Node owner = null;
+        long ownerScore = 0;
+        for (Node node : nodes) {
+            long score = mix(node.getHash() ^ groupHash);
+            if (owner == null
+                    || score > ownerScore
+                    || (score == ownerScore && node.getId().compareTo(owner.getId()) < 0)) {
+                owner = node;
+                ownerScore = score;
+            }
+        }
+        return owner.getId();
+    }
+
+    /**
+     * Stitches the chunk locally if its group is owned by the local node, or forwards it to the owner node otherwise.
+     *
+     * @param chunk The chunk to be routed to its group's owner.
+     * @return An Optional containing the original data bytes if the chunk is stitched locally and is the last one
+     *     expected by its group, or an empty Optional otherwise.
+     */
+    @Override
+    public Optional<byte[]> stitch(@NonNull Chunk chunk) {
+        return forwardUnlessLocal(chunk) ? Optional.empty() : localStitcher.stitch(chunk);
+    }
+
+    /**
+     * Stitches the chunk locally, into a buffer, if its group is owned by the local node, or forwards it to the owner
+     * node otherwise.
+     *
+     * @param chunk The chunk to be routed to its group's owner.
+     * @return An Optional containing the buffer of the original data bytes if the chunk is stitched locally and is the
+     *     last one expected by its group, or an empty Optional otherwise.
+     */
+    @Override
+    public Optional<ByteBuffer> stitchToBuffer(@NonNull Chunk chunk) {
+        return forwardUnlessLocal(chunk) ? Optional.empty() : localStitcher.stitchToBuffer(chunk);
+    }
+
+    /**
+     * Stitches a chunk forwarded by another node. The chunk is stitched locally even if this node's view of the nodes
+     * says otherwise, so that nodes with momentarily different views do not forward a chunk back and forth.
+     *
+     * @param chunk The forwarded chunk.
+     * @return An Optional containing the original data bytes if the chunk is the last one expected by its group, or an
+     *     empty Optional otherwise.
+     */
+    public Optional<byte[]> receive(@NonNull Chunk chunk) {
+        return localStitcher.stitch(chunk);
+    }
+
+    /**
+     * Forwards a chunk to the owner of its group, unless the owner is the local node.
+     *
+     * @param chunk The chunk to route.
+     * @return true if forwarded, false if the chunk is to be stitched locally.
+     */
+    private boolean forwardUnlessLocal(Chunk chunk) {
+        String owner = ownerOf(chunk.getGroupId());
+        if (owner.equals(localNodeId)) {
+            return false;
+        }
+        logger.atTrace().log("Forwarding chunk {} to node [{}]", chunk, owner);
+        transport.forward(owner, chunk);
+        return true;
+    }
+
+    /**
+     * Hashes a node ID by 64-bit FNV-1a over its UTF-8 bytes, finalized by {@link #mix(long)}.
+     *
+     * @param nodeId The node ID.
+     * @return The hash.
+     */
+    private static long hashOf(String nodeId) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : nodeId.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Mixes the bits of a 64-bit value by the SplitMix64 finalizer, so that every input bit affects every output bit.
+     *
+     * @param z The value.
+     * @return The mixed value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /** The Node class holds a node ID along with its precomputed hash. */
+    @Value
+    private static class Node {
+        String id;
+        long hash;
+    }
+
+    /** The Builder class provides a fluent API for configuring and creating a new ChunkRouter. */
+    public static class Builder {
+        @Nullable private String localNodeId;
+
+        @Nullable private Stitcher localStitcher;
+
+        @Nullable private ChunkTransport transport;
+
+        private Collection<String> nodeIds = Collections.emptySet();
+
+        /**
+         * Builds a new ChunkRouter with the current configuration of the Builder.
+         *
+         * @return A new ChunkRouter.
+         */
+        public ChunkRouter build() {
+            return new ChunkRouter(this);
+        }
+
+        /**
+         * Sets the local node, and the stitcher that stitches the groups it owns.
+         *
+         * @param nodeId The ID of the local node.
+         * @param stitcher The local stitcher.
+         * @return The Builder, for method chaining.
+         */
+        public Builder localNode(@NonNull String nodeId, @NonNull Stitcher stitcher) {
+            this.localNodeId = nodeId;
+            this.localStitcher = stitcher;
+            return this;
+        }
+
+        /**
+         * Sets the initial set of nodes that groups are routed over.
+         *
+         * @param nodeIds The IDs of the nodes, including the local node if it stitches any groups.
+         * @return The Builder, for method chaining.
+         */
+        public Builder nodes(@NonNull Collection<String> nodeIds) {
+            this.nodeIds = nodeIds;
+            return this;
+        }
+
+        /**
+         * Sets the transport forwarding chunks to the nodes owning their groups.
+         *
+         * @param transport The transport.
+         * @return The Builder, for method chaining.
+         */
+        public Builder transport(@NonNull ChunkTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+    }
+}
@@ -26,13 +26,28 @@ package chunk4j;
 
 import com.github.benmanes.caffeine.cache.*;
 import elf4j.Logger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
-import lombok.Data;
 import lombok.NonNull;
 import lombok.ToString;
 
@@ -40,18 +55,76 @@ import lombok.ToString;
  * The ChunkStitcher class is responsible for stitching together chunks of data. It is thread-safe and uses a cache to
  * store chunk groups. The class also provides a Builder for easy configuration.
  *
+ * <p>By default, the original data of each pending group is restored on the Java heap. Optionally, it can be restored
+ * off heap, in direct buffers recycled through a pool. Also optionally, groups above a configured byte size, or
+ * arriving while the total byte size of pending groups in memory is above a configured threshold, are spilled into
+ * memory-mapped temporary files instead, so that memory usage stays bounded regardless of how many large groups are
+ * pending. Use {@link #stitchToBuffer(Chunk)} to receive the data of an off-heap or spilled group as a direct or mapped
+ * buffer rather than a copy on heap.
+ *
+ * <p>Chunks from producers predating offsets, which carry neither offset nor blob byte size, are positioned from the
+ * fixed chunk capacity and the last chunk size of their group, once known.
+ *
+ * <p>In the optional durable mode, the chunks of pending groups are also appended to a write-ahead log of memory-mapped
+ * segment files, from which the pending groups are rebuilt when a stitcher is restarted on the same log directory.
+ *
  * @author Qingtian Wang
  */
 @ThreadSafe
-public final class ChunkStitcher implements Stitcher {
+public final class ChunkStitcher implements Stitcher, AutoCloseable {
     private static final int DEFAULT_MAX_STITCHED_BYTE_SIZE = Integer.MAX_VALUE;
+    private static final int MAX_ARRAY_BYTE_SIZE = Integer.MAX_VALUE - 8;
     private static final long DEFAULT_MAX_STITCHING_GROUPS = Long.MAX_VALUE;
+    private static final long DEFAULT_MAX_PENDING_BYTE_SIZE = Long.MAX_VALUE;
     private static final long DEFAULT_MAX_STITCH_TIME_NANOS = Long.MAX_VALUE;
+    private static final long DEFAULT_SPILL_THRESHOLD_BYTE_SIZE = Long.MAX_VALUE;
+    private static final long DEFAULT_OFF_HEAP_POOL_BYTE_SIZE = 64L * 1024 * 1024;
+    private static final String SPILL_FILE_PREFIX = "chunk4j-";
+    private static final String SPILL_FILE_SUFFIX = ".spill";
+
+    /**
+     * Returned by {@link #addToGroup(Chunk)} in place of a group for a chunk dropped by its group as a duplicate, or as
+     * a surplus chunk of a restorable group; never released.
+     */
+    private static final ChunkStitchingGroup DROPPED_CHUNK_GROUP =
+            new ChunkStitchingGroup(Chunk.builder().build(), ByteBuffer.allocate(0), null, Storage.HEAP);
+
+    private static final String MISSING_CHUNKS_NOTIFIER_THREAD_NAME = "chunk4j-missing-chunks-notifier";
     private static final Logger logger = Logger.instance();
     private final Cache<UUID, ChunkStitchingGroup> chunkGroups;
+    private final LegacyChunkPositioner legacyChunks;
     private final Duration maxStitchTime;
     private final int maxStitchedByteSize;
     private final long maxStitchingGroups;
+    private final long maxPendingByteSize;
+    private final long spillGroupByteSize;
+    private final long spillPendingByteSize;
+
+    @Nullable private final Path spillDirectory;
+
+    @Nullable private final DirectBufferPool offHeapPool;
+
+    @Nullable private final ChunkStore chunkStore;
+
+    private final CompressionCodecs compressionCodecs;
+
+    @Nullable private final TombstoneSet tombstones;
+
+    @Nullable private final MissingChunksListener missingChunksListener;
+
+    @Nullable private final StitchListener stitchListener;
+
+    @Nullable private final EvictionListener evictionListener;
+
+    @Nullable private final ScheduledExecutorService missingChunksNotifier;
+
+    private final long missingChunksNoticeDelayNanos;
+
+    @Nullable private final ChunkLog chunkLog;
+
+    private final AtomicLong pendingInMemoryByteSize = new AtomicLong();
+
+    private volatile boolean closed;
 
     /**
      * Private constructor for the ChunkStitcher class. It is used by the Builder class to create a new instance of
@@ -63,27 +136,104 @@ public final class ChunkStitcher implements Stitcher {
         maxStitchTime = builder.maxStitchTime;
         maxStitchingGroups = builder.maxStitchingGroups;
         maxStitchedByteSize = builder.maxStitchedByteSize;
-        this.chunkGroups = Caffeine.newBuilder()
-                .expireAfter(new SinceCreation(maxStitchTime))
-                .maximumSize(maxStitchingGroups)
-                .evictionListener(new InvoluntaryEvictionLogger())
-                .build();
+        maxPendingByteSize = builder.maxPendingByteSize;
+        spillGroupByteSize = builder.spillGroupByteSize;
+        spillPendingByteSize = builder.spillPendingByteSize;
+        spillDirectory = builder.spillDirectory;
+        offHeapPool = builder.offHeap ? new DirectBufferPool(builder.offHeapPoolByteSize) : null;
+        chunkStore = builder.chunkStore;
+        compressionCodecs = new CompressionCodecs(builder.compressionCodecs);
+        tombstones = builder.tombstoneCapacity == 0 ? null : new TombstoneSet(builder.tombstoneCapacity);
+        missingChunksListener = builder.missingChunksListener;
+        stitchListener = builder.stitchListener;
+        evictionListener = builder.evictionListener;
+        if (missingChunksListener == null) {
+            missingChunksNotifier = null;
+            missingChunksNoticeDelayNanos = 0;
+        } else {
+            if (maxStitchTime.toNanos() == DEFAULT_MAX_STITCH_TIME_NANOS
+                    || builder.missingChunksLeadTime.isNegative()
+                    || builder.missingChunksLeadTime.compareTo(maxStitchTime) >= 0) {
+                throw new IllegalArgumentException("Lead time of missing chunks notice ["
+                        + builder.missingChunksLeadTime
+                        + "] has to be non-negative and less than a configured max stitch time [" + maxStitchTime
+                        + "]");
+            }
+            missingChunksNoticeDelayNanos =
+                    maxStitchTime.minus(builder.missingChunksLeadTime).toNanos();
+            ScheduledThreadPoolExecutor notifier = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, MISSING_CHUNKS_NOTIFIER_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            notifier.setRemoveOnCancelPolicy(true);
+            missingChunksNotifier = notifier;
+        }
+        Caffeine<UUID, ChunkStitchingGroup> cacheBuilder = Caffeine.newBuilder()
+                .expireAfter(new SinceCreation<UUID, ChunkStitchingGroup>(maxStitchTime))
+                .evictionListener(new InvoluntaryEvictionLogger());
+        if (maxPendingByteSize == DEFAULT_MAX_PENDING_BYTE_SIZE) {
+            cacheBuilder.maximumSize(maxStitchingGroups);
+        } else if (maxStitchingGroups == DEFAULT_MAX_STITCHING_GROUPS) {
+            cacheBuilder
+                    .maximumWeight(maxPendingByteSize)
+                    .weigher((UUID groupId, ChunkStitchingGroup group) -> group.getStitchedByteSize());
+        } else {
+            throw new IllegalArgumentException("Max stitching groups [" + maxStitchingGroups
+                    + "] and max pending byte size [" + maxPendingByteSize + "] cannot be both configured");
+        }
+        this.chunkGroups = cacheBuilder.build();
+        this.legacyChunks = new LegacyChunkPositioner(maxStitchTime, maxStitchingGroups);
+        if (builder.durableLogDirectory == null) {
+            this.chunkLog = null;
+        } else {
+            this.chunkLog = ChunkLog.open(builder.durableLogDirectory, builder.durableLogSegmentByteSize);
+            chunkLog.replay(this::stitchReplayed);
+        }
     }
 
     /**
-     * Helper method to create an Optional from a byte array. If the byte array is null, an empty Optional is returned.
-     * Otherwise, an Optional containing the byte array is returned.
+     * Adds a chunk replayed from the durable log to its rebuilt group. The log leaves out of replay any chunk that
+     * would complete its group, so replay should not complete a group; if it does, e.g. from a log written by a
+     * different configuration, the group is discarded rather than delivered to no one.
      *
-     * @param bytes The byte array to wrap in an Optional.
-     * @return An Optional containing the byte array, or an empty Optional if the byte array is null.
+     * @param chunk The replayed chunk.
      */
-    private static Optional<byte[]> optionalOf(@Nullable byte[] bytes) {
-        return bytes == null ? Optional.empty() : Optional.of(bytes);
+    private void stitchReplayed(Chunk chunk) {
+        try {
+            ChunkStitchingGroup completedGroup = addResolvedToGroup(chunk, true, false);
+            if (completedGroup != null && completedGroup != DROPPED_CHUNK_GROUP) {
+                logger.atWarn().log("Discarded group {} completed by replay of the durable log", completedGroup);
+                release(completedGroup, true);
+            }
+        } catch (RuntimeException e) {
+            logger.atWarn().log(e, "Dropped chunk replayed from the durable log: {}", chunk);
+        }
+    }
+
+    /**
+     * Returns the bytes of a stitched buffer as a byte array, without copying if the buffer is backed by exactly such
+     * an array.
+     *
+     * @param stitchedBuffer The buffer holding the restored original data.
+     * @return The restored original data bytes.
+     */
+    private static byte[] bytesOf(@NonNull ByteBuffer stitchedBuffer) {
+        if (stitchedBuffer.hasArray()
+                && stitchedBuffer.arrayOffset() == 0
+                && stitchedBuffer.position() == 0
+                && stitchedBuffer.remaining() == stitchedBuffer.array().length) {
+            return stitchedBuffer.array();
+        }
+        byte[] bytes = new byte[stitchedBuffer.remaining()];
+        stitchedBuffer.duplicate().get(bytes);
+        return bytes;
     }
 
     /**
      * Adds a chunk to its corresponding chunk group. If the chunk is the last one expected by the group, the original
-     * data bytes are restored and returned.
+     * data bytes are restored and returned. If the group was stitched off heap or spilled into a memory-mapped file,
+     * the restored bytes are copied onto heap; use {@link #stitchToBuffer(Chunk)} to avoid the copy.
      *
      * @param chunk The chunk to be added to its corresponding chunk group.
      * @return An Optional containing the original data bytes if the chunk is the last one expected by the group, or an
@@ -91,32 +241,388 @@ public final class ChunkStitcher implements Stitcher {
      */
     @Override
     public Optional<byte[]> stitch(@NonNull Chunk chunk) {
-        logger.atTrace().log(() -> "Received: " + chunk);
-        StitchedBytesHolder stitchedBytesHolder = new StitchedBytesHolder();
-        chunkGroups.asMap().compute(chunk.getGroupId(), (k, group) -> {
+        if (isTombstoned(chunk)) {
+            return Optional.empty();
+        }
+        ChunkStitchingGroup completedGroup = addToGroup(chunk);
+        if (completedGroup == null || completedGroup == DROPPED_CHUNK_GROUP) {
+            return Optional.empty();
+        }
+        byte[] stitchedBytes = bytesOf(completedGroup.getStitchedBuffer());
+        release(completedGroup, true);
+        return Optional.of(stitchedBytes);
+    }
+
+    /**
+     * Adds a chunk to its corresponding chunk group. If the chunk is the last one expected by the group, the original
+     * data bytes are restored and returned as the buffer the group was stitched into: a buffer wrapping a byte array on
+     * heap, a direct buffer if the group was stitched off heap, or a memory-mapped buffer if the group was spilled. A
+     * returned direct buffer is owned by the caller, and is not recycled into the stitcher's off-heap pool.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @return An Optional containing the buffer of the original data bytes if the chunk is the last one expected by the
+     *     group, or an empty Optional otherwise.
+     */
+    @Override
+    public Optional<ByteBuffer> stitchToBuffer(@NonNull Chunk chunk) {
+        if (isTombstoned(chunk)) {
+            return Optional.empty();
+        }
+        ChunkStitchingGroup completedGroup = addToGroup(chunk);
+        if (completedGroup == null || completedGroup == DROPPED_CHUNK_GROUP) {
+            return Optional.empty();
+        }
+        release(completedGroup, false);
+        return Optional.of(completedGroup.getStitchedBuffer());
+    }
+
+    /**
+     * Adds a chunk to its corresponding chunk group, and reports the outcome as a status rather than an Optional. If
+     * the chunk is the last one expected by the group, the original data bytes are restored and delivered to the
+     * configured stitch listener on the calling thread, before this method returns; exceptions thrown by the listener
+     * are propagated to the caller. Meant for high chunk rates: adding a chunk that does not complete its group
+     * allocates nothing, provided the chunk holds its data bytes in an array or a writable heap buffer, without
+     * compression, checksum, or fingerprint to verify, and the group is stitched on heap without a durable log.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @return The outcome of stitching the chunk.
+     * @throws IllegalStateException if no stitch listener is configured, or the stitcher is closed
+     */
+    public StitchStatus stitchToListener(@NonNull Chunk chunk) {
+        if (stitchListener == null) {
+            throw new IllegalStateException("Stitch listener has to be configured");
+        }
+        if (isTombstoned(chunk)) {
+            return StitchStatus.DROPPED;
+        }
+        ChunkStitchingGroup completedGroup = addToGroup(chunk);
+        if (completedGroup == DROPPED_CHUNK_GROUP) {
+            return StitchStatus.DROPPED;
+        }
+        if (completedGroup == null) {
+            return StitchStatus.PENDING;
+        }
+        byte[] stitchedBytes = bytesOf(completedGroup.getStitchedBuffer());
+        release(completedGroup, true);
+        stitchListener.onStitched(chunk.getGroupId(), stitchedBytes);
+        return StitchStatus.COMPLETED;
+    }
+
+    /**
+     * Adds a chunk to its corresponding chunk group, and removes the group from the cache if the chunk is the last one
+     * expected by the group. A completed group carrying a Merkle root is verified against the checksums of its chunks.
+     * If tombstones are configured, the ID of a completed group is recorded before the group is removed; callers drop
+     * the chunks of recorded groups beforehand, and a chunk of a group recorded meanwhile does not create a new group.
+     * The cache is only locked to look up or create the group; the chunk's bytes are copied into the group's buffer
+     * outside the lock, concurrently with other chunks of the same group.
+     *
+     * @param receivedChunk The chunk to be added to its corresponding chunk group.
+     * @return The completed group if the chunk is the last one expected by the group, {@link #DROPPED_CHUNK_GROUP} if
+     *     the chunk is dropped, or null otherwise.
+     */
+    @Nullable private ChunkStitchingGroup addToGroup(@NonNull Chunk receivedChunk) {
+        if (closed) {
+            throw new IllegalStateException("Stitcher is closed");
+        }
+        if (logger.atTrace().isEnabled()) {
+            logger.atTrace().log("Received: {}", receivedChunk);
+        }
+        Chunk chunk = resolve(receivedChunk);
+        if (chunk.isLegacy()) {
+            return addLegacyToGroup(chunk);
+        }
+        return addResolvedToGroup(chunk, false, chunk == receivedChunk);
+    }
+
+    /**
+     * Adds a chunk from a producer predating offsets to its corresponding chunk group, once the offsets and blob byte
+     * size of the group's chunks are derived, along with the chunks of the group held back until then.
+     *
+     * @param chunk The chunk, carrying neither offset nor blob byte size.
+     * @return The completed group if a positioned chunk is the last one expected by the group,
+     *     {@link #DROPPED_CHUNK_GROUP} if the chunk is dropped, or null otherwise.
+     */
+    @Nullable private ChunkStitchingGroup addLegacyToGroup(Chunk chunk) {
+        ChunkStitchingGroup completedGroup = null;
+        ChunkStitchingGroup outcome = null;
+        for (Chunk positioned : legacyChunks.position(chunk)) {
+            outcome = addResolvedToGroup(positioned, false, false);
+            if (outcome != null && outcome != DROPPED_CHUNK_GROUP) {
+                completedGroup = outcome;
+            }
+        }
+        return completedGroup != null ? completedGroup : outcome;
+    }
+
+    /**
+     * Adds a chunk, verified and with its data resolved, to its corresponding chunk group. If a durable log is
+     * configured, the chunk is appended to the log before it is added to the group, unless it is replayed from the log,
+     * and a completed group is marked done in the log.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @param replayed Whether the chunk is replayed from the durable log.
+     * @param checksummedAsStitched Whether the checksum of the chunk covers its bytes as stitched, i.e. the chunk was
+     *     received neither compressed nor by reference.
+     * @return The completed group if the chunk is the last one expected by the group, {@link #DROPPED_CHUNK_GROUP} if
+     *     the chunk is dropped as a duplicate, a surplus chunk, or a chunk of a group completed meanwhile, or null
+     *     otherwise.
+     */
+    @Nullable private ChunkStitchingGroup addResolvedToGroup(Chunk chunk, boolean replayed, boolean checksummedAsStitched) {
+        while (true) {
+            ChunkStitchingGroup group = chunkGroups.getIfPresent(chunk.getGroupId());
+            if (group == null) {
+                group = chunkGroups.get(
+                        chunk.getGroupId(),
+                        k -> isTombstoned(chunk) ? null : scheduleMissingChunksNotice(k, newStitchingGroup(chunk)));
+            }
             if (group == null) {
-                group = new ChunkStitchingGroup(chunk.getGroupSize());
-            }
-            checkStitchingGroupByteSize(chunk, group);
-            byte[] stitchedBytes = group.addAndStitch(chunk);
-            stitchedBytesHolder.setStitchedBytes(stitchedBytes);
-            return stitchedBytes == null ? group : null;
-        });
-        return optionalOf(stitchedBytesHolder.getStitchedBytes());
+                return DROPPED_CHUNK_GROUP;
+            }
+            if (!group.pin()) {
+                Thread.yield();
+                continue;
+            }
+            StitchStatus status = StitchStatus.DROPPED;
+            boolean completed = false;
+            boolean corrupt = false;
+            try {
+                if (!replayed && chunkLog != null) {
+                    chunkLog.append(chunk, group::isPending);
+                }
+                status = group.add(chunk, checksummedAsStitched);
+                completed = status == StitchStatus.COMPLETED;
+            } finally {
+                if (completed) {
+                    group.complete();
+                    corrupt = !group.matchesMerkleRoot();
+                    if (!corrupt && tombstones != null) {
+                        tombstones.add(chunk.getGroupId());
+                    }
+                    chunkGroups.asMap().remove(chunk.getGroupId(), group);
+                    if (chunkLog != null) {
+                        chunkLog.done(chunk.getGroupId());
+                    }
+                }
+                if (group.unpin()) {
+                    release(group, true);
+                }
+            }
+            if (corrupt) {
+                release(group, true);
+                logger.atWarn().log("Discarded group {} not matching its Merkle root", group);
+                throw new CorruptChunkException(
+                        chunk.getGroupId(),
+                        group.corruptChunkIndexes(),
+                        true,
+                        "Stitched group does not match its Merkle root");
+            }
+            if (status == StitchStatus.DROPPED) {
+                return DROPPED_CHUNK_GROUP;
+            }
+            return completed ? group : null;
+        }
+    }
+
+    /**
+     * Returns the indexes of the chunks still missing from a pending group, e.g. to ask the producer to resend only
+     * those chunks.
+     *
+     * @param groupId The group ID.
+     * @return An Optional containing the indexes of the missing chunks in ascending order, or an empty Optional if no
+     *     group of the ID is pending.
+     */
+    public Optional<int[]> missingChunkIndexes(@NonNull UUID groupId) {
+        ChunkStitchingGroup group = chunkGroups.asMap().get(groupId);
+        return group == null ? Optional.empty() : Optional.of(group.missingChunkIndexes());
+    }
+
+    /**
+     * Closes the stitcher, releasing the resources it holds outside the heap: the thread of the missing chunks notices,
+     * if any, is stopped, and the durable log, if any, is closed with its segments unmapped, and kept on disk for a
+     * stitcher to be restarted on. Chunks stitched after closing are rejected.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (missingChunksNotifier != null) {
+            missingChunksNotifier.shutdownNow();
+        }
+        if (chunkLog != null) {
+            chunkLog.close();
+        }
     }
 
     /**
-     * Checks if the byte size of the stitching group would exceed the maximum allowed size after adding the given
-     * chunk. If the size would be exceeded, an IllegalArgumentException is thrown.
+     * Schedules notifying the missing chunks listener, if any, of a newly created group's missing chunks at the
+     * configured lead time before the group expires. The notice is cancelled when the group completes or is evicted.
      *
-     * @param chunk The chunk to be added to the stitching group.
-     * @param group The stitching group to which the chunk is to be added.
+     * @param groupId The group ID.
+     * @param group The newly created group.
+     * @return The group.
      */
-    private void checkStitchingGroupByteSize(Chunk chunk, ChunkStitchingGroup group) {
-        if (maxStitchedByteSize == DEFAULT_MAX_STITCHED_BYTE_SIZE) {
+    private ChunkStitchingGroup scheduleMissingChunksNotice(UUID groupId, ChunkStitchingGroup group) {
+        if (missingChunksNotifier != null) {
+            group.setMissingChunksNotice(missingChunksNotifier.schedule(
+                    () -> notifyMissingChunks(groupId), missingChunksNoticeDelayNanos, TimeUnit.NANOSECONDS));
+        }
+        return group;
+    }
+
+    /**
+     * Notifies the missing chunks listener of the chunks still missing from a pending group.
+     *
+     * @param groupId The group ID.
+     */
+    private void notifyMissingChunks(UUID groupId) {
+        assert missingChunksListener != null;
+        Optional<int[]> missingChunkIndexes = missingChunkIndexes(groupId);
+        if (!missingChunkIndexes.isPresent() || missingChunkIndexes.get().length == 0) {
+            return;
+        }
+        try {
+            missingChunksListener.onMissingChunks(groupId, missingChunkIndexes.get());
+        } catch (RuntimeException e) {
+            logger.atWarn().log(e, "Missing chunks listener failed on group [{}]", groupId);
+        }
+    }
+
+    /**
+     * Checks if a chunk belongs to a recently completed group, and is therefore a late duplicate to drop.
+     *
+     * @param chunk The received chunk.
+     * @return true if the chunk's group is recorded as completed.
+     */
+    private boolean isTombstoned(Chunk chunk) {
+        if (tombstones == null || !tombstones.contains(chunk.getGroupId())) {
+            return false;
+        }
+        if (logger.atDebug().isEnabled()) {
+            logger.atDebug().log("Dropped late duplicate chunk of completed group: {}", chunk);
+        }
+        return true;
+    }
+
+    /**
+     * Verifies the checksum of a chunk carrying one, and decompresses the data bytes of a compressed chunk. Then,
+     * resolves the data bytes of a reference chunk from the chunk store; or, if a chunk store is configured, records
+     * the data bytes of a fingerprinted chunk into it, after verifying the fingerprint so that the store cannot be
+     * poisoned with data that does not match. Runs outside of any lock, concurrently with other chunks of the same
+     * group.
+     *
+     * @param receivedChunk The received chunk.
+     * @return The chunk holding its uncompressed data bytes.
+     * @throws CorruptChunkException if the chunk's data does not match its checksum
+     * @throws IllegalArgumentException if the chunk cannot be decompressed, is a reference chunk whose data is not in
+     *     the store, or if the chunk's data does not match its fingerprint
+     */
+    private Chunk resolve(Chunk receivedChunk) {
+        if (!ChecksumAlgorithm.matches(receivedChunk)) {
+            logger.atWarn().log("Dropped chunk not matching its checksum: {}", receivedChunk);
+            throw new CorruptChunkException(
+                    receivedChunk.getGroupId(),
+                    new int[] {receivedChunk.getIndex()},
+                    "Chunk data does not match its checksum");
+        }
+        Chunk chunk = compressionCodecs.decompress(receivedChunk);
+        byte[] fingerprint = chunk.getFingerprint();
+        if (chunk.isReference()) {
+            ByteBuffer storedBytes = chunkStore == null ? null : chunkStore.get(fingerprint);
+            if (storedBytes == null) {
+                logger.atWarn().log("Data of reference chunk not found in chunk store: {}", chunk);
+                throw new IllegalArgumentException("Data of reference chunk not found in chunk store: " + chunk);
+            }
+            return chunk.toBuilder().byteBuffer(storedBytes).build();
+        }
+        if (chunkStore != null && fingerprint != null && !chunkStore.contains(fingerprint)) {
+            MessageDigest digest = ChunkChopper.newFingerprintDigest();
+            digest.update(chunk.getByteBuffer());
+            if (!MessageDigest.isEqual(fingerprint, digest.digest())) {
+                logger.atWarn().log("Chunk data does not match its fingerprint: {}", chunk);
+                throw new IllegalArgumentException("Chunk data does not match its fingerprint: " + chunk);
+            }
+            chunkStore.put(fingerprint, chunk.getByteBuffer());
+        }
+        return chunk;
+    }
+
+    /**
+     * Creates the stitching group of the given first chunk, allocating the buffer for the original data blob on or off
+     * heap as configured or, if the configured spill thresholds are reached, in a memory-mapped temporary file.
+     *
+     * @param firstChunk The first chunk received of the group.
+     * @return The new stitching group.
+     */
+    private ChunkStitchingGroup newStitchingGroup(Chunk firstChunk) {
+        checkStitchedByteSize(firstChunk);
+        long blobByteSize = firstChunk.getBlobByteSize();
+        if (blobByteSize >= spillGroupByteSize || pendingInMemoryByteSize.get() + blobByteSize > spillPendingByteSize) {
+            logger.atDebug().log("Spilling stitching group {} of {} bytes", firstChunk.getGroupId(), blobByteSize);
+            return new ChunkStitchingGroup(firstChunk, mapSpillFile(blobByteSize), null, Storage.SPILLED);
+        }
+        if (blobByteSize > MAX_ARRAY_BYTE_SIZE) {
+            throw new IllegalArgumentException("Original data blob too large to stitch into a buffer: " + firstChunk);
+        }
+        pendingInMemoryByteSize.addAndGet(blobByteSize);
+        if (offHeapPool == null) {
+            return new ChunkStitchingGroup(
+                    firstChunk, ByteBuffer.wrap(new byte[(int) blobByteSize]), null, Storage.HEAP);
+        }
+        ByteBuffer pooledBuffer = offHeapPool.acquire((int) blobByteSize);
+        ByteBuffer stitchedBuffer = pooledBuffer.duplicate();
+        stitchedBuffer.limit((int) blobByteSize);
+        return new ChunkStitchingGroup(firstChunk, stitchedBuffer.slice(), pooledBuffer, Storage.OFF_HEAP);
+    }
+
+    /**
+     * Maps a new temporary file of the given byte size into memory. The file is deleted once closed, while the mapping
+     * stays valid until the returned buffer is garbage collected.
+     *
+     * @param byteSize The byte size of the file to map.
+     * @return The mapped buffer.
+     */
+    private ByteBuffer mapSpillFile(long byteSize) {
+        if (byteSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Original data blob too large to map into a buffer: " + byteSize);
+        }
+        try {
+            Path spillFile = spillDirectory == null
+                    ? Files.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)
+                    : Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+            try (FileChannel fileChannel = FileChannel.open(
+                    spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+                return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, byteSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill stitching group into a memory-mapped file", e);
+        }
+    }
+
+    /**
+     * Releases the resources of a stitching group that is no longer pending.
+     *
+     * @param group The group that is complete or evicted.
+     * @param recycleBuffer Whether to recycle the group's buffer into the off-heap pool, if it came from there; false
+     *     if the buffer is handed over to the caller.
+     */
+    private void release(@NonNull ChunkStitchingGroup group, boolean recycleBuffer) {
+        if (group.getStorage() == Storage.SPILLED) {
             return;
         }
-        if (chunk.getBytes().length + group.getCurrentGroupByteSize() > maxStitchedByteSize) {
+        pendingInMemoryByteSize.addAndGet(-group.getStitchedByteSize());
+        if (recycleBuffer && group.getPooledBuffer() != null && offHeapPool != null) {
+            offHeapPool.release(group.getPooledBuffer());
+        }
+    }
+
+    /**
+     * Checks if the byte size of the original data blob that the given chunk belongs to would exceed the maximum
+     * allowed size. If the size would be exceeded, an IllegalArgumentException is thrown before any bytes of the group
+     * are allocated.
+     *
+     * @param chunk The first chunk received of a stitching group.
+     */
+    private void checkStitchedByteSize(Chunk chunk) {
+        if (chunk.getBlobByteSize() > maxStitchedByteSize) {
             logger.atWarn()
                     .log(
                             "By adding {}, stitching group {} would have exceeded safe-guarding byte size {}",
@@ -134,6 +640,31 @@ public final class ChunkStitcher implements Stitcher {
         private Duration maxStitchTime = Duration.ofNanos(DEFAULT_MAX_STITCH_TIME_NANOS);
         private int maxStitchedByteSize = DEFAULT_MAX_STITCHED_BYTE_SIZE;
         private long maxStitchingGroups = DEFAULT_MAX_STITCHING_GROUPS;
+        private long maxPendingByteSize = DEFAULT_MAX_PENDING_BYTE_SIZE;
+        private long spillGroupByteSize = DEFAULT_SPILL_THRESHOLD_BYTE_SIZE;
+        private long spillPendingByteSize = DEFAULT_SPILL_THRESHOLD_BYTE_SIZE;
+
+        @Nullable private Path spillDirectory;
+
+        private boolean offHeap;
+        private long offHeapPoolByteSize = DEFAULT_OFF_HEAP_POOL_BYTE_SIZE;
+
+        @Nullable private ChunkStore chunkStore;
+
+        private final CompressionCodecs compressionCodecs = new CompressionCodecs();
+        private int tombstoneCapacity;
+
+        @Nullable private MissingChunksListener missingChunksListener;
+
+        @Nullable private StitchListener stitchListener;
+
+        @Nullable private EvictionListener evictionListener;
+
+        private Duration missingChunksLeadTime = Duration.ZERO;
+
+        @Nullable private Path durableLogDirectory;
+
+        private int durableLogSegmentByteSize = ChunkLog.DEFAULT_SEGMENT_BYTE_SIZE;
 
         /**
          * Builds a new ChunkStitcher with the current configuration of the Builder.
@@ -177,84 +708,664 @@ public final class ChunkStitcher implements Stitcher {
             this.maxStitchingGroups = maxGroups;
             return this;
         }
+
+        /**
+         * Sets the maximum total byte size of all pending stitch groups, each weighing the byte size of its original
+         * data blob as allocated when its first chunk arrives. When exceeded, groups are evicted by their weights
+         * rather than by group count. This cannot be combined with {@link #maxStitchingGroups(long)}.
+         *
+         * @param v The maximum total byte size of pending groups.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxPendingByteSize(long v) {
+            this.maxPendingByteSize = v;
+            return this;
+        }
+
+        /**
+         * Sets the byte size of the original data, at or above which a group is spilled into a memory-mapped temporary
+         * file instead of being stitched on heap.
+         *
+         * @param v The byte size threshold of a single group.
+         * @return The Builder, for method chaining.
+         */
+        public Builder spillGroupByteSize(long v) {
+            this.spillGroupByteSize = v;
+            return this;
+        }
+
+        /**
+         * Sets the total byte size of all pending groups in memory, on or off heap, beyond which newly created groups
+         * are spilled into memory-mapped temporary files instead of being stitched in memory.
+         *
+         * @param v The byte size threshold of all pending groups in memory.
+         * @return The Builder, for method chaining.
+         */
+        public Builder spillPendingByteSize(long v) {
+            this.spillPendingByteSize = v;
+            return this;
+        }
+
+        /**
+         * Sets the directory to create the temporary spill files in. Defaults to the system temporary directory.
+         *
+         * @param spillDirectory The spill directory.
+         * @return The Builder, for method chaining.
+         */
+        public Builder spillDirectory(Path spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        /**
+         * Sets whether to stitch pending groups off heap, in direct buffers recycled through a pool, rather than in
+         * byte arrays on heap. A direct buffer is returned to the pool when its group is evicted, or completed by
+         * {@link #stitch(Chunk)}. Buffers of up to 1 GiB are allocated in power-of-two size classes of at least 4 KiB,
+         * so that a group may take up to twice its byte size in direct memory, e.g. 64 MiB for a group of 32 MiB and
+         * one byte; the JVM's limit on direct memory should allow for that.
+         *
+         * @param offHeap true to stitch off heap.
+         * @return The Builder, for method chaining.
+         */
+        public Builder offHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total byte size of idle direct buffers kept in the off-heap pool for reuse. Defaults to 64
+         * MiB.
+         *
+         * @param v The maximum byte size of idle pooled buffers.
+         * @return The Builder, for method chaining.
+         */
+        public Builder offHeapPoolByteSize(long v) {
+            this.offHeapPoolByteSize = v;
+            return this;
+        }
+
+        /**
+         * Sets the store to record the data of fingerprinted chunks into, and to resolve reference chunks from. Without
+         * a store, reference chunks cannot be stitched.
+         *
+         * @param chunkStore The chunk store.
+         * @return The Builder, for method chaining.
+         */
+        public Builder chunkStore(ChunkStore chunkStore) {
+            this.chunkStore = chunkStore;
+            return this;
+        }
+
+        /**
+         * Registers a codec to decompress chunks marked with its ID. The built-in {@link DeflateCodec} is always
+         * registered.
+         *
+         * @param compressionCodec The compression codec.
+         * @return The Builder, for method chaining.
+         */
+        public Builder compressionCodec(@NonNull CompressionCodec compressionCodec) {
+            this.compressionCodecs.register(compressionCodec);
+            return this;
+        }
+
+        /**
+         * Sets the number of recently completed group IDs to remember, so that late duplicate chunks of those groups,
+         * e.g. under at-least-once delivery, are dropped instead of starting zombie groups that linger until expiry.
+         * Between the given number and twice as many of the most recently completed groups are remembered, in fixed
+         * memory of 64 to 128 bytes per unit of capacity. Defaults to 0, remembering none. Tombstones must not be
+         * combined with {@link GroupIdGenerator#contentDerived() content-derived} group IDs: the chunks of an identical
+         * data blob sent again while its group is remembered are dropped as late duplicates, and the blob is never
+         * stitched.
+         *
+         * @param v The number of completed group IDs to remember.
+         * @return The Builder, for method chaining.
+         */
+        public Builder tombstoneCapacity(int v) {
+            this.tombstoneCapacity = v;
+            return this;
+        }
+
+        /**
+         * Sets the listener to notify of the chunks still missing from each pending group, at the given lead time
+         * before the group expires, so that the producer can be asked to resend only those chunks in time. Requires the
+         * max stitch time to be configured, and greater than the lead time.
+         *
+         * @param leadTime The time before a group's expiry to notify the listener at.
+         * @param listener The missing chunks listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder missingChunksListener(@NonNull Duration leadTime, @NonNull MissingChunksListener listener) {
+            this.missingChunksLeadTime = leadTime;
+            this.missingChunksListener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the listener that {@link ChunkStitcher#stitchToListener(Chunk)} delivers the restored data of each
+         * completed group to, on the thread stitching the group's last chunk.
+         *
+         * @param listener The stitch listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder stitchListener(@NonNull StitchListener listener) {
+            this.stitchListener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the listener to notify of each pending group evicted before it completes, on expiry or to bound the
+         * pending groups, e.g. to fail whatever waits on the group rather than let it wait in vain.
+         *
+         * @param listener The eviction listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder evictionListener(@NonNull EvictionListener listener) {
+            this.evictionListener = listener;
+            return this;
+        }
+
+        /**
+         * Enables the durable mode, in which the chunks of pending groups are appended to a write-ahead log of
+         * memory-mapped segment files in the given directory, so that a stitcher restarted on the same directory
+         * rebuilds the groups left pending, and producers only need to resend the chunks that were not yet received.
+         * Segments are deleted or compacted as groups complete or are evicted. Rebuilt groups expire by the max stitch
+         * time counted from the restart. The directory should not be shared by stitchers running concurrently; close
+         * the stitcher before restarting another one on the same directory. The log is partitioned into stripes by
+         * group ID, so that chunks of different groups are mostly logged concurrently. A chunk is logged before it is
+         * added to its group, and the chunk completing a group is left out of replay, to be resent by the producer.
+         *
+         * @param directory The directory of the log segments, created if it does not exist.
+         * @return The Builder, for method chaining.
+         */
+        public Builder durableLog(@NonNull Path directory) {
+            this.durableLogDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the byte size of a segment file of the durable log. A chunk too large for a segment gets a segment of
+         * its own. Defaults to 64MB.
+         *
+         * @param v The byte size of a segment.
+         * @return The Builder, for method chaining.
+         */
+        public Builder durableLogSegmentByteSize(int v) {
+            this.durableLogSegmentByteSize = v;
+            return this;
+        }
     }
 
     /**
-     * The ChunkStitchingGroup class represents a group of chunks that are to be stitched together. It is not
-     * thread-safe.
+     * The ChunkStitchingGroup class represents a group of chunks that are to be stitched together. The buffer of the
+     * original data blob is allocated when the group is created, and each chunk is copied straight into its final
+     * position as it arrives. Arrived chunks are tracked by an atomic bitmap of chunk indexes, along with atomic
+     * running totals of chunk count and byte size, so that checking for duplicates and for completion takes constant
+     * time. It is thread-safe: chunks of the same group can be added concurrently without locking, each claiming its
+     * index in the bitmap before copying its bytes into its own region of the buffer.
+     *
+     * <p>Threads adding chunks pin the group for the duration, so that the buffer of a group closed upon eviction is
+     * not released while still being written to.
+     *
+     * <p>If the group carries parity chunks, each parity stripe of the group completes upon as many of its data and
+     * parity chunks as it has data chunks; surplus chunks of the stripe are dropped. Parity chunks are kept aside, and
+     * the missing data chunks of the stripe are then restored by Reed-Solomon decoding by the thread completing the
+     * stripe. The group completes with its last stripe.
      */
-    @NotThreadSafe
+    @ThreadSafe
     @ToString
     private static class ChunkStitchingGroup {
-        private final Set<Chunk> chunks = new HashSet<>();
+        private static final int CLOSED = 1 << 30;
+        private static final int COMPLETED = 1 << 29;
+
+        @ToString.Exclude
+        private final ByteBuffer stitchedBuffer;
+
+        @ToString.Exclude
+        @Nullable private final ByteBuffer pooledBuffer;
+
+        private final Storage storage;
+
+        @ToString.Exclude
+        private final AtomicLongArray stitchedChunks;
+
+        @ToString.Exclude
+        @Nullable private final byte[] merkleRoot;
+
+        @ToString.Exclude
+        @Nullable private final AtomicReferenceArray<byte[]> chunkChecksums;
+
+        /**
+         * Regions of the data chunks in the stitched buffer whose checksums cover their bytes as stitched, packed by
+         * {@link #regionOf(int, int)}; 0 for the chunks that cannot be verified this way.
+         */
+        @ToString.Exclude
+        @Nullable private final AtomicLongArray chunkRegions;
+
+        @Nullable private final ChecksumAlgorithm checksumAlgorithm;
+
+        @ToString.Exclude
+        @Nullable private final ParityStripes stripes;
+
+        @ToString.Exclude
+        @Nullable private final AtomicReferenceArray<byte[]> parityShards;
+
+        /**
+         * Indexes of the chunks admitted to the group if it carries parity chunks, in order of admission within each
+         * stripe, laid out at the positions of the data chunks of the stripe.
+         */
+        @ToString.Exclude
+        @Nullable private final AtomicIntegerArray admittedChunkIndexes;
+
+        /** Number of chunks admitted to each parity stripe. */
+        @ToString.Exclude
+        @Nullable private final AtomicIntegerArray stripeAdmissions;
+
+        /** Number of admitted chunks written to each parity stripe. */
+        @ToString.Exclude
+        @Nullable private final AtomicIntegerArray stripeWrites;
+
+        private final AtomicInteger restoredStripeTotal = new AtomicInteger();
+
+        /** Byte size of the parity chunks, once the first of them is added; 0 until then. */
+        private final AtomicInteger parityChunkByteSize = new AtomicInteger();
+
         private final int expectedChunkTotal;
+        private final int parityChunkCount;
+        private final AtomicInteger currentChunkTotal = new AtomicInteger();
+        private final AtomicLong currentGroupByteSize = new AtomicLong();
+
+        /** Pin count of the threads adding chunks in the low bits, plus the CLOSED and COMPLETED flags. */
+        private final AtomicInteger state = new AtomicInteger();
+
+        @ToString.Exclude
+        @Nullable private volatile Future<?> missingChunksNotice;
 
         /**
          * Constructor for the ChunkStitchingGroup class.
          *
-         * @param expectedChunkTotal The total number of chunks expected by the group.
+         * @param firstChunk The first chunk received of the group, carrying the group size.
+         * @param stitchedBuffer The buffer to stitch the original data blob into, sized to the blob.
+         * @param pooledBuffer The pooled buffer that the stitched buffer is a view of, or null if not pooled.
+         * @param storage The kind of storage of the buffer.
+         */
+        ChunkStitchingGroup(
+                @NonNull Chunk firstChunk,
+                @NonNull ByteBuffer stitchedBuffer,
+                @Nullable ByteBuffer pooledBuffer,
+                @NonNull Storage storage) {
+            this.expectedChunkTotal = firstChunk.getGroupSize();
+            this.stitchedBuffer = stitchedBuffer;
+            this.pooledBuffer = pooledBuffer;
+            this.storage = storage;
+            this.merkleRoot = firstChunk.getMerkleRoot();
+            this.chunkChecksums =
+                    merkleRoot == null ? null : new AtomicReferenceArray<>(Math.max(expectedChunkTotal, 0));
+            this.chunkRegions = merkleRoot == null ? null : new AtomicLongArray(Math.max(expectedChunkTotal, 0));
+            this.checksumAlgorithm = firstChunk.getChecksumAlgorithm();
+            if (firstChunk.getParityChunkCount() > 0 && expectedChunkTotal > 0) {
+                this.stripes = new ParityStripes(expectedChunkTotal, firstChunk.getParityChunkCount());
+                this.parityChunkCount = stripes.parityChunkTotal();
+                this.parityShards = new AtomicReferenceArray<>(parityChunkCount);
+                this.admittedChunkIndexes = new AtomicIntegerArray(expectedChunkTotal);
+                this.stripeAdmissions = new AtomicIntegerArray(stripes.stripeCount());
+                this.stripeWrites = new AtomicIntegerArray(stripes.stripeCount());
+            } else {
+                this.parityChunkCount = 0;
+                this.stripes = null;
+                this.parityShards = null;
+                this.admittedChunkIndexes = null;
+                this.stripeAdmissions = null;
+                this.stripeWrites = null;
+            }
+            this.stitchedChunks = new AtomicLongArray(
+                    (Math.max(expectedChunkTotal, 0) + parityChunkCount + Long.SIZE - 1) / Long.SIZE);
+        }
+
+        /**
+         * Adds a chunk to the stitching group by copying its bytes to their position in the original data blob. The
+         * group has to be pinned by the calling thread.
+         *
+         * @param chunk The chunk to be added to the group.
+         * @param checksummedAsStitched Whether the checksum of the chunk covers its bytes as stitched, so that its
+         *     region can be verified if the group does not match its Merkle root.
+         * @return COMPLETED if the chunk is the last one expected by the group, and the original data bytes are
+         *     restored in the stitched buffer, DROPPED if the chunk is a duplicate or a surplus chunk of its parity
+         *     stripe, PENDING otherwise.
+         */
+        StitchStatus add(Chunk chunk, boolean checksummedAsStitched) {
+            int chunkByteSize = chunk.getByteSize();
+            if (chunk.getIndex() >= expectedChunkTotal) {
+                checkParityChunk(chunk);
+            } else if (chunk.getIndex() < 0
+                    || chunk.getOffset() < 0
+                    || chunk.getOffset() + chunkByteSize > stitchedBuffer.capacity()) {
+                throw new IllegalArgumentException("Chunk out of bounds of its stitching group: " + chunk);
+            }
+            if (merkleRoot != null
+                    && (chunk.getChecksum() == null || !Arrays.equals(merkleRoot, chunk.getMerkleRoot()))) {
+                logger.atWarn().log("Dropped chunk not matching the Merkle root of its group: {}", chunk);
+                throw new CorruptChunkException(
+                        chunk.getGroupId(),
+                        new int[] {chunk.getIndex()},
+                        "Chunk does not match the Merkle root of its group");
+            }
+            if (!claim(chunk.getIndex())) {
+                logger.atWarn().log("Duplicate chunk {} received and ignored", chunk);
+                return StitchStatus.DROPPED;
+            }
+            if (stripes != null) {
+                int stripe = stripes.stripeOf(chunk.getIndex());
+                int admission = stripeAdmissions.getAndIncrement(stripe);
+                if (admission >= stripes.dataChunkCount(stripe)) {
+                    logger.atDebug().log("Surplus chunk {} of restorable group dropped", chunk);
+                    return StitchStatus.DROPPED;
+                }
+                admittedChunkIndexes.set(stripes.firstDataChunkIndex(stripe) + admission, chunk.getIndex());
+            }
+            if (chunk.getIndex() >= expectedChunkTotal) {
+                byte[] parity = new byte[chunkByteSize];
+                chunk.getByteBuffer().get(parity);
+                parityShards.set(chunk.getIndex() - expectedChunkTotal, parity);
+            } else {
+                chunk.copyBytesTo(stitchedBuffer, (int) chunk.getOffset());
+                if (chunkChecksums != null) {
+                    chunkChecksums.set(chunk.getIndex(), chunk.getChecksum());
+                    if (checksummedAsStitched) {
+                        chunkRegions.set(chunk.getIndex(), regionOf((int) chunk.getOffset(), chunkByteSize));
+                    }
+                }
+                currentGroupByteSize.addAndGet(chunkByteSize);
+            }
+            int chunkTotal = currentChunkTotal.incrementAndGet();
+            if (stripes != null) {
+                int stripe = stripes.stripeOf(chunk.getIndex());
+                if (stripeWrites.incrementAndGet(stripe) != stripes.dataChunkCount(stripe)) {
+                    return StitchStatus.PENDING;
+                }
+                restoreMissingDataChunks(stripe);
+                if (restoredStripeTotal.incrementAndGet() == stripes.stripeCount()) {
+                    logger.atDebug().log(() -> "Stitched all " + getCurrentChunkTotal() + " chunks in group " + this);
+                    return StitchStatus.COMPLETED;
+                }
+                return StitchStatus.PENDING;
+            }
+            if (chunkTotal == expectedChunkTotal) {
+                logger.atDebug().log(() -> "Stitched all " + getCurrentChunkTotal() + " chunks in group " + this);
+                return StitchStatus.COMPLETED;
+            }
+            return StitchStatus.PENDING;
+        }
+
+        /**
+         * Checks a parity chunk against the group: its size has to be that of a data chunk in fixed-size mode, and
+         * equal to the size of any parity chunk added before.
+         *
+         * @param chunk The parity chunk.
+         */
+        private void checkParityChunk(Chunk chunk) {
+            int chunkByteSize = chunk.getByteSize();
+            long blobByteSize = stitchedBuffer.capacity();
+            if (chunk.getIndex() >= expectedChunkTotal + parityChunkCount
+                    || chunkByteSize <= 0
+                    || (long) chunkByteSize * expectedChunkTotal < blobByteSize
+                    || (long) chunkByteSize * (expectedChunkTotal - 1) >= blobByteSize
+                    || chunk.getOffset() != (long) chunk.getIndex() * chunkByteSize
+                    || (!parityChunkByteSize.compareAndSet(0, chunkByteSize)
+                            && parityChunkByteSize.get() != chunkByteSize)) {
+                throw new IllegalArgumentException("Parity chunk out of bounds of its stitching group: " + chunk);
+            }
+        }
+
+        /**
+         * Restores the data chunks missing from a parity stripe that has received as many data and parity chunks as it
+         * has data chunks, by decoding them from the admitted chunks straight into the stitched buffer. Called by the
+         * thread completing the stripe, once all its admitted chunks are written.
+         *
+         * @param stripe The parity stripe.
+         */
+        private void restoreMissingDataChunks(int stripe) {
+            int firstDataIndex = stripes.firstDataChunkIndex(stripe);
+            int dataChunkCount = stripes.dataChunkCount(stripe);
+            int[] present = new int[dataChunkCount];
+            int[] presentShards = new int[dataChunkCount];
+            boolean[] admitted = new boolean[dataChunkCount];
+            for (int i = 0; i < present.length; i++) {
+                present[i] = admittedChunkIndexes.get(firstDataIndex + i);
+                presentShards[i] = stripes.shardIndexOf(present[i]);
+                if (present[i] < expectedChunkTotal) {
+                    admitted[present[i] - firstDataIndex] = true;
+                }
+            }
+            int[] missing = IntStream.range(0, dataChunkCount)
+                    .filter(i -> !admitted[i])
+                    .map(i -> firstDataIndex + i)
+                    .toArray();
+            if (missing.length == 0) {
+                return;
+            }
+            int shardByteSize = parityChunkByteSize.get();
+            byte[][] decoding = stripes.codeOf(stripe).decodingMatrix(presentShards);
+            for (int dataIndex : missing) {
+                byte[] shard = new byte[shardByteSize];
+                for (int i = 0; i < present.length; i++) {
+                    ReedSolomon.multiplyAdd(
+                            decoding[dataIndex - firstDataIndex][i], shardOf(present[i], shardByteSize), shard);
+                }
+                ByteBuffer restored = ByteBuffer.wrap(
+                        shard, 0, dataRegionOf(dataIndex, shardByteSize).remaining());
+                ByteBuffer chunkTarget = stitchedBuffer.duplicate();
+                chunkTarget.position(dataIndex * shardByteSize);
+                chunkTarget.put(restored.duplicate());
+                if (chunkChecksums != null && checksumAlgorithm != null) {
+                    chunkChecksums.set(dataIndex, checksumAlgorithm.checksum(restored));
+                    chunkRegions.set(dataIndex, regionOf(dataIndex * shardByteSize, restored.remaining()));
+                }
+                currentGroupByteSize.addAndGet(restored.remaining());
+            }
+            logger.atDebug().log("Restored missing chunks {} of group {}", Arrays.toString(missing), this);
+        }
+
+        /**
+         * Returns the bytes of an admitted shard for decoding.
+         *
+         * @param shardIndex The data or parity chunk index of the shard.
+         * @param shardByteSize The byte size of a full shard.
+         * @return The shard bytes, the last data shard being short of the full size.
          */
-        ChunkStitchingGroup(int expectedChunkTotal) {
-            this.expectedChunkTotal = expectedChunkTotal;
+        private ByteBuffer shardOf(int shardIndex, int shardByteSize) {
+            return shardIndex < expectedChunkTotal
+                    ? dataRegionOf(shardIndex, shardByteSize)
+                    : ByteBuffer.wrap(parityShards.get(shardIndex - expectedChunkTotal));
         }
 
         /**
-         * Sorts a set of chunks by their index.
+         * Returns the region of a data chunk in the stitched buffer.
          *
-         * @param chunks The set of chunks to sort.
-         * @return A list of chunks, sorted by their index.
+         * @param dataIndex The data chunk index.
+         * @param shardByteSize The byte size of a full shard.
+         * @return A view of the region of the data chunk.
          */
-        private static List<Chunk> sorted(@NonNull Set<Chunk> chunks) {
-            return chunks.stream()
-                    .sorted(Comparator.comparingInt(Chunk::getIndex))
-                    .collect(Collectors.toList());
+        private ByteBuffer dataRegionOf(int dataIndex, int shardByteSize) {
+            ByteBuffer region = stitchedBuffer.duplicate();
+            int start = dataIndex * shardByteSize;
+            region.limit(Math.min(start + shardByteSize, region.capacity()));
+            region.position(start);
+            return region;
         }
 
         /**
-         * Stitches a set of chunks together into a byte array.
+         * Checks the checksums of all chunks added to a completed group against the group's Merkle root, if any.
          *
-         * @param chunks The set of chunks to stitch together.
-         * @return A byte array containing the stitched chunks.
+         * @return false if the group carries a Merkle root that does not match the checksums of its chunks.
          */
-        private static byte @NonNull [] stitchToBytes(@NonNull Set<Chunk> chunks) {
-            byte[] stitchedBytes = new byte[totalByteSizeOf(chunks)];
-            int chunkStartPosition = 0;
-            for (Chunk chunk : sorted(chunks)) {
-                byte[] chunkBytes = chunk.getBytes();
-                System.arraycopy(chunkBytes, 0, stitchedBytes, chunkStartPosition, chunkBytes.length);
-                chunkStartPosition += chunkBytes.length;
+        boolean matchesMerkleRoot() {
+            if (merkleRoot == null) {
+                return true;
+            }
+            byte[][] checksums = new byte[expectedChunkTotal][];
+            for (int i = 0; i < checksums.length; i++) {
+                checksums[i] = chunkChecksums.get(i);
             }
-            return stitchedBytes;
+            return Arrays.equals(merkleRoot, MerkleTree.rootOf(checksums));
         }
 
         /**
-         * Calculates the total byte size of a collection of chunks.
+         * Returns the indexes of the chunks of a completed group not matching its Merkle root, by recomputing the
+         * checksum of each verifiable chunk region in the stitched buffer. If no region is found to mismatch, e.g.
+         * because the chunks were received compressed, or their checksums were tampered with consistently, all indexes
+         * are returned.
          *
-         * @param chunks The collection of chunks.
-         * @return The total byte size.
+         * @return The indexes of the corrupt chunks in ascending order.
          */
-        private static int totalByteSizeOf(@NonNull Collection<Chunk> chunks) {
-            return chunks.stream().mapToInt(chunk -> chunk.getBytes().length).sum();
+        int[] corruptChunkIndexes() {
+            if (chunkRegions != null && checksumAlgorithm != null) {
+                int[] mismatching = IntStream.range(0, expectedChunkTotal)
+                        .filter(i -> chunkRegions.get(i) != 0
+                                && !Arrays.equals(
+                                        chunkChecksums.get(i),
+                                        checksumAlgorithm.checksum(regionAt(chunkRegions.get(i)))))
+                        .toArray();
+                if (mismatching.length > 0) {
+                    return mismatching;
+                }
+            }
+            return IntStream.range(0, expectedChunkTotal).toArray();
         }
 
         /**
-         * Adds a chunk to the stitching group. If the chunk is the last one expected by the group, all chunks in the
-         * group are stitched together and returned.
+         * Packs a region of the stitched buffer into a non-zero long.
          *
-         * @param chunk The chunk to be added to the group.
-         * @return A byte array containing the stitched chunks if the chunk is the last one expected by the group, or
-         *     null otherwise.
+         * @param offset The start of the region.
+         * @param byteSize The byte size of the region.
+         * @return The offset in the high bits, and the byte size plus one in the low bits.
          */
-        @Nullable public byte[] addAndStitch(Chunk chunk) {
-            if (!chunks.add(chunk)) {
-                logger.atWarn().log("Duplicate chunk {} received and ignored", chunk);
-                return null;
+        private static long regionOf(int offset, int byteSize) {
+            return ((long) offset << Integer.SIZE) | (byteSize + 1L);
+        }
+
+        /**
+         * Unpacks a region of the stitched buffer.
+         *
+         * @param region The region packed by {@link #regionOf(int, int)}.
+         * @return A view of the region.
+         */
+        private ByteBuffer regionAt(long region) {
+            ByteBuffer view = stitchedBuffer.duplicate();
+            int offset = (int) (region >>> Integer.SIZE);
+            view.limit(offset + (int) (region & 0xFFFFFFFFL) - 1);
+            view.position(offset);
+            return view;
+        }
+
+        /**
+         * Atomically sets the bit of a chunk index in the bitmap.
+         *
+         * @param chunkIndex The index to claim.
+         * @return true if the index was not claimed before, false if the chunk is a duplicate.
+         */
+        private boolean claim(int chunkIndex) {
+            int word = chunkIndex / Long.SIZE;
+            long bit = 1L << (chunkIndex % Long.SIZE);
+            long bits;
+            do {
+                bits = stitchedChunks.get(word);
+                if ((bits & bit) != 0) {
+                    return false;
+                }
+            } while (!stitchedChunks.compareAndSet(word, bits, bits | bit));
+            return true;
+        }
+
+        /**
+         * Pins the group for the calling thread to add a chunk.
+         *
+         * @return true if pinned, false if the group is already closed and should no longer be added to.
+         */
+        boolean pin() {
+            int s;
+            do {
+                s = state.get();
+                if ((s & CLOSED) != 0) {
+                    return false;
+                }
+            } while (!state.compareAndSet(s, s + 1));
+            return true;
+        }
+
+        /**
+         * Unpins the group after the calling thread is done adding a chunk.
+         *
+         * @return true if the group has been closed upon eviction, and this was the last pin, so that the group's
+         *     resources should now be released.
+         */
+        boolean unpin() {
+            return state.decrementAndGet() == CLOSED;
+        }
+
+        /**
+         * Closes the group upon eviction, so that no more chunks are added to it.
+         *
+         * @return true if the group was neither pinned nor completed, so that the group's resources should now be
+         *     released; otherwise, they are released upon the last unpin, or by the completing thread.
+         */
+        boolean close() {
+            cancelMissingChunksNotice();
+            return state.getAndUpdate(s -> s | CLOSED) == 0;
+        }
+
+        /**
+         * Closes the group upon completion by the calling thread, which then takes over releasing the group's
+         * resources.
+         */
+        void complete() {
+            cancelMissingChunksNotice();
+            state.getAndUpdate(s -> s | CLOSED | COMPLETED);
+        }
+
+        /**
+         * Checks if the group is still pending, i.e. neither completed nor closed upon eviction.
+         *
+         * @return true if the group is pending.
+         */
+        boolean isPending() {
+            return (state.get() & CLOSED) == 0;
+        }
+
+        /**
+         * Sets the scheduled notice of the group's missing chunks, to be cancelled when the group is closed.
+         *
+         * @param missingChunksNotice The scheduled notice.
+         */
+        void setMissingChunksNotice(Future<?> missingChunksNotice) {
+            this.missingChunksNotice = missingChunksNotice;
+        }
+
+        /** Cancels the scheduled notice of the group's missing chunks, if any. */
+        private void cancelMissingChunksNotice() {
+            Future<?> notice = missingChunksNotice;
+            if (notice != null) {
+                notice.cancel(false);
             }
-            if (getCurrentChunkTotal() == getExpectedChunkTotal()) {
-                logger.atDebug().log(() -> "Stitching all " + chunks.size() + " chunks in group " + this);
-                return stitchToBytes(chunks);
+        }
+
+        /**
+         * Returns the indexes of the data chunks not yet added to the group, by scanning the bitmap of chunk indexes.
+         *
+         * @return The indexes of the missing chunks, in ascending order.
+         */
+        int[] missingChunkIndexes() {
+            IntStream.Builder missing = IntStream.builder();
+            for (int word = 0; word * Long.SIZE < expectedChunkTotal; word++) {
+                long absent = ~stitchedChunks.get(word);
+                int wordStart = word * Long.SIZE;
+                if (expectedChunkTotal - wordStart < Long.SIZE) {
+                    absent &= (1L << (expectedChunkTotal - wordStart)) - 1;
+                }
+                for (; absent != 0; absent &= absent - 1) {
+                    missing.add(wordStart + Long.numberOfTrailingZeros(absent));
+                }
             }
-            return null;
+            return missing.build().toArray();
         }
 
         /**
@@ -263,7 +1374,7 @@ public final class ChunkStitcher implements Stitcher {
          * @return The current total number of chunks.
          */
         int getCurrentChunkTotal() {
-            return chunks.size();
+            return currentChunkTotal.get();
         }
 
         /**
@@ -271,8 +1382,8 @@ public final class ChunkStitcher implements Stitcher {
          *
          * @return The current total byte size.
          */
-        int getCurrentGroupByteSize() {
-            return totalByteSizeOf(chunks);
+        long getCurrentGroupByteSize() {
+            return currentGroupByteSize.get();
         }
 
         /**
@@ -283,51 +1394,52 @@ public final class ChunkStitcher implements Stitcher {
         int getExpectedChunkTotal() {
             return expectedChunkTotal;
         }
-    }
-
-    /** The SinceCreation class is used to determine the expiry time of a chunk group in the cache. */
-    private static class SinceCreation implements Expiry<UUID, ChunkStitchingGroup> {
-
-        private final Duration duration;
 
         /**
-         * Constructor for the SinceCreation class.
+         * Returns the buffer that the original data blob is stitched into.
          *
-         * @param duration The duration after which a chunk group should expire.
+         * @return The stitched buffer.
          */
-        SinceCreation(Duration duration) {
-            this.duration = duration;
+        ByteBuffer getStitchedBuffer() {
+            return stitchedBuffer;
         }
 
-        @Override
-        public long expireAfterCreate(
-                @NonNull UUID uuid, @NonNull ChunkStitcher.ChunkStitchingGroup chunks, long currentTime) {
-            return duration.toNanos();
+        /**
+         * Returns the pooled buffer that the stitched buffer is a view of.
+         *
+         * @return The pooled buffer, or null if the stitched buffer is not pooled.
+         */
+        @Nullable ByteBuffer getPooledBuffer() {
+            return pooledBuffer;
         }
 
-        @Override
-        public long expireAfterUpdate(
-                @NonNull UUID uuid,
-                @NonNull ChunkStitcher.ChunkStitchingGroup chunks,
-                long currentTime,
-                long currentDuration) {
-            return currentDuration;
+        /**
+         * Returns the kind of storage of the group's buffer.
+         *
+         * @return The storage of the group.
+         */
+        Storage getStorage() {
+            return storage;
         }
 
-        @Override
-        public long expireAfterRead(
-                @NonNull UUID uuid,
-                @NonNull ChunkStitcher.ChunkStitchingGroup chunks,
-                long currentTime,
-                long currentDuration) {
-            return currentDuration;
+        /**
+         * Returns the byte size of the buffer that the original data blob is stitched into.
+         *
+         * @return The byte size of the original data blob.
+         */
+        int getStitchedByteSize() {
+            return stitchedBuffer.capacity();
         }
     }
 
-    /** The StitchedBytesHolder class is a simple data holder for a byte array. */
-    @Data
-    private static class StitchedBytesHolder {
-        @Nullable byte[] stitchedBytes;
+    /** The Storage enum lists the kinds of storage that a stitching group's buffer can be allocated in. */
+    private enum Storage {
+        /** A byte array on the Java heap. */
+        HEAP,
+        /** A direct buffer from the off-heap pool. */
+        OFF_HEAP,
+        /** A memory-mapped temporary file. */
+        SPILLED
     }
 
     /**
@@ -337,6 +1449,12 @@ public final class ChunkStitcher implements Stitcher {
 
         @Override
         public void onRemoval(UUID groupId, ChunkStitchingGroup chunkStitchingGroup, @NonNull RemovalCause cause) {
+            if (chunkStitchingGroup.close()) {
+                release(chunkStitchingGroup, true);
+            }
+            if (chunkLog != null) {
+                chunkLog.done(groupId);
+            }
             switch (cause) {
                 case EXPIRED:
                     logger.atWarn()
@@ -348,11 +1466,20 @@ public final class ChunkStitcher implements Stitcher {
                                     chunkStitchingGroup.getCurrentChunkTotal());
                     break;
                 case SIZE:
-                    logger.atWarn()
-                            .log(
-                                    "chunk group [{}] was removed due to exceeding max group count [{}]",
-                                    groupId,
-                                    maxStitchingGroups);
+                    if (maxPendingByteSize == DEFAULT_MAX_PENDING_BYTE_SIZE) {
+                        logger.atWarn()
+                                .log(
+                                        "chunk group [{}] was removed due to exceeding max group count [{}]",
+                                        groupId,
+                                        maxStitchingGroups);
+                    } else {
+                        logger.atWarn()
+                                .log(
+                                        "chunk group [{}] of [{}] bytes was removed due to exceeding max pending byte size [{}]",
+                                        groupId,
+                                        chunkStitchingGroup.getStitchedByteSize(),
+                                        maxPendingByteSize);
+                    }
                     break;
                 case EXPLICIT:
                 case REPLACED:
@@ -360,6 +1487,13 @@ public final class ChunkStitcher implements Stitcher {
                 default:
                     break;
             }
+            if (evictionListener != null && cause.wasEvicted()) {
+                try {
+                    evictionListener.onEvicted(groupId, cause == RemovalCause.EXPIRED);
+                } catch (RuntimeException e) {
+                    logger.atWarn().log(e, "Eviction listener failed on group [{}]", groupId);
+                }
+            }
         }
     }
 }
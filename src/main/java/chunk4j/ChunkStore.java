@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * The ChunkStore interface defines a store of chunk data bytes keyed by their content fingerprint, see
+ * {@link Chunk#getFingerprint()}. A {@link ChunkStitcher} configured with a store records the data of each
+ * fingerprinted chunk it receives, and resolves reference chunks, i.e. chunks carrying only a fingerprint, from it. A
+ * producer that knows the receiver already holds a chunk's data can then send its reference instead. Implementations
+ * have to be thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+public interface ChunkStore {
+
+    /**
+     * Returns the data bytes stored for a fingerprint.
+     *
+     * @param fingerprint The content fingerprint of the data bytes.
+     * @return Read-only view of the stored data bytes, or null if none is stored for the fingerprint.
+     */
+    @Nullable ByteBuffer get(byte[] fingerprint);
+
+    /**
+     * Stores the data bytes for a fingerprint, copying them, unless data is already stored for the fingerprint.
+     *
+     * @param fingerprint The content fingerprint of the data bytes.
+     * @param bytes The data bytes to store, from position to limit; not modified.
+     */
+    void put(byte[] fingerprint, ByteBuffer bytes);
+
+    /**
+     * Checks if data bytes are stored for a fingerprint.
+     *
+     * @param fingerprint The content fingerprint of the data bytes.
+     * @return true if data is stored for the fingerprint.
+     */
+    boolean contains(byte[] fingerprint);
+}
@@ -0,0 +1,495 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import elf4j.Logger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * The ChunkStreamStitcher class stitches chunks together by writing the restored original data to a caller-supplied
+ * channel, one per group, instead of returning it as a whole. Whenever the chunks received of a group form a contiguous
+ * run following the bytes already written, that run is written to the group's channel right away. Only the chunks that
+ * arrive ahead of a missing one are kept in memory. The channel of a group is opened on the group's first chunk and
+ * closed when the group is complete or evicted. Parity chunks are not supported, as restoring lost data chunks from
+ * them takes holding the whole group in memory; nor are reference chunks, as this stitcher has no chunk store. Both are
+ * rejected, and all data chunks of a group have to be received.
+ *
+ * <p>It is thread-safe. The cache of chunk groups is only locked to look up or create a group; opening a group's
+ * channel and writing to it are done under the lock of the group alone, so that a slow channel only holds up chunks of
+ * its own group; the group is removed from the cache only after its lock is released, and the channel of an evicted
+ * group is closed asynchronously, outside the cache's locks. The class also provides a Builder for easy configuration.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class ChunkStreamStitcher {
+    private static final long DEFAULT_MAX_STITCHING_GROUPS = Long.MAX_VALUE;
+    private static final long DEFAULT_MAX_STITCH_TIME_NANOS = Long.MAX_VALUE;
+    private static final Logger logger = Logger.instance();
+    private final Cache<UUID, StreamStitchingGroup> chunkGroups;
+    private final Function<UUID, WritableByteChannel> channelFactory;
+    private final Duration maxStitchTime;
+    private final long maxStitchingGroups;
+    private final CompressionCodecs compressionCodecs;
+
+    @Nullable private final TombstoneSet tombstones;
+
+    /**
+     * Private constructor for the ChunkStreamStitcher class. It is used by the Builder class to create a new instance
+     * of ChunkStreamStitcher.
+     *
+     * @param builder The builder used to configure the ChunkStreamStitcher.
+     */
+    private ChunkStreamStitcher(@NonNull Builder builder) {
+        if (builder.channelFactory == null) {
+            throw new IllegalArgumentException("A channel or output stream factory is required");
+        }
+        channelFactory = builder.channelFactory;
+        maxStitchTime = builder.maxStitchTime;
+        maxStitchingGroups = builder.maxStitchingGroups;
+        compressionCodecs = new CompressionCodecs(builder.compressionCodecs);
+        tombstones = builder.tombstoneCapacity == 0 ? null : new TombstoneSet(builder.tombstoneCapacity);
+        this.chunkGroups = Caffeine.newBuilder()
+                .expireAfter(new SinceCreation<UUID, StreamStitchingGroup>(maxStitchTime))
+                .maximumSize(maxStitchingGroups)
+                .removalListener(new InvoluntaryEvictionCloser())
+                .build();
+    }
+
+    /**
+     * Adds a chunk to its corresponding chunk group, and writes all the bytes of the group that have become contiguous
+     * to the group's channel. If the chunk is the last one expected by the group, the group's channel is closed after
+     * all the original data bytes are written. A chunk carrying a checksum is verified, and a compressed chunk is
+     * decompressed, before the group is locked.
+     *
+     * @param receivedChunk The chunk to be added to its corresponding chunk group.
+     * @return true if the chunk is the last one expected by the group and all the original data bytes have been
+     *     written, false otherwise.
+     * @throws UncheckedIOException if writing to or closing the group's channel fails, in which case the group is
+     *     discarded
+     * @throws CorruptChunkException if the chunk's data does not match its checksum
+     * @throws IllegalArgumentException if the chunk cannot be decompressed, or is a parity chunk or a reference chunk
+     */
+    public boolean stitch(@NonNull Chunk receivedChunk) {
+        if (receivedChunk.getParityChunkCount() > 0 && receivedChunk.getIndex() >= receivedChunk.getGroupSize()) {
+            throw new IllegalArgumentException(
+                    "Parity chunks are not supported by a stream stitcher: " + receivedChunk);
+        }
+        if (receivedChunk.isReference()) {
+            throw new IllegalArgumentException(
+                    "Reference chunks are not supported by a stream stitcher: " + receivedChunk);
+        }
+        if (isTombstoned(receivedChunk.getGroupId())) {
+            logger.atDebug().log("Dropped late duplicate chunk of completed group: {}", receivedChunk);
+            return false;
+        }
+        if (logger.atTrace().isEnabled()) {
+            logger.atTrace().log("Received: {}", receivedChunk);
+        }
+        if (!ChecksumAlgorithm.matches(receivedChunk)) {
+            logger.atWarn().log("Dropped chunk not matching its checksum: {}", receivedChunk);
+            throw new CorruptChunkException(
+                    receivedChunk.getGroupId(),
+                    new int[] {receivedChunk.getIndex()},
+                    "Chunk data does not match its checksum");
+        }
+        Chunk chunk = compressionCodecs.decompress(receivedChunk);
+        UUID groupId = chunk.getGroupId();
+        while (true) {
+            StreamStitchingGroup group = chunkGroups.get(
+                    groupId, k -> isTombstoned(k) ? null : new StreamStitchingGroup(chunk.getGroupSize()));
+            if (group == null) {
+                return false;
+            }
+            boolean complete = false;
+            boolean discarded = false;
+            RuntimeException failure = null;
+            synchronized (group) {
+                if (group.isClosed()) {
+                    Thread.yield();
+                    continue;
+                }
+                try {
+                    group.openChannel(groupId, channelFactory);
+                    complete = group.addAndWrite(chunk);
+                } catch (IOException e) {
+                    group.closeQuietly();
+                    failure = new UncheckedIOException(e);
+                } catch (UncheckedIOException e) {
+                    group.closeQuietly();
+                    failure = e;
+                } catch (RuntimeException e) {
+                    if (group.isEmpty()) {
+                        group.closeQuietly();
+                    }
+                    failure = e;
+                }
+                discarded = failure != null && group.isClosed();
+            }
+            if (complete && tombstones != null) {
+                tombstones.add(groupId);
+            }
+            if (complete || discarded) {
+                chunkGroups.asMap().remove(groupId, group);
+            }
+            if (failure instanceof UncheckedIOException) {
+                logger.atWarn().log("Discarded chunk group [{}] after failing to write to its channel", groupId);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * Returns the indexes of the chunks still missing from a pending group, e.g. to ask the producer to resend only
+     * those chunks.
+     *
+     * @param groupId The group ID.
+     * @return An Optional containing the indexes of the missing chunks in ascending order, or an empty Optional if no
+     *     group of the ID is pending.
+     */
+    public Optional<int[]> missingChunkIndexes(@NonNull UUID groupId) {
+        StreamStitchingGroup group = chunkGroups.getIfPresent(groupId);
+        if (group == null) {
+            return Optional.empty();
+        }
+        synchronized (group) {
+            return group.isClosed() ? Optional.empty() : Optional.of(group.missingChunkIndexes());
+        }
+    }
+
+    /**
+     * Checks if a group is recorded as recently completed.
+     *
+     * @param groupId The group ID.
+     * @return true if tombstones are configured and the group is recorded in them.
+     */
+    private boolean isTombstoned(UUID groupId) {
+        return tombstones != null && tombstones.contains(groupId);
+    }
+
+    /**
+     * The Builder class for the ChunkStreamStitcher class. It provides a fluent interface for configuring a
+     * ChunkStreamStitcher.
+     */
+    public static class Builder {
+        private Function<UUID, WritableByteChannel> channelFactory;
+        private Duration maxStitchTime = Duration.ofNanos(DEFAULT_MAX_STITCH_TIME_NANOS);
+        private long maxStitchingGroups = DEFAULT_MAX_STITCHING_GROUPS;
+        private final CompressionCodecs compressionCodecs = new CompressionCodecs();
+        private int tombstoneCapacity;
+
+        /**
+         * Builds a new ChunkStreamStitcher with the current configuration of the Builder.
+         *
+         * @return A new ChunkStreamStitcher.
+         */
+        public ChunkStreamStitcher build() {
+            return new ChunkStreamStitcher(this);
+        }
+
+        /**
+         * Sets the factory of the channel to write the restored original data of each group to. The factory is called
+         * with the group ID when the first chunk of a group is received.
+         *
+         * @param channelFactory The channel factory.
+         * @return The Builder, for method chaining.
+         */
+        public Builder channelFactory(Function<UUID, WritableByteChannel> channelFactory) {
+            this.channelFactory = channelFactory;
+            return this;
+        }
+
+        /**
+         * Sets the factory of the output stream to write the restored original data of each group to. The factory is
+         * called with the group ID when the first chunk of a group is received.
+         *
+         * @param outputStreamFactory The output stream factory.
+         * @return The Builder, for method chaining.
+         */
+        public Builder outputStreamFactory(@NonNull Function<UUID, OutputStream> outputStreamFactory) {
+            this.channelFactory = groupId -> Channels.newChannel(outputStreamFactory.apply(groupId));
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration from the first chunk received to the complete restoration of the original data.
+         *
+         * @param maxStitchTime The maximum duration.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxStitchTime(Duration maxStitchTime) {
+            this.maxStitchTime = maxStitchTime;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pending stitch groups. These groups will take up memory at runtime.
+         *
+         * @param maxGroups The maximum number of groups.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxStitchingGroups(long maxGroups) {
+            this.maxStitchingGroups = maxGroups;
+            return this;
+        }
+
+        /**
+         * Registers a codec to decompress chunks marked with its ID. The built-in {@link DeflateCodec} is always
+         * registered.
+         *
+         * @param compressionCodec The compression codec.
+         * @return The Builder, for method chaining.
+         */
+        public Builder compressionCodec(@NonNull CompressionCodec compressionCodec) {
+            this.compressionCodecs.register(compressionCodec);
+            return this;
+        }
+
+        /**
+         * Sets the number of recently completed group IDs to remember, so that late duplicate chunks of those groups
+         * are dropped instead of opening a new channel. Between the given number and twice as many of the most recently
+         * completed groups are remembered, in fixed memory of 64 to 128 bytes per unit of capacity. Defaults to 0,
+         * remembering none. Tombstones must not be combined with {@link GroupIdGenerator#contentDerived()
+         * content-derived} group IDs: the chunks of an identical data blob sent again while its group is remembered are
+         * dropped as late duplicates, and the blob is never written.
+         *
+         * @param v The number of completed group IDs to remember.
+         * @return The Builder, for method chaining.
+         */
+        public Builder tombstoneCapacity(int v) {
+            this.tombstoneCapacity = v;
+            return this;
+        }
+    }
+
+    /**
+     * The StreamStitchingGroup class represents a group of chunks that are written to a channel in index order. Chunks
+     * arriving ahead of the next index to write are held until the gap before them is filled. It is not thread-safe:
+     * all access is synchronized on the group. Once closed, whether completed, failed, or evicted, the group takes no
+     * more chunks.
+     */
+    @NotThreadSafe
+    @ToString
+    private static class StreamStitchingGroup {
+        @ToString.Exclude
+        private final Map<Integer, Chunk> outOfOrderChunks = new HashMap<>();
+
+        @ToString.Exclude
+        @Nullable private WritableByteChannel channel;
+
+        private final int expectedChunkTotal;
+        private int nextChunkIndex;
+        private long writtenByteSize;
+        private boolean closed;
+
+        /**
+         * Constructor for the StreamStitchingGroup class.
+         *
+         * @param expectedChunkTotal The total number of chunks expected by the group.
+         */
+        StreamStitchingGroup(int expectedChunkTotal) {
+            this.expectedChunkTotal = expectedChunkTotal;
+        }
+
+        /**
+         * Opens the channel to write the restored original data to, unless already open.
+         *
+         * @param groupId The group ID.
+         * @param channelFactory The factory of the channel.
+         */
+        void openChannel(UUID groupId, Function<UUID, WritableByteChannel> channelFactory) {
+            if (channel == null) {
+                channel = channelFactory.apply(groupId);
+            }
+        }
+
+        /**
+         * Checks if the group is closed, and takes no more chunks.
+         *
+         * @return true if the group is closed.
+         */
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Checks if no chunk has been added to the group yet.
+         *
+         * @return true if the group holds no chunks and has written no bytes.
+         */
+        boolean isEmpty() {
+            return nextChunkIndex == 0 && outOfOrderChunks.isEmpty();
+        }
+
+        /**
+         * Adds a chunk to the group, and writes the contiguous run of chunks starting at the next index to write, if
+         * any. If the chunk is the last one expected by the group, the channel is closed.
+         *
+         * @param chunk The chunk to be added to the group.
+         * @return true if all the chunks of the group have been written, false otherwise.
+         * @throws IOException if writing to or closing the channel fails
+         */
+        boolean addAndWrite(Chunk chunk) throws IOException {
+            if (chunk.getIndex() < 0 || chunk.getIndex() >= expectedChunkTotal) {
+                throw new IllegalArgumentException("Chunk out of bounds of its stitching group: " + chunk);
+            }
+            if (chunk.getIndex() < nextChunkIndex || outOfOrderChunks.containsKey(chunk.getIndex())) {
+                logger.atWarn().log("Duplicate chunk {} received and ignored", chunk);
+                return false;
+            }
+            if (chunk.getIndex() > nextChunkIndex) {
+                outOfOrderChunks.put(chunk.getIndex(), chunk);
+                return false;
+            }
+            write(chunk);
+            for (Chunk next = outOfOrderChunks.remove(nextChunkIndex);
+                    next != null;
+                    next = outOfOrderChunks.remove(nextChunkIndex)) {
+                write(next);
+            }
+            if (nextChunkIndex < expectedChunkTotal) {
+                return false;
+            }
+            closed = true;
+            channel.close();
+            logger.atDebug().log(() -> "Wrote all " + expectedChunkTotal + " chunks in group " + this);
+            return true;
+        }
+
+        /**
+         * Returns the indexes of the chunks neither written nor held out of order.
+         *
+         * @return The indexes of the missing chunks, in ascending order.
+         */
+        int[] missingChunkIndexes() {
+            return IntStream.range(nextChunkIndex, expectedChunkTotal)
+                    .filter(index -> !outOfOrderChunks.containsKey(index))
+                    .toArray();
+        }
+
+        /**
+         * Writes all bytes of the chunk at the next index to the channel. A chunk from a producer predating offsets is
+         * taken to follow the bytes already written.
+         *
+         * @param chunk The chunk at the next index to write.
+         * @throws IOException if writing to the channel fails
+         */
+        private void write(Chunk chunk) throws IOException {
+            if (chunk.getOffset() != writtenByteSize && !chunk.isLegacy()) {
+                throw new IllegalArgumentException(
+                        "Chunk offset not following the " + writtenByteSize + " bytes already written: " + chunk);
+            }
+            ByteBuffer chunkBytes = chunk.getByteBuffer();
+            while (chunkBytes.hasRemaining()) {
+                channel.write(chunkBytes);
+            }
+            writtenByteSize += chunk.getByteSize();
+            nextChunkIndex++;
+        }
+
+        /** Closes the group and its channel, logging instead of propagating any failure. */
+        void closeQuietly() {
+            closed = true;
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.atWarn().log(e, "Failed to close channel of stitching group {}", this);
+            }
+        }
+
+        /**
+         * Returns the number of chunks received but not yet written because of missing chunks before them.
+         *
+         * @return The number of out-of-order chunks held.
+         */
+        int getOutOfOrderChunkTotal() {
+            return outOfOrderChunks.size();
+        }
+    }
+
+    /**
+     * The InvoluntaryEvictionCloser class is used to log and close the channel when a chunk group is involuntarily
+     * evicted from the cache. It is registered as a removal listener, which the cache runs asynchronously after the
+     * removal, so that neither the group's lock nor closing its channel is ever waited for under a lock of the cache.
+     */
+    private class InvoluntaryEvictionCloser implements RemovalListener<UUID, StreamStitchingGroup> {
+
+        @Override
+        public void onRemoval(UUID groupId, StreamStitchingGroup group, @NonNull RemovalCause cause) {
+            if (cause != RemovalCause.EXPIRED && cause != RemovalCause.SIZE) {
+                return;
+            }
+            synchronized (group) {
+                if (group.isClosed()) {
+                    return;
+                }
+                if (cause == RemovalCause.EXPIRED) {
+                    logger.atWarn()
+                            .log(
+                                    "chunk group [{}] took too long to stitch and expired after [{}], closing its channel after writing [{}] of [{}] chunks, holding [{}] out-of-order chunks",
+                                    groupId,
+                                    maxStitchTime,
+                                    group.nextChunkIndex,
+                                    group.expectedChunkTotal,
+                                    group.getOutOfOrderChunkTotal());
+                } else {
+                    logger.atWarn()
+                            .log(
+                                    "chunk group [{}] was removed due to exceeding max group count [{}], closing its channel",
+                                    groupId,
+                                    maxStitchingGroups);
+                }
+                group.closeQuietly();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+/**
+ * The ChunkTransport interface forwards chunks from the node that received them to the node that owns their group, as
+ * decided by a {@link ChunkRouter}. Implementations carry the chunk over the network of their choice, e.g. encoded by
+ * {@link ChunkCodec}, and hand it to {@link ChunkRouter#receive(Chunk)} of the router on the target node.
+ *
+ * @author Qingtian Wang
+ */
+@FunctionalInterface
+public interface ChunkTransport {
+
+    /**
+     * Forwards a chunk to the node owning its group. Failing to forward should be signaled by throwing an unchecked
+     * exception, so that the chunk is not acknowledged to its producer.
+     *
+     * @param nodeId The ID of the node owning the chunk's group.
+     * @param chunk The chunk to forward.
+     */
+    void forward(String nodeId, Chunk chunk);
+}
@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The CompressionCodec interface defines a compression algorithm applied to the data of individual chunks. A chopper
+ * configured with a codec compresses each chunk's data where it pays off, and marks the chunk with the codec's ID; a
+ * stitcher decompresses each arriving chunk with the codec registered under the chunk's ID, before adding it to its
+ * group. Implementations have to be thread-safe, and the compressed form has to be self-describing, since the
+ * decompressed byte size is not carried by the chunk.
+ *
+ * @author Qingtian Wang
+ */
+public interface CompressionCodec {
+
+    /**
+     * Returns the ID of this codec, carried by each chunk compressed with it. The ID 0 is reserved for uncompressed
+     * chunks, and {@link DeflateCodec#ID} for the built-in codec.
+     *
+     * @return The non-zero codec ID.
+     */
+    byte getId();
+
+    /**
+     * Compresses data bytes.
+     *
+     * @param uncompressed The data bytes to compress, from position to limit; not modified.
+     * @return The compressed bytes, from position to limit.
+     */
+    ByteBuffer compress(ByteBuffer uncompressed);
+
+    /**
+     * Decompresses data bytes compressed by this codec.
+     *
+     * @param compressed The compressed bytes, from position to limit; not modified.
+     * @param maxByteSize The maximum byte size of the decompressed data, guarding against malformed or malicious input.
+     * @return The decompressed data bytes, from position to limit.
+     * @throws IllegalArgumentException if the compressed bytes are malformed, or would decompress to more than the
+     *     maximum byte size
+     */
+    ByteBuffer decompress(ByteBuffer compressed, int maxByteSize);
+}
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The CompressionCodecs class is a registry of compression codecs by ID, used by stitchers to decompress arriving
+ * chunks. The built-in {@link DeflateCodec} is always registered. It is not thread-safe while being built up by a
+ * builder; each stitcher reads a copy of its builder's registry, taken when the stitcher is built.
+ *
+ * @author Qingtian Wang
+ */
+@NotThreadSafe
+final class CompressionCodecs {
+    private final CompressionCodec[] codecs = new CompressionCodec[256];
+
+    /** Constructor for the CompressionCodecs class, registering the built-in codec. */
+    CompressionCodecs() {
+        register(DeflateCodec.ofLevel(Deflater.DEFAULT_COMPRESSION));
+    }
+
+    /**
+     * Copy constructor for the CompressionCodecs class, so that a built stitcher is not affected by codecs registered
+     * on its builder afterward.
+     *
+     * @param source The registry to copy.
+     */
+    CompressionCodecs(CompressionCodecs source) {
+        System.arraycopy(source.codecs, 0, codecs, 0, codecs.length);
+    }
+
+    /**
+     * Registers a codec under its ID, replacing any codec registered under the same ID.
+     *
+     * @param codec The codec to register.
+     * @return This registry.
+     */
+    CompressionCodecs register(CompressionCodec codec) {
+        if (codec.getId() == 0) {
+            throw new IllegalArgumentException("Compression codec ID 0 is reserved for uncompressed chunks: " + codec);
+        }
+        codecs[codec.getId() & 0xFF] = codec;
+        return this;
+    }
+
+    /**
+     * Returns the codec registered under an ID.
+     *
+     * @param id The codec ID.
+     * @return The codec, or null if none is registered under the ID.
+     */
+    @Nullable CompressionCodec get(byte id) {
+        return codecs[id & 0xFF];
+    }
+
+    /**
+     * Decompresses the data of a compressed chunk with the codec registered under its compression ID. The decompressed
+     * data is bounded by the remainder of the chunk's data blob past the chunk's offset.
+     *
+     * @param chunk The received chunk.
+     * @return The chunk itself if not compressed, or an uncompressed copy of it.
+     * @throws IllegalArgumentException if no codec is registered under the chunk's compression ID, or the chunk's data
+     *     cannot be decompressed
+     */
+    Chunk decompress(Chunk chunk) {
+        if (chunk.getCompressionId() == 0 || chunk.isReference()) {
+            return chunk;
+        }
+        CompressionCodec codec = get(chunk.getCompressionId());
+        if (codec == null) {
+            throw new IllegalArgumentException("No compression codec registered for chunk: " + chunk);
+        }
+        long maxByteSize = Math.min(chunk.getBlobByteSize() - chunk.getOffset(), Integer.MAX_VALUE);
+        ByteBuffer decompressed = codec.decompress(chunk.getByteBuffer(), (int) Math.max(maxByteSize, 0));
+        return chunk.toBuilder()
+                .bytes(null)
+                .byteBuffer(decompressed.asReadOnlyBuffer())
+                .compressionId((byte) 0)
+                .build();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The ContentDefinedBoundaries class finds chunk boundaries from the data content itself, in the style of FastCDC: a
+ * gear rolling hash is computed over the bytes past the minimum chunk size, and a boundary is cut where the hash
+ * matches a mask. A stricter mask is used before the average chunk size and a looser one after, to normalize chunk
+ * sizes around the average; a boundary is always cut at the maximum chunk size. Since boundaries depend only on nearby
+ * content, an edit to the data blob only changes the chunks around it. The class is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+final class ContentDefinedBoundaries {
+    /** Fixed seed of the gear table, so that all choppers cut identical content at identical boundaries. */
+    private static final long GEAR_SEED = 0x6368756e6b346aL;
+
+    private static final long[] GEAR = gearTable();
+
+    private final int minChunkByteSize;
+    private final int avgChunkByteSize;
+    private final int maxChunkByteSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    /**
+     * Constructor for the ContentDefinedBoundaries class.
+     *
+     * @param minChunkByteSize The minimum byte size of a chunk, except for the last chunk of a data blob.
+     * @param avgChunkByteSize The targeted average byte size of a chunk.
+     * @param maxChunkByteSize The maximum byte size of a chunk.
+     */
+    ContentDefinedBoundaries(int minChunkByteSize, int avgChunkByteSize, int maxChunkByteSize) {
+        if (minChunkByteSize <= 0 || minChunkByteSize > avgChunkByteSize || avgChunkByteSize > maxChunkByteSize) {
+            throw new IllegalArgumentException(
+                    "Content-defined chunk byte sizes have to be positive and in the order of"
+                            + " min <= avg <= max: min " + minChunkByteSize + ", avg " + avgChunkByteSize + ", max "
+                            + maxChunkByteSize);
+        }
+        this.minChunkByteSize = minChunkByteSize;
+        this.avgChunkByteSize = avgChunkByteSize;
+        this.maxChunkByteSize = maxChunkByteSize;
+        int avgBits = 31 - Integer.numberOfLeadingZeros(avgChunkByteSize);
+        this.strictMask = highBitsMask(avgBits + 1);
+        this.looseMask = highBitsMask(Math.max(avgBits - 1, 0));
+    }
+
+    /**
+     * Returns the maximum byte size of a chunk.
+     *
+     * @return The maximum chunk byte size.
+     */
+    int getMaxChunkByteSize() {
+        return maxChunkByteSize;
+    }
+
+    /**
+     * Finds the end of the chunk starting at the given position of the data.
+     *
+     * @param data The data to chop, only read by absolute positions.
+     * @param start The start position of the chunk.
+     * @param end The end position of the data.
+     * @return The exclusive end position of the chunk.
+     */
+    int nextBoundary(ByteBuffer data, int start, int end) {
+        int remaining = end - start;
+        if (remaining <= minChunkByteSize) {
+            return end;
+        }
+        int normalEnd = start + Math.min(remaining, avgChunkByteSize);
+        int maxEnd = start + Math.min(remaining, maxChunkByteSize);
+        long hash = 0;
+        int i = start + minChunkByteSize;
+        for (; i < normalEnd; i++) {
+            hash = (hash << 1) + GEAR[data.get(i) & 0xFF];
+            if ((hash & strictMask) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < maxEnd; i++) {
+            hash = (hash << 1) + GEAR[data.get(i) & 0xFF];
+            if ((hash & looseMask) == 0) {
+                return i + 1;
+            }
+        }
+        return maxEnd;
+    }
+
+    /**
+     * Returns a mask of the given number of the most significant bits of a long, which depend on the most bytes in a
+     * gear hash.
+     *
+     * @param bits The number of bits to mask.
+     * @return The mask.
+     */
+    private static long highBitsMask(int bits) {
+        return bits == 0 ? 0 : -1L << (Long.SIZE - Math.min(bits, Long.SIZE));
+    }
+
+    /**
+     * Creates the table of pseudo-random values that each byte value contributes to the gear hash.
+     *
+     * @return The gear table.
+     */
+    private static long[] gearTable() {
+        Random random = new Random(GEAR_SEED);
+        long[] gear = new long[256];
+        for (int i = 0; i < gear.length; i++) {
+            gear[i] = random.nextLong();
+        }
+        return gear;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.Arrays;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The CorruptChunkException class signals that received chunks failed integrity verification, and were dropped without
+ * being added to their stitching group, or that a stitched group failed verification and was discarded. It reports the
+ * group ID and the indexes of the chunks to resend.
+ *
+ * @author Qingtian Wang
+ */
+public class CorruptChunkException extends IllegalArgumentException {
+    private static final long serialVersionUID = -6297581403574512346L;
+
+    /** The group ID of the corrupt chunks. */
+    @Getter
+    private final UUID groupId;
+
+    /** The indexes of the corrupt chunks inside their group. */
+    private final int[] chunkIndexes;
+
+    /** Whether the whole group was discarded, rather than just the corrupt chunks dropped. */
+    @Getter
+    private final boolean groupDiscarded;
+
+    /**
+     * Constructor for the CorruptChunkException class.
+     *
+     * @param groupId The group ID of the corrupt chunks.
+     * @param chunkIndexes The indexes of the corrupt chunks.
+     * @param message The detail message.
+     */
+    public CorruptChunkException(@NonNull UUID groupId, @NonNull int[] chunkIndexes, String message) {
+        this(groupId, chunkIndexes, false, message);
+    }
+
+    /**
+     * Constructor for the CorruptChunkException class.
+     *
+     * @param groupId The group ID of the corrupt chunks.
+     * @param chunkIndexes The indexes of the corrupt chunks.
+     * @param groupDiscarded Whether the whole group was discarded, e.g. for not matching its Merkle root, so that all
+     *     its chunks need to be resent.
+     * @param message The detail message.
+     */
+    public CorruptChunkException(
+            @NonNull UUID groupId, @NonNull int[] chunkIndexes, boolean groupDiscarded, String message) {
+        super(message + ": group " + groupId + ", chunk indexes " + Arrays.toString(chunkIndexes));
+        this.groupId = groupId;
+        this.chunkIndexes = chunkIndexes.clone();
+        this.groupDiscarded = groupDiscarded;
+    }
+
+    /**
+     * Returns the indexes of the corrupt chunks, which need to be resent.
+     *
+     * @return The indexes of the corrupt chunks inside their group.
+     */
+    public int[] getChunkIndexes() {
+        return chunkIndexes.clone();
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * The DeflateCodec class is the built-in {@link CompressionCodec}, based on the JDK's {@link Deflater} and
+ * {@link Inflater}. Compressed bytes are laid out as the decompressed byte size, as an unsigned varint, followed by the
+ * raw deflate stream. Each thread reuses a deflater and an inflater of its own, reset after each call, rather than
+ * allocating the native zlib state on every call. The class is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class DeflateCodec implements CompressionCodec {
+    /** The ID of the built-in codec, which every {@link ChunkStitcher} can decompress without registering it. */
+    public static final byte ID = 1;
+
+    /** Inflater of each thread, shared by all instances as inflating does not depend on the level. */
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final int level;
+
+    /** Deflater of each thread, at the level of this codec. */
+    private final ThreadLocal<Deflater> deflaters;
+
+    /**
+     * Private constructor for the DeflateCodec class. It is used by the static factory method to create a new instance
+     * of DeflateCodec.
+     *
+     * @param level The deflate compression level.
+     */
+    private DeflateCodec(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)
+                && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid deflate compression level: " + level);
+        }
+        this.level = level;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    /**
+     * Static factory method for creating a new DeflateCodec.
+     *
+     * @param level The deflate compression level, from {@link Deflater#BEST_SPEED} to
+     *     {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return A new DeflateCodec.
+     */
+    public static @NonNull DeflateCodec ofLevel(int level) {
+        return new DeflateCodec(level);
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public ByteBuffer compress(@NonNull ByteBuffer uncompressed) {
+        byte[] input = arrayOf(uncompressed);
+        int inputOffset = uncompressed.hasArray() ? uncompressed.arrayOffset() + uncompressed.position() : 0;
+        int inputLength = uncompressed.remaining();
+        int headerByteSize = ChunkCodec.varintByteSize(inputLength);
+        byte[] output = new byte[headerByteSize + inputLength + inputLength / 1000 + 64];
+        ChunkCodec.putVarint(ByteBuffer.wrap(output), inputLength);
+        Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(input, inputOffset, inputLength);
+            deflater.finish();
+            int outputLength = headerByteSize;
+            while (!deflater.finished()) {
+                if (outputLength == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+            }
+            return ByteBuffer.wrap(output, 0, outputLength);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    @Override
+    public ByteBuffer decompress(@NonNull ByteBuffer compressed, int maxByteSize) {
+        ByteBuffer source = compressed.duplicate();
+        int outputLength = ChunkCodec.getVarint(source);
+        if (outputLength > maxByteSize) {
+            throw new IllegalArgumentException(
+                    "Decompressed byte size " + outputLength + " exceeds max byte size " + maxByteSize);
+        }
+        byte[] input = arrayOf(source);
+        int inputOffset = source.hasArray() ? source.arrayOffset() + source.position() : 0;
+        byte[] output = new byte[outputLength];
+        Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(input, inputOffset, source.remaining());
+            int inflated = 0;
+            while (inflated < outputLength) {
+                int n = inflater.inflate(output, inflated, outputLength - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != outputLength) {
+                throw new IllegalArgumentException(
+                        "Deflate stream ended after " + inflated + " of " + outputLength + " bytes");
+            }
+            return ByteBuffer.wrap(output);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed deflate stream", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+
+    /**
+     * Returns the backing array of a heap buffer, or a copy of the remaining bytes of any other buffer.
+     *
+     * @param buffer The buffer, whose position is not changed.
+     * @return The array holding the buffer's remaining bytes, from the buffer's array offset plus position if it is the
+     *     backing array, or from 0 if it is a copy.
+     */
+    private static byte[] arrayOf(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] copy = new byte[buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+}
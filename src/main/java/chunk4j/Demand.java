@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Demand class keeps the outstanding demand of a Reactive Streams subscription, where a demand of
+ * {@link Long#MAX_VALUE} is unbounded and never consumed.
+ */
+final class Demand {
+
+    private Demand() {}
+
+    /**
+     * Adds to the outstanding demand, capping it at unbounded.
+     *
+     * @param requested The outstanding demand.
+     * @param n The positive number of items requested.
+     * @return The outstanding demand before the addition.
+     */
+    static long add(AtomicLong requested, long n) {
+        long current;
+        long updated;
+        do {
+            current = requested.get();
+            if (current == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+        } while (!requested.compareAndSet(current, updated));
+        return current;
+    }
+
+    /**
+     * Consumes the outstanding demand by the number of items emitted, unless the demand is unbounded.
+     *
+     * @param requested The outstanding demand.
+     * @param emitted The number of items emitted.
+     * @return The outstanding demand after the consumption.
+     */
+    static long consume(AtomicLong requested, long emitted) {
+        long current;
+        long updated;
+        do {
+            current = requested.get();
+            if (current == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            updated = current - emitted;
+        } while (!requested.compareAndSet(current, updated));
+        return updated;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * The DirectBufferPool class recycles direct byte buffers, so that off-heap memory is reused rather than repeatedly
+ * allocated and left to the garbage collector to free. Buffers are pooled in power-of-two size classes, and the total
+ * byte size of the idle buffers kept in the pool is capped. Rounding up to a size class trades up to half of each
+ * buffer's capacity for reuse across byte sizes. It is thread-safe.
+ */
+@ThreadSafe
+final class DirectBufferPool {
+    private static final int MIN_SIZE_CLASS_SHIFT = 12;
+    private static final int MAX_SIZE_CLASS_SHIFT = 30;
+    private final ConcurrentLinkedDeque<ByteBuffer>[] idleBuffers;
+    private final long maxIdleByteSize;
+    private final AtomicLong idleByteSize = new AtomicLong();
+
+    /**
+     * Constructor for the DirectBufferPool class.
+     *
+     * @param maxIdleByteSize The maximum total byte size of the idle buffers kept in the pool.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    DirectBufferPool(long maxIdleByteSize) {
+        this.maxIdleByteSize = maxIdleByteSize;
+        this.idleBuffers = new ConcurrentLinkedDeque[MAX_SIZE_CLASS_SHIFT - MIN_SIZE_CLASS_SHIFT + 1];
+        for (int i = 0; i < idleBuffers.length; i++) {
+            idleBuffers[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    /**
+     * Returns the shift of the smallest power-of-two size class that can hold the given byte size.
+     *
+     * @param byteSize The byte size to hold.
+     * @return The size class shift.
+     */
+    private static int sizeClassShift(int byteSize) {
+        return Math.max(MIN_SIZE_CLASS_SHIFT, Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(byteSize, 1) - 1));
+    }
+
+    /**
+     * Acquires a direct buffer of at least the given byte size, reusing an idle one of the same size class if
+     * available. Its content is undefined.
+     *
+     * @param byteSize The minimum capacity of the buffer.
+     * @return A cleared direct buffer, of a power-of-two capacity if the byte size is within the pooled size classes.
+     */
+    ByteBuffer acquire(int byteSize) {
+        int shift = sizeClassShift(byteSize);
+        if (shift > MAX_SIZE_CLASS_SHIFT) {
+            return ByteBuffer.allocateDirect(byteSize);
+        }
+        ByteBuffer idle = idleBuffers[shift - MIN_SIZE_CLASS_SHIFT].pollFirst();
+        if (idle == null) {
+            return ByteBuffer.allocateDirect(1 << shift);
+        }
+        idleByteSize.addAndGet(-idle.capacity());
+        idle.clear();
+        return idle;
+    }
+
+    /**
+     * Returns a buffer previously acquired from this pool, to be reused. The buffer is dropped instead, and left to the
+     * garbage collector to free, if it is not of a pooled size class or the pool is full.
+     *
+     * @param buffer The buffer no longer in use.
+     */
+    void release(@NonNull ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int shift = sizeClassShift(capacity);
+        if (capacity != 1 << shift || shift > MAX_SIZE_CLASS_SHIFT) {
+            return;
+        }
+        if (idleByteSize.addAndGet(capacity) > maxIdleByteSize) {
+            idleByteSize.addAndGet(-capacity);
+            return;
+        }
+        idleBuffers[shift - MIN_SIZE_CLASS_SHIFT].offerFirst(buffer);
+    }
+}
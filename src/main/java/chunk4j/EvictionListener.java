@@ -0,0 +1,46 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.UUID;
+
+/**
+ * The EvictionListener interface is notified of each pending group that a {@link ChunkStitcher} evicts before the group
+ * completes, either on expiry of the max stitch time, or to stay within the max stitching groups or max pending byte
+ * size. It is called on the thread causing the eviction, and should not block for long.
+ *
+ * @author Qingtian Wang
+ */
+@FunctionalInterface
+public interface EvictionListener {
+
+    /**
+     * Called with the ID of an evicted group.
+     *
+     * @param groupId The group ID.
+     * @param expired true if the group expired, false if it was evicted to bound the pending groups.
+     */
+    void onEvicted(UUID groupId, boolean expired);
+}
@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * The GroupIdGenerator interface defines the strategy of a Chopper to generate the group ID shared by all chunks
+ * chopped from the same data blob. Implementations have to be thread-safe, and generate IDs that are unique among all
+ * the groups that may be pending at the same Stitcher; or, if content-derived, identical for identical data blobs.
+ *
+ * @author Qingtian Wang
+ */
+@FunctionalInterface
+public interface GroupIdGenerator {
+
+    /**
+     * Generates the group ID for a data blob about to be chopped.
+     *
+     * @param blob Read-only view of the data blob, or null if the blob is read from a stream and not available upfront.
+     * @return The group ID.
+     */
+    UUID generate(@Nullable ByteBuffer blob);
+
+    /**
+     * Returns the default generator, issuing random (version 4) UUIDs from the JDK's shared cryptographically strong
+     * random number generator. Under heavy concurrent chopping of small blobs, the shared generator may become a
+     * contention point.
+     *
+     * @return The random group ID generator.
+     */
+    static GroupIdGenerator random() {
+        return blob -> UUID.randomUUID();
+    }
+
+    /**
+     * Returns a generator issuing random (version 4) UUIDs from a thread-local random number generator, which is
+     * contention-free but not cryptographically strong.
+     *
+     * @return The thread-local random group ID generator.
+     */
+    static GroupIdGenerator threadLocalRandom() {
+        return blob -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+            long leastSigBits = (random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+            return new UUID(mostSigBits, leastSigBits);
+        };
+    }
+
+    /**
+     * Returns a generator issuing IDs made of the given node ID as the most significant 64 bits, and an atomic counter
+     * as the least significant 64 bits. The counter starts from the current time in milliseconds shifted left by 22
+     * bits, so that IDs stay unique across restarts of the same node unless it issued more than four million IDs per
+     * millisecond of uptime. IDs are unique across nodes as long as the node IDs are.
+     *
+     * @param nodeId The unique ID of the chopping node.
+     * @return The sequential group ID generator.
+     */
+    static GroupIdGenerator sequential(long nodeId) {
+        AtomicLong counter = new AtomicLong(System.currentTimeMillis() << 22);
+        return blob -> new UUID(nodeId, counter.getAndIncrement());
+    }
+
+    /**
+     * Returns a generator issuing name-based (version 3) UUIDs derived from the MD5 digest of the data blob, so that
+     * identical blobs, e.g. when re-sent, map to the same group. Blobs read from a stream are not supported, as their
+     * content is not available upfront. Not to be combined with the tombstones of a stitcher, which would drop the
+     * chunks of an identical blob sent again after its group completed, as late duplicates of the same group.
+     *
+     * @return The content-derived group ID generator.
+     */
+    static GroupIdGenerator contentDerived() {
+        return blob -> {
+            if (blob == null) {
+                throw new IllegalArgumentException("Content-derived group ID requires the data blob upfront");
+            }
+            MessageDigest md5;
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("MD5 not supported", e);
+            }
+            md5.update(blob.duplicate());
+            byte[] digest = md5.digest();
+            digest[6] = (byte) ((digest[6] & 0x0F) | 0x30);
+            digest[8] = (byte) ((digest[8] & 0x3F) | 0x80);
+            ByteBuffer digestBuffer = ByteBuffer.wrap(digest);
+            return new UUID(digestBuffer.getLong(), digestBuffer.getLong());
+        };
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The GroupTable class is a table of pending groups keyed by the two longs of their group IDs, so that neither a lookup
+ * nor an insertion allocates a UUID or an entry object. Slots are kept in flat arrays with linear probing, each slot
+ * holding the ID and the expiry deadline of its group inline; removals shift later slots back instead of leaving
+ * tombstones. A ring of creation records, in order of insertion, yields the eldest group for expiry and eviction;
+ * records of groups removed otherwise are skipped lazily, and purged when the ring fills up.
+ *
+ * <p>It is not thread-safe, and meant to be owned by a single thread.
+ *
+ * @param <V> The type of the groups.
+ * @author Qingtian Wang
+ */
+@NotThreadSafe
+final class GroupTable<V> {
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int INITIAL_SLOTS = 16;
+    private static final int MAX_SLOTS = 1 << 30;
+    private static final int FIELDS = 3;
+    private static final int MSB = 0;
+    private static final int LSB = 1;
+    private static final int DEADLINE = 2;
+
+    /** Group ID halves and deadline of each slot, at FIELDS times the slot index. */
+    private long[] slots = new long[INITIAL_SLOTS * FIELDS];
+
+    /** Group of each slot; null for an empty slot. */
+    private Object[] groups = new Object[INITIAL_SLOTS];
+
+    private int slotMask = INITIAL_SLOTS - 1;
+    private int size;
+
+    /** Group ID halves and deadline of each inserted group, in order of insertion, at FIELDS times the record index. */
+    private long[] records = new long[INITIAL_SLOTS * FIELDS];
+
+    private int recordHead;
+    private int recordCount;
+
+    /**
+     * Returns the number of groups in the table.
+     *
+     * @return The number of groups.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks up a group.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @return The group, or null if absent.
+     */
+    @Nullable V get(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        return slot < 0 ? null : groupAt(slot);
+    }
+
+    /**
+     * Inserts a group that is not in the table yet, as the youngest group.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @param group The group.
+     * @param deadlineNanos The time at which the group expires, not earlier than that of any group already inserted.
+     */
+    void put(long msb, long lsb, V group, long deadlineNanos) {
+        if ((size + 1) * 4L > groups.length * 3L) {
+            resize();
+        }
+        int slot = slotOf(msb, lsb);
+        while (groups[slot] != null) {
+            slot = (slot + 1) & slotMask;
+        }
+        set(slot, msb, lsb, deadlineNanos, group);
+        size++;
+        if (recordCount * FIELDS == records.length) {
+            purgeRecords();
+        }
+        int record = ((recordHead + recordCount) % (records.length / FIELDS)) * FIELDS;
+        records[record + MSB] = msb;
+        records[record + LSB] = lsb;
+        records[record + DEADLINE] = deadlineNanos;
+        recordCount++;
+    }
+
+    /**
+     * Removes a group.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @return The removed group, or null if absent.
+     */
+    @Nullable V remove(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        if (slot < 0) {
+            return null;
+        }
+        V group = groupAt(slot);
+        removeSlot(slot);
+        return group;
+    }
+
+    /**
+     * Returns the deadline of the eldest group.
+     *
+     * @return The deadline of the eldest group, or Long.MAX_VALUE if the table is empty.
+     */
+    long eldestDeadlineNanos() {
+        int slot = eldestSlot();
+        return slot < 0 ? Long.MAX_VALUE : slots[slot * FIELDS + DEADLINE];
+    }
+
+    /**
+     * Removes the eldest group if it has expired.
+     *
+     * @param nowNanos The current time.
+     * @return The removed group, or null if the table is empty or its eldest group has not expired.
+     */
+    @Nullable V pollExpired(long nowNanos) {
+        int slot = eldestSlot();
+        if (slot < 0 || nowNanos - slots[slot * FIELDS + DEADLINE] < 0) {
+            return null;
+        }
+        V group = groupAt(slot);
+        removeSlot(slot);
+        return group;
+    }
+
+    /**
+     * Removes the eldest group.
+     *
+     * @return The removed group, or null if the table is empty.
+     */
+    @Nullable V pollEldest() {
+        int slot = eldestSlot();
+        if (slot < 0) {
+            return null;
+        }
+        V group = groupAt(slot);
+        removeSlot(slot);
+        return group;
+    }
+
+    /** Removes all groups. */
+    void clear() {
+        Arrays.fill(groups, null);
+        size = 0;
+        recordHead = 0;
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the slot of the eldest group, dropping the leading records of groups already removed.
+     *
+     * @return The slot of the eldest group, or -1 if the table is empty.
+     */
+    private int eldestSlot() {
+        while (recordCount > 0) {
+            int record = recordHead * FIELDS;
+            int slot = liveSlotOf(record);
+            if (slot >= 0) {
+                return slot;
+            }
+            recordHead = (recordHead + 1) % (records.length / FIELDS);
+            recordCount--;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the group a creation record was made for, if that group is still in the table. A group
+     * removed and inserted again under the same ID has a later deadline, and a record of its own.
+     *
+     * @param record The index of the record's first field.
+     * @return The slot of the group, or -1 if the group has been removed.
+     */
+    private int liveSlotOf(int record) {
+        int slot = find(records[record + MSB], records[record + LSB]);
+        return slot >= 0 && slots[slot * FIELDS + DEADLINE] == records[record + DEADLINE] ? slot : -1;
+    }
+
+    /**
+     * Compacts the full ring of creation records, keeping only those of groups still in the table, in order, and
+     * doubles the ring if it would still be more than half full.
+     */
+    private void purgeRecords() {
+        int capacity = records.length / FIELDS;
+        long[] purged = new long[size * 2 > capacity ? records.length * 2 : records.length];
+        int count = 0;
+        for (int i = 0; i < recordCount; i++) {
+            int record = ((recordHead + i) % capacity) * FIELDS;
+            if (liveSlotOf(record) >= 0) {
+                System.arraycopy(records, record, purged, count * FIELDS, FIELDS);
+                count++;
+            }
+        }
+        records = purged;
+        recordHead = 0;
+        recordCount = count;
+    }
+
+    /**
+     * Looks up the slot of a group by linear probing, up to the first empty slot.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @return The slot, or -1 if absent.
+     */
+    private int find(long msb, long lsb) {
+        int slot = slotOf(msb, lsb);
+        while (groups[slot] != null) {
+            if (slots[slot * FIELDS + MSB] == msb && slots[slot * FIELDS + LSB] == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    /**
+     * Empties a slot, and shifts back the later slots of its probe run that would otherwise no longer be found.
+     *
+     * @param slot The slot to empty.
+     */
+    private void removeSlot(int slot) {
+        int gap = slot;
+        int next = (slot + 1) & slotMask;
+        while (groups[next] != null) {
+            int home = slotOf(slots[next * FIELDS + MSB], slots[next * FIELDS + LSB]);
+            if (((next - home) & slotMask) >= ((next - gap) & slotMask)) {
+                System.arraycopy(slots, next * FIELDS, slots, gap * FIELDS, FIELDS);
+                groups[gap] = groups[next];
+                gap = next;
+            }
+            next = (next + 1) & slotMask;
+        }
+        groups[gap] = null;
+        size--;
+    }
+
+    /** Doubles the number of slots, and reinserts all groups. */
+    private void resize() {
+        if (groups.length == MAX_SLOTS) {
+            throw new IllegalStateException("Group table exceeding max slot count: " + MAX_SLOTS);
+        }
+        long[] oldSlots = slots;
+        Object[] oldGroups = groups;
+        slots = new long[oldSlots.length * 2];
+        groups = new Object[oldGroups.length * 2];
+        slotMask = groups.length - 1;
+        for (int i = 0; i < oldGroups.length; i++) {
+            if (oldGroups[i] != null) {
+                int slot = slotOf(oldSlots[i * FIELDS + MSB], oldSlots[i * FIELDS + LSB]);
+                while (groups[slot] != null) {
+                    slot = (slot + 1) & slotMask;
+                }
+                System.arraycopy(oldSlots, i * FIELDS, slots, slot * FIELDS, FIELDS);
+                groups[slot] = oldGroups[i];
+            }
+        }
+    }
+
+    /**
+     * Fills a slot.
+     *
+     * @param slot The slot.
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @param deadlineNanos The deadline of the group.
+     * @param group The group.
+     */
+    private void set(int slot, long msb, long lsb, long deadlineNanos, Object group) {
+        slots[slot * FIELDS + MSB] = msb;
+        slots[slot * FIELDS + LSB] = lsb;
+        slots[slot * FIELDS + DEADLINE] = deadlineNanos;
+        groups[slot] = group;
+    }
+
+    /**
+     * Returns the group in an occupied slot.
+     *
+     * @param slot The slot.
+     * @return The group.
+     */
+    @SuppressWarnings("unchecked")
+    private V groupAt(int slot) {
+        return (V) groups[slot];
+    }
+
+    /**
+     * Returns the home slot of a group ID.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @return The slot index.
+     */
+    private int slotOf(long msb, long lsb) {
+        long hash = (msb ^ Long.rotateLeft(lsb, 32)) * HASH_MULTIPLIER;
+        return (int) (hash >>> 32) & slotMask;
+    }
+}
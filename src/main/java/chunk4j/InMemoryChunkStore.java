@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+
+/**
+ * The InMemoryChunkStore class is a {@link ChunkStore} holding chunk data bytes on the heap, bounded by their total
+ * byte size. When the bound is exceeded, the least valuable entries are evicted, after which reference chunks to them
+ * can no longer be resolved. The class is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class InMemoryChunkStore implements ChunkStore {
+    private final Cache<ByteBuffer, byte[]> chunkBytes;
+
+    /**
+     * Private constructor for the InMemoryChunkStore class. It is used by the static factory method to create a new
+     * instance of InMemoryChunkStore.
+     *
+     * @param maxByteSize The maximum total byte size of the stored data.
+     */
+    private InMemoryChunkStore(long maxByteSize) {
+        if (maxByteSize <= 0) {
+            throw new IllegalArgumentException("Max byte size of chunk store has to be positive: " + maxByteSize);
+        }
+        this.chunkBytes = Caffeine.newBuilder()
+                .maximumWeight(maxByteSize)
+                .weigher((ByteBuffer fingerprint, byte[] bytes) -> fingerprint.capacity() + bytes.length)
+                .build();
+    }
+
+    /**
+     * Static factory method for creating a new InMemoryChunkStore.
+     *
+     * @param maxByteSize The maximum total byte size of the stored data.
+     * @return A new InMemoryChunkStore.
+     */
+    public static @NonNull InMemoryChunkStore ofMaxByteSize(long maxByteSize) {
+        return new InMemoryChunkStore(maxByteSize);
+    }
+
+    @Override
+    public @Nullable ByteBuffer get(@NonNull byte[] fingerprint) {
+        byte[] bytes = chunkBytes.getIfPresent(ByteBuffer.wrap(fingerprint));
+        return bytes == null ? null : ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void put(@NonNull byte[] fingerprint, @NonNull ByteBuffer bytes) {
+        chunkBytes.get(ByteBuffer.wrap(fingerprint.clone()), k -> {
+            byte[] copy = new byte[bytes.remaining()];
+            bytes.duplicate().get(copy);
+            return copy;
+        });
+    }
+
+    @Override
+    public boolean contains(@NonNull byte[] fingerprint) {
+        return chunkBytes.getIfPresent(ByteBuffer.wrap(fingerprint)) != null;
+    }
+}
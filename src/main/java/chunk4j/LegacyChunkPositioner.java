@@ -0,0 +1,169 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The LegacyChunkPositioner class derives the offset and blob byte size of chunks from producers predating them, which
+ * chopped each data blob into fixed-size chunks of the chopper's capacity and carried neither. The chunk capacity of a
+ * group is that of any of its chunks but the last, and the blob byte size follows from the capacity and the size of the
+ * last chunk. The chunks of a group are held back until both are known, and positioned as they arrive afterwards. A
+ * group is forgotten once all of its chunks are positioned, or when it expires. It is thread-safe.
+ */
+@ThreadSafe
+final class LegacyChunkPositioner {
+    private final Cache<UUID, LegacyGroup> groups;
+
+    /**
+     * Constructor for the LegacyChunkPositioner class.
+     *
+     * @param maxStitchTime The maximum duration to hold back the chunks of a group for.
+     * @param maxGroups The maximum number of groups to hold back chunks of.
+     */
+    LegacyChunkPositioner(Duration maxStitchTime, long maxGroups) {
+        this.groups = Caffeine.newBuilder()
+                .expireAfter(new SinceCreation<UUID, LegacyGroup>(maxStitchTime))
+                .maximumSize(maxGroups)
+                .build();
+    }
+
+    /**
+     * Positions a chunk from a legacy producer, along with the chunks of its group held back so far if the chunk makes
+     * the positions of the group known.
+     *
+     * @param chunk A chunk for which {@link Chunk#isLegacy()} holds.
+     * @return The positioned chunks, empty if the chunk is held back.
+     * @throws IllegalArgumentException if a chunk other than the last of its group differs in size from the others
+     */
+    List<Chunk> position(Chunk chunk) {
+        if (chunk.getIndex() < 0 || chunk.getIndex() >= chunk.getGroupSize()) {
+            return Collections.singletonList(chunk);
+        }
+        LegacyGroup group = groups.get(chunk.getGroupId(), k -> new LegacyGroup(chunk.getGroupSize()));
+        List<Chunk> positioned;
+        synchronized (group) {
+            positioned = group.position(chunk);
+        }
+        if (group.isAllPositioned()) {
+            groups.asMap().remove(chunk.getGroupId(), group);
+        }
+        return positioned;
+    }
+
+    /** The LegacyGroup class tracks the chunk capacity and blob byte size of a legacy group, as they become known. */
+    private static final class LegacyGroup {
+        private final int groupSize;
+        private final BitSet positionedChunkIndexes = new BitSet();
+        private final List<Chunk> heldChunks = new ArrayList<>();
+        private int chunkCapacity = -1;
+        private int lastChunkByteSize = -1;
+        private long blobByteSize = -1;
+        private volatile boolean allPositioned;
+
+        /**
+         * Constructor for the LegacyGroup class.
+         *
+         * @param groupSize The number of chunks in the group.
+         */
+        LegacyGroup(int groupSize) {
+            this.groupSize = groupSize;
+        }
+
+        /**
+         * Positions a chunk of the group, or holds it back until the positions of the group are known.
+         *
+         * @param chunk The chunk.
+         * @return The positioned chunks, empty if the chunk is held back.
+         */
+        List<Chunk> position(Chunk chunk) {
+            if (blobByteSize < 0) {
+                learnSize(chunk);
+                heldChunks.add(chunk);
+                if (lastChunkByteSize < 0 || (chunkCapacity < 0 && groupSize > 1)) {
+                    return Collections.emptyList();
+                }
+                blobByteSize = (long) Math.max(chunkCapacity, 0) * (groupSize - 1) + lastChunkByteSize;
+                List<Chunk> positioned =
+                        heldChunks.stream().map(this::positioned).collect(Collectors.toList());
+                heldChunks.clear();
+                return positioned;
+            }
+            learnSize(chunk);
+            return Collections.singletonList(positioned(chunk));
+        }
+
+        /**
+         * Checks whether all chunks of the group have been positioned.
+         *
+         * @return true if the group can be forgotten.
+         */
+        boolean isAllPositioned() {
+            return allPositioned;
+        }
+
+        /**
+         * Takes the chunk capacity, or the size of the last chunk, from a chunk.
+         *
+         * @param chunk The chunk.
+         */
+        private void learnSize(Chunk chunk) {
+            int chunkByteSize = chunk.getByteSize();
+            if (chunk.getIndex() == groupSize - 1) {
+                lastChunkByteSize = chunkByteSize;
+                return;
+            }
+            if (chunkCapacity >= 0 && chunkCapacity != chunkByteSize) {
+                throw new IllegalArgumentException("Chunk size not matching the chunk capacity [" + chunkCapacity
+                        + "] of its group from a producer predating offsets: " + chunk);
+            }
+            chunkCapacity = chunkByteSize;
+        }
+
+        /**
+         * Returns a chunk with its offset and blob byte size set, once both are known.
+         *
+         * @param chunk The chunk.
+         * @return The positioned chunk.
+         */
+        private Chunk positioned(Chunk chunk) {
+            positionedChunkIndexes.set(chunk.getIndex());
+            allPositioned = positionedChunkIndexes.cardinality() == groupSize;
+            return chunk.toBuilder()
+                    .offset((long) chunk.getIndex() * Math.max(chunkCapacity, 0))
+                    .blobByteSize(blobByteSize)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.security.MessageDigest;
+
+/**
+ * The MerkleTree class computes the root of a SHA-256 Merkle tree over the checksums of all chunks in a group, which a
+ * chopper carries with the group, and a stitcher recomputes upon completing the group to verify the whole data blob
+ * without another pass over its bytes. Leaves and inner nodes are hashed with distinct prefixes, and the last node of
+ * an odd level is promoted to the next level unchanged.
+ *
+ * @author Qingtian Wang
+ */
+final class MerkleTree {
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+
+    private MerkleTree() {}
+
+    /**
+     * Computes the Merkle root of chunk checksums.
+     *
+     * @param checksums The checksums of all chunks in a group, in index order.
+     * @return The Merkle root.
+     */
+    static byte[] rootOf(byte[][] checksums) {
+        MessageDigest digest = ChunkChopper.newFingerprintDigest();
+        if (checksums.length == 0) {
+            return digest.digest();
+        }
+        byte[][] level = new byte[checksums.length][];
+        for (int i = 0; i < checksums.length; i++) {
+            digest.update(LEAF_PREFIX);
+            digest.update(checksums[i]);
+            level[i] = digest.digest();
+        }
+        int levelSize = level.length;
+        while (levelSize > 1) {
+            int nextLevelSize = 0;
+            for (int i = 0; i < levelSize; i += 2) {
+                if (i + 1 == levelSize) {
+                    level[nextLevelSize++] = level[i];
+                } else {
+                    digest.update(NODE_PREFIX);
+                    digest.update(level[i]);
+                    digest.update(level[i + 1]);
+                    level[nextLevelSize++] = digest.digest();
+                }
+            }
+            levelSize = nextLevelSize;
+        }
+        return level[0];
+    }
+}
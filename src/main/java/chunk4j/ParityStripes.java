@@ -0,0 +1,156 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The ParityStripes class lays out the parity chunks of a group over stripes of consecutive data chunks, since a
+ * Reed-Solomon code over GF(2^8) covers at most 256 data and parity chunks. A group of {@code k} data chunks with
+ * {@code m} parity chunks per stripe is split into as few stripes as keep each within that bound, of near-equal numbers
+ * of data chunks, each followed by its own {@code m} parity chunks. The parity chunks are indexed after all data
+ * chunks, stripe by stripe. A stripe is restored from any of its data and parity chunks, as long as there are as many
+ * of them as there are data chunks in the stripe; a group of at most 256 data and parity chunks is a single stripe. The
+ * class is immutable and thread-safe.
+ */
+@ThreadSafe
+final class ParityStripes {
+    private final int dataChunkCount;
+    private final int parityChunkCount;
+    private final int stripeCount;
+    private final int stripeDataChunkCount;
+    private final ReedSolomon fullStripeCode;
+    private final ReedSolomon lastStripeCode;
+
+    /**
+     * Constructor for the ParityStripes class.
+     *
+     * @param dataChunkCount The number of data chunks of the group.
+     * @param parityChunkCount The number of parity chunks per stripe.
+     */
+    ParityStripes(int dataChunkCount, int parityChunkCount) {
+        if (dataChunkCount <= 0 || parityChunkCount <= 0 || parityChunkCount >= ReedSolomon.MAX_TOTAL_SHARDS) {
+            throw new IllegalArgumentException(
+                    "Data chunk count has to be positive, and parity chunk count positive and"
+                            + " less than " + ReedSolomon.MAX_TOTAL_SHARDS + ": " + dataChunkCount + " data, "
+                            + parityChunkCount + " parity");
+        }
+        int maxStripeDataChunkCount = ReedSolomon.MAX_TOTAL_SHARDS - parityChunkCount;
+        this.dataChunkCount = dataChunkCount;
+        this.parityChunkCount = parityChunkCount;
+        this.stripeCount = (dataChunkCount - 1) / maxStripeDataChunkCount + 1;
+        this.stripeDataChunkCount = (dataChunkCount - 1) / stripeCount + 1;
+        this.fullStripeCode = new ReedSolomon(stripeDataChunkCount, parityChunkCount);
+        int lastStripeDataChunkCount = dataChunkCount(stripeCount - 1);
+        this.lastStripeCode = lastStripeDataChunkCount == stripeDataChunkCount
+                ? fullStripeCode
+                : new ReedSolomon(lastStripeDataChunkCount, parityChunkCount);
+    }
+
+    /**
+     * Returns the number of stripes.
+     *
+     * @return The stripe count.
+     */
+    int stripeCount() {
+        return stripeCount;
+    }
+
+    /**
+     * Returns the total number of parity chunks of the group, over all stripes.
+     *
+     * @return The parity chunk total.
+     */
+    int parityChunkTotal() {
+        return stripeCount * parityChunkCount;
+    }
+
+    /**
+     * Returns the stripe of a data or parity chunk.
+     *
+     * @param chunkIndex The index of the chunk in the group.
+     * @return The stripe index.
+     */
+    int stripeOf(int chunkIndex) {
+        return chunkIndex < dataChunkCount
+                ? chunkIndex / stripeDataChunkCount
+                : (chunkIndex - dataChunkCount) / parityChunkCount;
+    }
+
+    /**
+     * Returns the index of the first data chunk of a stripe.
+     *
+     * @param stripe The stripe index.
+     * @return The index of the stripe's first data chunk in the group.
+     */
+    int firstDataChunkIndex(int stripe) {
+        return stripe * stripeDataChunkCount;
+    }
+
+    /**
+     * Returns the number of data chunks of a stripe.
+     *
+     * @param stripe The stripe index.
+     * @return The data chunk count of the stripe.
+     */
+    int dataChunkCount(int stripe) {
+        return Math.min(stripeDataChunkCount, dataChunkCount - firstDataChunkIndex(stripe));
+    }
+
+    /**
+     * Returns the index of a parity chunk in the group.
+     *
+     * @param stripe The stripe index.
+     * @param parityIndex The index of the parity chunk in its stripe.
+     * @return The index of the parity chunk in the group.
+     */
+    int parityChunkIndex(int stripe, int parityIndex) {
+        return dataChunkCount + stripe * parityChunkCount + parityIndex;
+    }
+
+    /**
+     * Returns the index of a data or parity chunk within its stripe, data chunks being indexed first, followed by
+     * parity chunks, as shards of the stripe's code.
+     *
+     * @param chunkIndex The index of the chunk in the group.
+     * @return The shard index of the chunk in its stripe.
+     */
+    int shardIndexOf(int chunkIndex) {
+        int stripe = stripeOf(chunkIndex);
+        return chunkIndex < dataChunkCount
+                ? chunkIndex - firstDataChunkIndex(stripe)
+                : dataChunkCount(stripe) + (chunkIndex - dataChunkCount) % parityChunkCount;
+    }
+
+    /**
+     * Returns the Reed-Solomon code of a stripe.
+     *
+     * @param stripe The stripe index.
+     * @return The code of the stripe's data and parity chunks.
+     */
+    ReedSolomon codeOf(int stripe) {
+        return stripe == stripeCount - 1 ? lastStripeCode : fullStripeCode;
+    }
+}
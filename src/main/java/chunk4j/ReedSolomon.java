@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.nio.ByteBuffer;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The ReedSolomon class implements a systematic Reed-Solomon erasure code over GF(2^8), for a group of data chunks to
+ * be restored from any of its data chunks and parity chunks, as long as there are as many of them as there are data
+ * chunks. Data and parity chunks are treated as equal-sized shards, the last data shard being zero-padded. The encoding
+ * matrix stacks the identity matrix over a Cauchy matrix, any square submatrix of which is invertible, so that any
+ * selection of shards can be decoded. The class is immutable and thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+final class ReedSolomon {
+    /** Maximum total number of data and parity shards, bounded by the number of distinct elements of the field. */
+    static final int MAX_TOTAL_SHARDS = 256;
+
+    private static final int FIELD_SIZE = 256;
+    /** The primitive polynomial x^8 + x^4 + x^3 + x^2 + 1 generating the field. */
+    private static final int GENERATOR_POLYNOMIAL = 0x11D;
+
+    private static final int[] LOG = new int[FIELD_SIZE];
+    private static final byte[] EXP = new byte[2 * FIELD_SIZE];
+    private static final byte[] MULTIPLICATION = new byte[FIELD_SIZE * FIELD_SIZE];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < FIELD_SIZE - 1; i++) {
+            EXP[i] = (byte) x;
+            EXP[i + FIELD_SIZE - 1] = (byte) x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= FIELD_SIZE) {
+                x ^= GENERATOR_POLYNOMIAL;
+            }
+        }
+        for (int a = 1; a < FIELD_SIZE; a++) {
+            for (int b = 1; b < FIELD_SIZE; b++) {
+                MULTIPLICATION[(a << 8) | b] = EXP[LOG[a] + LOG[b]];
+            }
+        }
+    }
+
+    private final int dataShards;
+    private final byte[][] parityMatrix;
+
+    /**
+     * Constructor for the ReedSolomon class.
+     *
+     * @param dataShards The number of data shards.
+     * @param parityShards The number of parity shards.
+     */
+    ReedSolomon(int dataShards, int parityShards) {
+        if (dataShards <= 0 || parityShards <= 0 || dataShards + parityShards > MAX_TOTAL_SHARDS) {
+            throw new IllegalArgumentException("Data and parity shard counts have to be positive and total at most "
+                    + MAX_TOTAL_SHARDS + ": " + dataShards + " data, " + parityShards + " parity");
+        }
+        this.dataShards = dataShards;
+        this.parityMatrix = new byte[parityShards][dataShards];
+        for (int p = 0; p < parityShards; p++) {
+            for (int d = 0; d < dataShards; d++) {
+                parityMatrix[p][d] = inverse((byte) ((dataShards + p) ^ d));
+            }
+        }
+    }
+
+    /**
+     * Adds the contribution of a data shard to all parity shards. The parity shards are complete once the contributions
+     * of all data shards are added, in any order.
+     *
+     * @param dataIndex The index of the data shard.
+     * @param data The data shard bytes, from position to limit, implicitly zero-padded to the parity shard size; not
+     *     modified.
+     * @param parity The parity shards to add to.
+     */
+    void addToParity(int dataIndex, ByteBuffer data, byte[][] parity) {
+        for (int p = 0; p < parity.length; p++) {
+            multiplyAdd(parityMatrix[p][dataIndex], data, parity[p]);
+        }
+    }
+
+    /**
+     * Computes the matrix decoding data shards from the given selection of shards. Row i of the returned matrix holds
+     * the coefficients by which to multiply the selected shards, in the given order, and sum up to get data shard i.
+     *
+     * @param shardIndexes The indexes of as many distinct shards as there are data shards; data shards are indexed
+     *     first, followed by parity shards.
+     * @return The decoding matrix.
+     */
+    byte[][] decodingMatrix(int[] shardIndexes) {
+        int n = dataShards;
+        if (shardIndexes.length != n) {
+            throw new IllegalArgumentException("Decoding requires exactly " + n + " shards: " + shardIndexes.length);
+        }
+        byte[][] matrix = new byte[n][2 * n];
+        for (int r = 0; r < n; r++) {
+            int shardIndex = shardIndexes[r];
+            if (shardIndex < n) {
+                matrix[r][shardIndex] = 1;
+            } else {
+                System.arraycopy(parityMatrix[shardIndex - n], 0, matrix[r], 0, n);
+            }
+            matrix[r][n + r] = 1;
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            while (matrix[pivot][col] == 0) {
+                pivot++;
+            }
+            byte[] pivotRow = matrix[pivot];
+            matrix[pivot] = matrix[col];
+            matrix[col] = pivotRow;
+            byte scale = inverse(pivotRow[col]);
+            for (int c = 0; c < 2 * n; c++) {
+                pivotRow[c] = multiply(pivotRow[c], scale);
+            }
+            for (int r = 0; r < n; r++) {
+                byte factor = matrix[r][col];
+                if (r != col && factor != 0) {
+                    for (int c = 0; c < 2 * n; c++) {
+                        matrix[r][c] ^= multiply(factor, pivotRow[c]);
+                    }
+                }
+            }
+        }
+        byte[][] decoding = new byte[n][n];
+        for (int r = 0; r < n; r++) {
+            System.arraycopy(matrix[r], n, decoding[r], 0, n);
+        }
+        return decoding;
+    }
+
+    /**
+     * Multiplies source bytes by a coefficient, and adds the products to the target bytes. Target bytes beyond the
+     * source bytes are left unchanged, as if the source were zero-padded.
+     *
+     * @param coefficient The coefficient.
+     * @param source The source bytes, from position to limit; not modified.
+     * @param target The target bytes, at least as many as the source bytes.
+     */
+    static void multiplyAdd(byte coefficient, ByteBuffer source, byte[] target) {
+        if (coefficient == 0) {
+            return;
+        }
+        int row = (coefficient & 0xFF) << 8;
+        int start = source.position();
+        int length = source.remaining();
+        if (source.hasArray()) {
+            byte[] array = source.array();
+            int arrayStart = source.arrayOffset() + start;
+            for (int i = 0; i < length; i++) {
+                target[i] ^= MULTIPLICATION[row | (array[arrayStart + i] & 0xFF)];
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                target[i] ^= MULTIPLICATION[row | (source.get(start + i) & 0xFF)];
+            }
+        }
+    }
+
+    /**
+     * Multiplies two field elements.
+     *
+     * @param a The first element.
+     * @param b The second element.
+     * @return The product.
+     */
+    private static byte multiply(byte a, byte b) {
+        return MULTIPLICATION[((a & 0xFF) << 8) | (b & 0xFF)];
+    }
+
+    /**
+     * Returns the multiplicative inverse of a non-zero field element.
+     *
+     * @param a The element.
+     * @return The inverse.
+     */
+    private static byte inverse(byte a) {
+        return EXP[FIELD_SIZE - 1 - LOG[a & 0xFF]];
+    }
+}
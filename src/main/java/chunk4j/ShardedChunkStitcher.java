@@ -0,0 +1,655 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import elf4j.Logger;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * The ShardedChunkStitcher class stitches chunks on a fixed number of shards, each owning the groups whose IDs hash to
+ * it, so that chunk intake scales with cores rather than contending on one shared cache. Each shard is a dedicated
+ * thread, the single writer of its own group table and expiry, fed through a multi-producer single-consumer inbox; no
+ * locks are taken on the shard's side. Restored data blobs are delivered to a {@link StitchListener} on the shard
+ * threads.
+ *
+ * <p>The calling thread verifies a chunk's checksum, and decompresses it, before handing it to its shard. Chunks
+ * resolved from a chunk store, parity chunks, Merkle roots, and chunks from producers predating offsets, which carry no
+ * blob byte size, are not supported by this stitcher; use a {@link ChunkStitcher} for those. Groups expire by the max
+ * stitch time since their first chunk, and each shard holds at most its share of the max number of pending groups,
+ * evicting its oldest group when exceeded. Each shard can remember its share of recently completed group IDs, to drop
+ * late duplicate chunks of those groups. The stitcher should be closed to stop its shard threads. It is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class ShardedChunkStitcher implements AutoCloseable {
+    private static final long DEFAULT_MAX_STITCH_TIME_NANOS = Long.MAX_VALUE;
+    private static final long DEFAULT_MAX_STITCHING_GROUPS = Long.MAX_VALUE;
+    private static final int DEFAULT_MAX_STITCHED_BYTE_SIZE = Integer.MAX_VALUE - 8;
+    private static final int EXPIRY_CHECK_INTERVAL_CHUNKS = 64;
+    private static final long CLOSE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final String SHARD_THREAD_NAME_PREFIX = "chunk4j-stitcher-shard-";
+    private static final Logger logger = Logger.instance();
+    private final Shard[] shards;
+    private final StitchListener listener;
+
+    @Nullable private final EvictionListener evictionListener;
+
+    private final CompressionCodecs compressionCodecs;
+    private final long maxStitchTimeNanos;
+    private final int maxShardGroups;
+    private final int inboxCapacity;
+    private final int maxStitchedByteSize;
+    private final int shardTombstoneCapacity;
+    private volatile boolean closed;
+
+    /**
+     * Private constructor for the ShardedChunkStitcher class. It is used by the Builder class to create a new instance
+     * of ShardedChunkStitcher, and starts the shard threads.
+     *
+     * @param builder The builder used to configure the ShardedChunkStitcher.
+     */
+    private ShardedChunkStitcher(@NonNull Builder builder) {
+        if (builder.listener == null) {
+            throw new IllegalArgumentException("Stitch listener has to be configured");
+        }
+        if (builder.shards <= 0 || builder.inboxCapacity <= 0 || builder.maxStitchingGroups <= 0) {
+            throw new IllegalArgumentException("Shard count [" + builder.shards + "], inbox capacity ["
+                    + builder.inboxCapacity + "], and max stitching groups [" + builder.maxStitchingGroups
+                    + "] have to be positive");
+        }
+        if (builder.tombstoneCapacity < 0) {
+            throw new IllegalArgumentException("Tombstone capacity cannot be negative: " + builder.tombstoneCapacity);
+        }
+        this.listener = builder.listener;
+        this.evictionListener = builder.evictionListener;
+        this.compressionCodecs = new CompressionCodecs(builder.compressionCodecs);
+        this.maxStitchTimeNanos = builder.maxStitchTime.toNanos();
+        this.maxShardGroups = (int) Math.min(Integer.MAX_VALUE, (builder.maxStitchingGroups - 1) / builder.shards + 1);
+        this.inboxCapacity = builder.inboxCapacity;
+        this.maxStitchedByteSize = builder.maxStitchedByteSize;
+        this.shardTombstoneCapacity =
+                builder.tombstoneCapacity == 0 ? 0 : (builder.tombstoneCapacity - 1) / builder.shards + 1;
+        this.shards = new Shard[builder.shards];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard();
+            Thread thread = new Thread(shards[i], SHARD_THREAD_NAME_PREFIX + i);
+            thread.setDaemon(true);
+            shards[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Verifies and decompresses a chunk on the calling thread, and hands it to the shard owning its group. If the chunk
+     * is the last one expected by its group, the restored data is delivered to the listener on the shard thread.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @return true if the chunk is accepted by its shard, false if the shard's inbox is full, in which case the chunk
+     *     should be retried later.
+     * @throws CorruptChunkException if the chunk's data does not match its checksum
+     * @throws IllegalArgumentException if the chunk cannot be decompressed, or is not supported by this stitcher
+     * @throws IllegalStateException if the stitcher is closed, or closing
+     */
+    public boolean stitch(@NonNull Chunk chunk) {
+        checkOpen();
+        Chunk resolved = resolve(chunk);
+        UUID groupId = resolved.getGroupId();
+        return shardOf(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits())
+                .offer(resolved);
+    }
+
+    /**
+     * Hands an encoded chunk to the shard owning its group, routing on the group ID read in place with
+     * {@link ChunkCodec#peekGroupIdMostSignificantBits(ByteBuffer)} and
+     * {@link ChunkCodec#peekGroupIdLeastSignificantBits(ByteBuffer)}. If the shard's inbox is full, the chunk is
+     * neither decoded nor consumed from the buffer, so that it can be retried as is. Otherwise, the chunk is decoded,
+     * verified, and decompressed on the calling thread as by {@link #stitch(Chunk)}, and the buffer's position is
+     * advanced past it. The data bytes of the chunk are copied out of the buffer, which can be reused once this method
+     * returns.
+     *
+     * @param encodedChunk The buffer holding a chunk encoded by {@link ChunkCodec}, at its current position.
+     * @return true if the chunk is accepted by its shard, false if the shard's inbox is full, in which case the chunk
+     *     should be retried later.
+     * @throws CorruptChunkException if the chunk's data does not match its checksum
+     * @throws IllegalArgumentException if the chunk is malformed, cannot be decompressed, or is not supported by this
+     *     stitcher
+     * @throws IllegalStateException if the stitcher is closed, or closing
+     */
+    public boolean stitch(@NonNull ByteBuffer encodedChunk) {
+        checkOpen();
+        Shard shard = shardOf(
+                ChunkCodec.peekGroupIdMostSignificantBits(encodedChunk),
+                ChunkCodec.peekGroupIdLeastSignificantBits(encodedChunk));
+        if (!shard.reserve()) {
+            return false;
+        }
+        Chunk resolved;
+        try {
+            Chunk decoded = ChunkCodec.decode(encodedChunk);
+            resolved = resolve(decoded);
+            if (resolved == decoded) {
+                resolved = decoded.toBuilder()
+                        .byteBuffer(null)
+                        .bytes(decoded.getBytes())
+                        .build();
+            }
+        } catch (RuntimeException e) {
+            shard.cancel();
+            throw e;
+        }
+        shard.enqueue(resolved);
+        return true;
+    }
+
+    /**
+     * Stops the shard threads, and waits a bounded time for them to finish the chunk at hand, e.g. a delivery to the
+     * listener. Chunks offered once closing has started are rejected; chunks still in the inboxes, and pending groups,
+     * are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        long deadline = System.nanoTime() + CLOSE_TIMEOUT_NANOS;
+        for (Shard shard : shards) {
+            try {
+                TimeUnit.NANOSECONDS.timedJoin(shard.thread, Math.max(1, deadline - System.nanoTime()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (shard.thread.isAlive()) {
+                logger.atWarn().log("Shard thread [{}] still running after close", shard.thread.getName());
+            }
+        }
+    }
+
+    /** Checks that the stitcher is not closed. */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Stitcher is closed");
+        }
+    }
+
+    /**
+     * Verifies a chunk's checksum, and decompresses it, checking that it can be stitched by this stitcher.
+     *
+     * @param chunk The received chunk.
+     * @return The resolved chunk, the same instance if not compressed.
+     */
+    private Chunk resolve(Chunk chunk) {
+        if (!ChecksumAlgorithm.matches(chunk)) {
+            logger.atWarn().log("Dropped chunk not matching its checksum: {}", chunk);
+            throw new CorruptChunkException(
+                    chunk.getGroupId(), new int[] {chunk.getIndex()}, "Chunk data does not match its checksum");
+        }
+        Chunk resolved = compressionCodecs.decompress(chunk);
+        checkSupported(resolved);
+        return resolved;
+    }
+
+    /**
+     * Checks that a resolved chunk can be stitched by this stitcher, and lies within its data blob.
+     *
+     * @param chunk The resolved chunk.
+     */
+    private void checkSupported(Chunk chunk) {
+        if (chunk.isReference() || chunk.getMerkleRoot() != null) {
+            throw new IllegalArgumentException("Reference chunks and Merkle roots are not supported: " + chunk);
+        }
+        chunk.checkPositioned();
+        if (chunk.getBlobByteSize() > maxStitchedByteSize) {
+            throw new IllegalArgumentException("Stitched bytes in group exceeding configured max size: " + chunk);
+        }
+        if (chunk.getIndex() < 0
+                || chunk.getIndex() >= chunk.getGroupSize()
+                || chunk.getOffset() < 0
+                || chunk.getOffset() + chunk.getByteSize() > chunk.getBlobByteSize()) {
+            throw new IllegalArgumentException("Chunk out of bounds of its stitching group: " + chunk);
+        }
+    }
+
+    /**
+     * Returns the shard owning a group.
+     *
+     * @param msb The most significant bits of the group ID.
+     * @param lsb The least significant bits of the group ID.
+     * @return The owner shard.
+     */
+    private Shard shardOf(long msb, long lsb) {
+        long hash = msb ^ lsb;
+        hash ^= hash >>> 32;
+        hash *= 0x9E3779B97F4A7C15L;
+        return shards[(int) ((hash >>> 32) * shards.length >>> 32)];
+    }
+
+    /**
+     * The Shard class is a single-writer partition of the stitcher. Producer threads offer chunks to its inbox, and its
+     * thread drains the inbox into its own table of pending groups, parking while the inbox is empty.
+     */
+    private final class Shard implements Runnable {
+        private final Queue<Chunk> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inboxSize = new AtomicInteger();
+
+        /** Pending groups, expiring in order of creation. Only accessed by the shard thread. */
+        private final GroupTable<ShardGroup> groups = new GroupTable<>();
+
+        /** Recently completed groups of the shard, or null if not remembered. Only written by the shard thread. */
+        @Nullable private final TombstoneSet tombstones =
+                shardTombstoneCapacity == 0 ? null : new TombstoneSet(shardTombstoneCapacity);
+
+        private volatile boolean parked;
+        private Thread thread;
+
+        /**
+         * Offers a chunk to the shard's inbox, waking up the shard thread if it is parked.
+         *
+         * @param chunk The chunk.
+         * @return true if accepted, false if the inbox is full.
+         * @throws IllegalStateException if the stitcher is closing
+         */
+        boolean offer(Chunk chunk) {
+            if (!reserve()) {
+                return false;
+            }
+            enqueue(chunk);
+            return true;
+        }
+
+        /**
+         * Reserves room for a chunk in the shard's inbox, to be filled by {@link #enqueue(Chunk)} or given back by
+         * {@link #cancel()}. The closed flag is checked again once the room is counted, so that no chunk is accepted
+         * after closing has started.
+         *
+         * @return true if reserved, false if the inbox is full.
+         * @throws IllegalStateException if the stitcher is closing
+         */
+        boolean reserve() {
+            if (inboxSize.incrementAndGet() > inboxCapacity) {
+                inboxSize.decrementAndGet();
+                return false;
+            }
+            if (closed) {
+                inboxSize.decrementAndGet();
+                throw new IllegalStateException("Stitcher is closed");
+            }
+            return true;
+        }
+
+        /** Gives back room reserved in the shard's inbox. */
+        void cancel() {
+            inboxSize.decrementAndGet();
+        }
+
+        /**
+         * Adds a chunk to the shard's inbox, in room reserved for it, waking up the shard thread if it is parked.
+         *
+         * @param chunk The chunk.
+         */
+        void enqueue(Chunk chunk) {
+            inbox.offer(chunk);
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int sinceExpiryCheck = 0;
+            while (!closed) {
+                Chunk chunk = inbox.poll();
+                if (chunk == null) {
+                    expire(System.nanoTime());
+                    sinceExpiryCheck = 0;
+                    awaitChunks();
+                    continue;
+                }
+                inboxSize.decrementAndGet();
+                try {
+                    add(chunk);
+                } catch (RuntimeException e) {
+                    logger.atWarn().log(e, "Dropped chunk failing to stitch: {}", chunk);
+                }
+                if (++sinceExpiryCheck == EXPIRY_CHECK_INTERVAL_CHUNKS) {
+                    expire(System.nanoTime());
+                    sinceExpiryCheck = 0;
+                }
+            }
+            groups.clear();
+            inbox.clear();
+        }
+
+        /** Parks the shard thread until a chunk is offered, the eldest group expires, or the stitcher is closed. */
+        private void awaitChunks() {
+            parked = true;
+            try {
+                if (!inbox.isEmpty() || closed) {
+                    return;
+                }
+                if (groups.size() > 0) {
+                    LockSupport.parkNanos(this, Math.max(1, groups.eldestDeadlineNanos() - System.nanoTime()));
+                } else {
+                    LockSupport.park(this);
+                }
+            } finally {
+                parked = false;
+            }
+        }
+
+        /**
+         * Adds a chunk to its group, creating the group on its first chunk, and delivers the restored data if the chunk
+         * completes the group.
+         *
+         * @param chunk The resolved chunk.
+         */
+        private void add(Chunk chunk) {
+            long msb = chunk.getGroupId().getMostSignificantBits();
+            long lsb = chunk.getGroupId().getLeastSignificantBits();
+            ShardGroup group = groups.get(msb, lsb);
+            if (group == null) {
+                if (tombstones != null && tombstones.contains(chunk.getGroupId())) {
+                    if (logger.atDebug().isEnabled()) {
+                        logger.atDebug().log("Dropped late duplicate chunk of completed group: {}", chunk);
+                    }
+                    return;
+                }
+                if (groups.size() == maxShardGroups) {
+                    evictEldest();
+                }
+                group = new ShardGroup(chunk);
+                groups.put(msb, lsb, group, System.nanoTime() + maxStitchTimeNanos);
+            }
+            if (group.add(chunk)) {
+                groups.remove(msb, lsb);
+                if (tombstones != null) {
+                    tombstones.add(group.groupId);
+                }
+                deliver(group.groupId, group.bytes);
+            }
+        }
+
+        /**
+         * Removes the groups whose deadlines have passed, eldest first.
+         *
+         * @param nowNanos The current time.
+         */
+        private void expire(long nowNanos) {
+            ShardGroup expired;
+            while ((expired = groups.pollExpired(nowNanos)) != null) {
+                logger.atWarn()
+                        .log(
+                                "chunk group [{}] took too long to stitch and expired, expecting [{}] chunks but only received [{}] when expired",
+                                expired.groupId,
+                                expired.expectedChunkTotal,
+                                expired.currentChunkTotal);
+                notifyEvicted(expired.groupId, true);
+            }
+        }
+
+        /** Evicts the eldest pending group to make room for a new one. */
+        private void evictEldest() {
+            ShardGroup evicted = groups.pollEldest();
+            logger.atWarn()
+                    .log(
+                            "chunk group [{}] was removed due to exceeding max group count [{}] of its shard",
+                            evicted.groupId,
+                            maxShardGroups);
+            notifyEvicted(evicted.groupId, false);
+        }
+
+        /**
+         * Notifies the eviction listener, if any, of a group evicted before it completed.
+         *
+         * @param groupId The group ID.
+         * @param expired Whether the group expired, rather than being evicted to bound the pending groups.
+         */
+        private void notifyEvicted(UUID groupId, boolean expired) {
+            if (evictionListener == null) {
+                return;
+            }
+            try {
+                evictionListener.onEvicted(groupId, expired);
+            } catch (RuntimeException e) {
+                logger.atWarn().log(e, "Eviction listener failed on group [{}]", groupId);
+            }
+        }
+
+        /**
+         * Delivers the restored data of a completed group to the listener.
+         *
+         * @param groupId The group ID.
+         * @param originalBytes The restored original data bytes.
+         */
+        private void deliver(UUID groupId, byte[] originalBytes) {
+            try {
+                listener.onStitched(groupId, originalBytes);
+            } catch (RuntimeException e) {
+                logger.atWarn().log(e, "Stitch listener failed on group [{}]", groupId);
+            }
+        }
+    }
+
+    /**
+     * The ShardGroup class is a pending group of a shard, with plain fields as it is only accessed by the shard thread.
+     * Arrived chunks are tracked by a bitmap of chunk indexes.
+     */
+    @NotThreadSafe
+    @ToString
+    private static final class ShardGroup {
+        @ToString.Exclude
+        private final byte[] bytes;
+
+        @ToString.Exclude
+        private final long[] stitchedChunks;
+
+        private final UUID groupId;
+        private final int expectedChunkTotal;
+        private int currentChunkTotal;
+
+        /**
+         * Constructor for the ShardGroup class.
+         *
+         * @param firstChunk The first chunk received of the group.
+         */
+        ShardGroup(Chunk firstChunk) {
+            this.groupId = firstChunk.getGroupId();
+            this.bytes = new byte[(int) firstChunk.getBlobByteSize()];
+            this.expectedChunkTotal = firstChunk.getGroupSize();
+            this.stitchedChunks = new long[(expectedChunkTotal + Long.SIZE - 1) / Long.SIZE];
+        }
+
+        /**
+         * Adds a chunk to the group by copying its bytes to their position in the original data blob.
+         *
+         * @param chunk The chunk to be added.
+         * @return true if the chunk is the last one expected by the group, false otherwise.
+         */
+        boolean add(Chunk chunk) {
+            if (chunk.getGroupSize() != expectedChunkTotal || chunk.getBlobByteSize() != bytes.length) {
+                throw new IllegalArgumentException("Chunk inconsistent with its stitching group: " + chunk);
+            }
+            int word = chunk.getIndex() / Long.SIZE;
+            long bit = 1L << (chunk.getIndex() % Long.SIZE);
+            if ((stitchedChunks[word] & bit) != 0) {
+                logger.atWarn().log("Duplicate chunk {} received and ignored", chunk);
+                return false;
+            }
+            stitchedChunks[word] |= bit;
+            ByteBuffer source = chunk.getByteBuffer();
+            source.get(bytes, (int) chunk.getOffset(), source.remaining());
+            return ++currentChunkTotal == expectedChunkTotal;
+        }
+    }
+
+    /** The Builder class provides a fluent API for configuring and creating a new ShardedChunkStitcher. */
+    public static class Builder {
+        private int shards = Runtime.getRuntime().availableProcessors();
+        private int inboxCapacity = Integer.MAX_VALUE;
+        private Duration maxStitchTime = Duration.ofNanos(DEFAULT_MAX_STITCH_TIME_NANOS);
+        private long maxStitchingGroups = DEFAULT_MAX_STITCHING_GROUPS;
+        private int maxStitchedByteSize = DEFAULT_MAX_STITCHED_BYTE_SIZE;
+        private int tombstoneCapacity;
+        private final CompressionCodecs compressionCodecs = new CompressionCodecs();
+
+        @Nullable private StitchListener listener;
+
+        @Nullable private EvictionListener evictionListener;
+
+        /**
+         * Builds a new ShardedChunkStitcher with the current configuration of the Builder, and starts its shards.
+         *
+         * @return A new ShardedChunkStitcher.
+         */
+        public ShardedChunkStitcher build() {
+            return new ShardedChunkStitcher(this);
+        }
+
+        /**
+         * Sets the listener that the restored data of each completed group is delivered to, on the shard threads. The
+         * listener should hand heavy processing off to other threads, so as not to hold up the shard. Required.
+         *
+         * @param listener The listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder listener(@NonNull StitchListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the listener to notify of each pending group evicted before it completes, on expiry or to bound the
+         * pending groups of its shard, on the shard thread.
+         *
+         * @param listener The eviction listener.
+         * @return The Builder, for method chaining.
+         */
+        public Builder evictionListener(@NonNull EvictionListener listener) {
+            this.evictionListener = listener;
+            return this;
+        }
+
+        /**
+         * Sets the number of recently completed group IDs to remember, divided evenly among the shards, so that late
+         * duplicate chunks of those groups, e.g. under at-least-once delivery, are dropped instead of starting zombie
+         * groups that linger until expiry. Between the given number and twice as many of the most recently completed
+         * groups are remembered, in fixed memory of 64 to 128 bytes per unit of capacity. Defaults to 0, remembering
+         * none. Tombstones must not be combined with {@link GroupIdGenerator#contentDerived() content-derived} group
+         * IDs: the chunks of an identical data blob sent again while its group is remembered are dropped as late
+         * duplicates, and the blob is never stitched.
+         *
+         * @param v The number of completed group IDs to remember.
+         * @return The Builder, for method chaining.
+         */
+        public Builder tombstoneCapacity(int v) {
+            this.tombstoneCapacity = v;
+            return this;
+        }
+
+        /**
+         * Sets the number of shards, each running on a thread of its own. Defaults to the number of available
+         * processors.
+         *
+         * @param shards The number of shards.
+         * @return The Builder, for method chaining.
+         */
+        public Builder shards(int shards) {
+            this.shards = shards;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of chunks waiting in the inbox of each shard, beyond which chunks are rejected.
+         * Defaults to no limit.
+         *
+         * @param inboxCapacity The capacity of a shard's inbox.
+         * @return The Builder, for method chaining.
+         */
+        public Builder inboxCapacity(int inboxCapacity) {
+            this.inboxCapacity = inboxCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the maximum duration from the first chunk of a group handled by its shard to the complete restoration of
+         * the original data.
+         *
+         * @param maxStitchTime The maximum duration.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxStitchTime(@NonNull Duration maxStitchTime) {
+            this.maxStitchTime = maxStitchTime;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pending groups, divided evenly among the shards.
+         *
+         * @param maxGroups The maximum number of groups.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxStitchingGroups(long maxGroups) {
+            this.maxStitchingGroups = maxGroups;
+            return this;
+        }
+
+        /**
+         * Sets the maximum byte size of the restored data.
+         *
+         * @param v The maximum byte size.
+         * @return The Builder, for method chaining.
+         */
+        public Builder maxStitchedByteSize(int v) {
+            this.maxStitchedByteSize = v;
+            return this;
+        }
+
+        /**
+         * Registers a compression codec, in addition to the built-in {@link DeflateCodec}, to decompress chunks
+         * compressed by a chopper configured with the same codec.
+         *
+         * @param codec The codec to register under its ID.
+         * @return The Builder, for method chaining.
+         */
+        public Builder compressionCodec(@NonNull CompressionCodec codec) {
+            compressionCodecs.register(codec);
+            return this;
+        }
+    }
+}
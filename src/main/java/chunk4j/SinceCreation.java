@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.time.Duration;
+import lombok.NonNull;
+
+/**
+ * The SinceCreation class is used to determine the expiry time of a chunk group in a cache: a fixed duration after the
+ * group is created, regardless of later updates or reads.
+ *
+ * @param <K> type of the group key
+ * @param <V> type of the group
+ */
+final class SinceCreation<K, V> implements Expiry<K, V> {
+
+    private final Duration duration;
+
+    /**
+     * Constructor for the SinceCreation class.
+     *
+     * @param duration The duration after which a chunk group should expire.
+     */
+    SinceCreation(Duration duration) {
+        this.duration = duration;
+    }
+
+    @Override
+    public long expireAfterCreate(@NonNull K key, @NonNull V group, long currentTime) {
+        return duration.toNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(@NonNull K key, @NonNull V group, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+
+    @Override
+    public long expireAfterRead(@NonNull K key, @NonNull V group, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
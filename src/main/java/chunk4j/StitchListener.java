@@ -0,0 +1,47 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.UUID;
+
+/**
+ * The StitchListener interface is notified of each original data blob restored by an {@link AsyncChunkStitcher}, on the
+ * executor of the stitcher, or by a {@link ShardedChunkStitcher}, on the thread of the shard owning the group; either
+ * way, off the threads delivering chunks. A {@link ChunkStitcher} notifies it from
+ * {@link ChunkStitcher#stitchToListener(Chunk)}, on the thread delivering the group's last chunk.
+ *
+ * @author Qingtian Wang
+ */
+@FunctionalInterface
+public interface StitchListener {
+
+    /**
+     * Called with the original data bytes of a completed group.
+     *
+     * @param groupId The group ID.
+     * @param originalBytes The restored original data bytes.
+     */
+    void onStitched(UUID groupId, byte[] originalBytes);
+}
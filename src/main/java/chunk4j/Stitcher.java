@@ -24,6 +24,7 @@
 
 package chunk4j;
 
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 /**
@@ -46,4 +47,17 @@ public interface Stitcher {
      *     empty Optional otherwise.
      */
     Optional<byte[]> stitch(Chunk chunk);
+
+    /**
+     * Adds a chunk to its corresponding chunk group. If the chunk is the last one expected by the group, the original
+     * data bytes are restored and returned as a byte buffer, which implementations may back by storage other than a
+     * byte array on heap. The default implementation wraps the byte array returned by {@link #stitch(Chunk)}.
+     *
+     * @param chunk The chunk to be added to its corresponding chunk group.
+     * @return An Optional containing the buffer of the original data bytes if the chunk is the last one expected by the
+     *     group, or an empty Optional otherwise.
+     */
+    default Optional<ByteBuffer> stitchToBuffer(Chunk chunk) {
+        return stitch(chunk).map(ByteBuffer::wrap);
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import elf4j.Logger;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import lombok.NonNull;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * The StitchingProcessor class is a Reactive Streams {@link Processor} turning a stream of chunks into a stream of the
+ * original data blobs restored from them. Chunks are only requested from upstream while the downstream subscriber has
+ * outstanding demand for blobs, a prefetch batch at a time, so that a slow subscriber throttles the intake of chunks
+ * rather than letting pending groups pile up in the stitcher. At most one prefetch batch worth of restored blobs is
+ * buffered while waiting for demand. The processor accepts a single downstream subscriber. A chunk failing to stitch
+ * cancels the upstream and fails the downstream. It requires the optional {@code org.reactivestreams:reactive-streams}
+ * dependency. It is thread-safe.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+public final class StitchingProcessor implements Processor<Chunk, byte[]> {
+    private static final int DEFAULT_PREFETCH = 16;
+    private static final Logger logger = Logger.instance();
+    private final Stitcher stitcher;
+    private final int prefetch;
+    private final AtomicReference<Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Subscriber<? super byte[]>> downstream = new AtomicReference<>();
+    private final Queue<byte[]> stitched = new ConcurrentLinkedQueue<>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger inFlightChunks = new AtomicInteger();
+    private final AtomicInteger drainers = new AtomicInteger();
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+
+    @Nullable private volatile Throwable error;
+
+    /** Whether the downstream has been terminated; only accessed by the draining thread. */
+    private boolean terminated;
+
+    /**
+     * Private constructor for the StitchingProcessor class. It is used by the Builder class to create a new instance of
+     * StitchingProcessor.
+     *
+     * @param builder The builder used to configure the StitchingProcessor.
+     */
+    private StitchingProcessor(@NonNull Builder builder) {
+        if (builder.prefetch <= 0) {
+            throw new IllegalArgumentException("Prefetch chunk count has to be positive: " + builder.prefetch);
+        }
+        this.stitcher = builder.stitcher;
+        this.prefetch = builder.prefetch;
+    }
+
+    @Override
+    public void subscribe(@NonNull Subscriber<? super byte[]> subscriber) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(CancelledSubscription.INSTANCE);
+            subscriber.onError(new IllegalStateException("Stitching processor allows only one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("Requested blob count has to be positive"));
+                    return;
+                }
+                Demand.add(requested, n);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Subscription subscription = upstream.get();
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(@NonNull Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(@NonNull Chunk chunk) {
+        try {
+            stitcher.stitch(chunk).ifPresent(stitched::offer);
+        } catch (RuntimeException e) {
+            logger.atWarn().log(e, "Failed to stitch chunk {}", chunk);
+            fail(e);
+        } finally {
+            inFlightChunks.decrementAndGet();
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(@NonNull Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Fails the stream, cancelling the upstream and signaling the error downstream.
+     *
+     * @param throwable The error.
+     */
+    private void fail(Throwable throwable) {
+        error = throwable;
+        upstreamDone = true;
+        Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        drain();
+    }
+
+    /**
+     * Emits restored blobs downstream as demanded, signals termination, and requests the next prefetch batch of chunks
+     * from upstream when all blobs are emitted and demand remains. Only one thread drains at a time; a thread finding
+     * another one draining leaves it to drain again on its behalf, so that signals downstream are serialized.
+     */
+    private void drain() {
+        if (drainers.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Subscriber<? super byte[]> subscriber = downstream.get();
+            if (subscriber != null && !terminated) {
+                if (cancelled) {
+                    terminated = true;
+                    stitched.clear();
+                } else {
+                    drainTo(subscriber);
+                }
+            }
+            missed = drainers.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Makes one pass of draining to the downstream subscriber.
+     *
+     * @param subscriber The downstream subscriber.
+     */
+    private void drainTo(Subscriber<? super byte[]> subscriber) {
+        Throwable failure = error;
+        if (failure != null) {
+            terminated = true;
+            stitched.clear();
+            subscriber.onError(failure);
+            return;
+        }
+        long emitted = 0;
+        long demand = requested.get();
+        while (emitted != demand) {
+            byte[] blob = stitched.poll();
+            if (blob == null) {
+                break;
+            }
+            subscriber.onNext(blob);
+            emitted++;
+        }
+        if (emitted != 0) {
+            demand = Demand.consume(requested, emitted);
+        }
+        if (upstreamDone && stitched.isEmpty()) {
+            terminated = true;
+            subscriber.onComplete();
+            return;
+        }
+        Subscription subscription = upstream.get();
+        if (subscription != null && !upstreamDone && demand > 0 && stitched.isEmpty() && inFlightChunks.get() == 0) {
+            inFlightChunks.set(prefetch);
+            subscription.request(prefetch);
+        }
+    }
+
+    /** The Builder class provides a fluent API for configuring and creating a new StitchingProcessor. */
+    public static class Builder {
+        private Stitcher stitcher = new ChunkStitcher.Builder().build();
+        private int prefetch = DEFAULT_PREFETCH;
+
+        /**
+         * Builds a new StitchingProcessor with the current configuration of the Builder.
+         *
+         * @return A new StitchingProcessor.
+         */
+        public StitchingProcessor build() {
+            return new StitchingProcessor(this);
+        }
+
+        /**
+         * Sets the stitcher that the chunks are stitched by. Defaults to a ChunkStitcher of default configuration.
+         *
+         * @param stitcher The stitcher.
+         * @return The Builder, for method chaining.
+         */
+        public Builder stitcher(@NonNull Stitcher stitcher) {
+            this.stitcher = stitcher;
+            return this;
+        }
+
+        /**
+         * Sets the number of chunks requested from upstream at a time, while the downstream has outstanding demand.
+         * Defaults to 16.
+         *
+         * @param prefetch The number of chunks per request.
+         * @return The Builder, for method chaining.
+         */
+        public Builder prefetch(int prefetch) {
+            this.prefetch = prefetch;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * The TombstoneSet class is a bounded record of the IDs of recently completed groups, so that late duplicate chunks of
+ * those groups can be dropped instead of starting new groups. IDs are kept as pairs of longs in two generations of
+ * open-addressing tables, each holding up to the configured capacity; when the current generation is full, the previous
+ * one is cleared and reused as the current, forgetting the oldest IDs. Hence, between capacity and twice the capacity
+ * of the most recently added IDs are remembered, in fixed memory.
+ *
+ * <p>It is thread-safe. Lookups are lock-free and allocation-free, and may miss an ID whose generation is being cleared
+ * concurrently; additions, once per completed group, are serialized. The nil UUID is never recorded.
+ *
+ * @author Qingtian Wang
+ */
+@ThreadSafe
+final class TombstoneSet {
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int capacity;
+    private final int slotMask;
+
+    private volatile AtomicLongArray current;
+    private volatile AtomicLongArray previous;
+
+    /** Number of IDs in the current generation, guarded by this. */
+    private int currentSize;
+
+    /**
+     * Constructor for the TombstoneSet class.
+     *
+     * @param capacity The number of IDs each generation holds.
+     */
+    TombstoneSet(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Tombstone capacity has to be positive and at most 2^24: " + capacity);
+        }
+        this.capacity = capacity;
+        int slots = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.slotMask = slots - 1;
+        this.current = new AtomicLongArray(2 * slots);
+        this.previous = new AtomicLongArray(2 * slots);
+    }
+
+    /**
+     * Checks if a group ID is recorded.
+     *
+     * @param groupId The group ID.
+     * @return true if the group ID is recorded.
+     */
+    boolean contains(UUID groupId) {
+        long msb = groupId.getMostSignificantBits();
+        long lsb = groupId.getLeastSignificantBits();
+        if (msb == 0 && lsb == 0) {
+            return false;
+        }
+        return contains(current, msb, lsb) || contains(previous, msb, lsb);
+    }
+
+    /**
+     * Records a group ID, forgetting the oldest generation of IDs if the current generation is full.
+     *
+     * @param groupId The group ID.
+     */
+    synchronized void add(UUID groupId) {
+        long msb = groupId.getMostSignificantBits();
+        long lsb = groupId.getLeastSignificantBits();
+        if ((msb == 0 && lsb == 0) || contains(current, msb, lsb)) {
+            return;
+        }
+        if (currentSize == capacity) {
+            AtomicLongArray recycled = previous;
+            for (int i = 0; i < recycled.length(); i++) {
+                recycled.set(i, 0);
+            }
+            previous = current;
+            current = recycled;
+            currentSize = 0;
+        }
+        AtomicLongArray table = current;
+        int slot = slotOf(msb, lsb);
+        while (table.get(2 * slot) != 0 || table.get(2 * slot + 1) != 0) {
+            slot = (slot + 1) & slotMask;
+        }
+        table.set(2 * slot + 1, lsb);
+        table.set(2 * slot, msb);
+        currentSize++;
+    }
+
+    /**
+     * Looks up an ID in a generation table by linear probing, up to the first empty slot.
+     *
+     * @param table The generation table.
+     * @param msb The most significant bits of the ID.
+     * @param lsb The least significant bits of the ID.
+     * @return true if the ID is in the table.
+     */
+    private boolean contains(AtomicLongArray table, long msb, long lsb) {
+        int slot = slotOf(msb, lsb);
+        for (int probes = 0; probes <= slotMask; probes++) {
+            long slotMsb = table.get(2 * slot);
+            long slotLsb = table.get(2 * slot + 1);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return true;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return false;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the home slot of an ID.
+     *
+     * @param msb The most significant bits of the ID.
+     * @param lsb The least significant bits of the ID.
+     * @return The slot index.
+     */
+    private int slotOf(long msb, long lsb) {
+        long hash = (msb ^ Long.rotateLeft(lsb, 32)) * HASH_MULTIPLIER;
+        return (int) (hash >>> 32) & slotMask;
+    }
+}
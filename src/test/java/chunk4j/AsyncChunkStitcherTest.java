@@ -0,0 +1,184 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncChunkStitcherTest {
+
+    static final byte[] BYTES = new byte[1000];
+    static final int CHUNK_BYTE_SIZE = 10;
+    static final String EXECUTOR_THREAD_NAME = "stitched-data-processor";
+
+    static {
+        for (int i = 0; i < BYTES.length; i++) {
+            BYTES[i] = (byte) i;
+        }
+    }
+
+    final ExecutorService executor =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, EXECUTOR_THREAD_NAME));
+
+    @AfterEach
+    void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void groupFutureCompletedOnExecutor() throws Exception {
+        CompletableFuture<String> listenerThreadName = new CompletableFuture<>();
+        AsyncChunkStitcher tot = new AsyncChunkStitcher.Builder()
+                .executor(executor)
+                .listener((groupId, originalBytes) ->
+                        listenerThreadName.complete(Thread.currentThread().getName()))
+                .build();
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        CompletableFuture<byte[]> completion = tot.completion(chunks.get(0).getGroupId());
+
+        long completed = chunks.stream().filter(tot::stitch).count();
+
+        assertEquals(1, completed);
+        assertArrayEquals(BYTES, completion.get(1, TimeUnit.SECONDS));
+        assertEquals(EXECUTOR_THREAD_NAME, listenerThreadName.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lateCompletionFailsRightAway() {
+        AsyncChunkStitcher tot =
+                new AsyncChunkStitcher.Builder().executor(executor).build();
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        chunks.forEach(tot::stitch);
+
+        CompletableFuture<byte[]> late = tot.completion(chunks.get(0).getGroupId());
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(0, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void futureTimesOutWhenGroupNotStitched() {
+        AsyncChunkStitcher tot = new AsyncChunkStitcher.Builder()
+                .executor(executor)
+                .maxWaitTime(Duration.ofMillis(100))
+                .build();
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        CompletableFuture<byte[]> completion = tot.completion(chunks.get(0).getGroupId());
+
+        chunks.subList(1, chunks.size()).forEach(tot::stitch);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> completion.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void futureFailsOnExecutorWhenGroupEvicted() throws Exception {
+        AsyncChunkStitcher tot = new AsyncChunkStitcher.Builder()
+                .executor(executor)
+                .stitcher(new ChunkStitcher.Builder().maxStitchingGroups(1))
+                .build();
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        List<Chunk> first = chopper.chop(BYTES);
+        List<Chunk> second = chopper.chop(BYTES);
+        CompletableFuture<String> failingThreadName = new CompletableFuture<>();
+        CompletableFuture<Object> eitherEvicted = CompletableFuture.anyOf(
+                tot.completion(first.get(0).getGroupId()),
+                tot.completion(second.get(0).getGroupId()));
+        eitherEvicted.whenComplete((originalBytes, e) ->
+                failingThreadName.complete(Thread.currentThread().getName()));
+
+        tot.stitch(first.get(0));
+        tot.stitch(second.get(0));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> eitherEvicted.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(EXECUTOR_THREAD_NAME, failingThreadName.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void futureFailsWhenGroupDiscardedAsCorrupt() {
+        AsyncChunkStitcher tot =
+                new AsyncChunkStitcher.Builder().executor(executor).build();
+        List<Chunk> chunks = new ArrayList<>(new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                .build()
+                .chop(BYTES));
+        Chunk chunk = chunks.get(5);
+        byte[] tamperedBytes = chunk.getBytes().clone();
+        tamperedBytes[0]++;
+        chunks.set(
+                5,
+                chunk.toBuilder()
+                        .bytes(tamperedBytes)
+                        .checksum(ChecksumAlgorithm.CRC32.checksum(ByteBuffer.wrap(tamperedBytes)))
+                        .build());
+        CompletableFuture<byte[]> completion = tot.completion(chunk.getGroupId());
+        chunks.subList(0, chunks.size() - 1).forEach(tot::stitch);
+
+        assertThrows(CorruptChunkException.class, () -> tot.stitch(chunks.get(chunks.size() - 1)));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> completion.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CorruptChunkException.class, e.getCause());
+    }
+
+    @Test
+    void stitchReturnsWithoutWaitingForListener() throws Exception {
+        CountDownLatch listenerReleased = new CountDownLatch(1);
+        CompletableFuture<UUID> stitchedGroupId = new CompletableFuture<>();
+        AsyncChunkStitcher tot = new AsyncChunkStitcher.Builder()
+                .executor(executor)
+                .listener((groupId, originalBytes) -> {
+                    try {
+                        listenerReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    stitchedGroupId.complete(groupId);
+                })
+                .build();
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+
+        chunks.forEach(tot::stitch);
+
+        assertFalse(stitchedGroupId.isDone());
+        listenerReleased.countDown();
+        assertEquals(chunks.get(0).getGroupId(), stitchedGroupId.get(1, TimeUnit.SECONDS));
+    }
+}
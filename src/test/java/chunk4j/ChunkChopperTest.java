@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class ChunkChopperTest {
+
+    static final byte[] BYTES = new byte[1000];
+    static final int CHUNK_BYTE_SIZE = 64;
+
+    static {
+        for (int i = 0; i < BYTES.length; i++) {
+            BYTES[i] = (byte) i;
+        }
+    }
+
+    @Nested
+    class chopByteBuffer {
+
+        @Test
+        void chunksAreReadOnlyViewsOverSource() {
+            ByteBuffer source = ByteBuffer.wrap(BYTES);
+
+            List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(source);
+
+            assertEquals(16, chunks.size());
+            assertEquals(0, source.position());
+            for (Chunk chunk : chunks) {
+                ByteBuffer view = chunk.getByteBuffer();
+                assertTrue(view.isReadOnly());
+                assertEquals(BYTES[chunk.getIndex() * CHUNK_BYTE_SIZE], view.get(0));
+            }
+            assertEquals(BYTES.length % CHUNK_BYTE_SIZE, chunks.get(15).getByteSize());
+        }
+
+        @Test
+        void stitchesBackToOriginal() {
+            ChunkStitcher stitcher = new ChunkStitcher.Builder().build();
+            Optional<byte[]> stitched = Optional.empty();
+
+            for (Chunk chunk : ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(ByteBuffer.wrap(BYTES))) {
+                stitched = stitcher.stitch(chunk);
+            }
+
+            assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void serializesAsByteArray() throws IOException, ClassNotFoundException {
+            Chunk chunk = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE)
+                    .chop(ByteBuffer.wrap(BYTES))
+                    .get(1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+                objectOut.writeObject(chunk);
+            }
+
+            Chunk deserialized;
+            try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                deserialized = (Chunk) objectIn.readObject();
+            }
+
+            assertEquals(chunk, deserialized);
+            assertArrayEquals(chunk.getBytes(), deserialized.getBytes());
+        }
+    }
+
+    @Nested
+    class chopStream {
+
+        @Test
+        void chunksAreReadLazily() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(BYTES);
+
+            Iterator<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(inputStream, BYTES.length);
+
+            assertEquals(BYTES.length, inputStream.available());
+            Chunk first = chunks.next();
+            assertEquals(16, first.getGroupSize());
+            assertEquals(BYTES.length - CHUNK_BYTE_SIZE, inputStream.available());
+        }
+
+        @Test
+        void stitchesBackToOriginal() {
+            ChunkStitcher stitcher = new ChunkStitcher.Builder().build();
+            Optional<byte[]> stitched = Optional.empty();
+
+            Iterator<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE)
+                    .chop(Channels.newChannel(new ByteArrayInputStream(BYTES)), BYTES.length);
+            while (chunks.hasNext()) {
+                stitched = stitcher.stitch(chunks.next());
+            }
+
+            assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void prematureEndOfStream() {
+            Iterator<Chunk> chunks =
+                    ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(new ByteArrayInputStream(BYTES), BYTES.length + 1L);
+
+            assertThrows(UncheckedIOException.class, () -> {
+                while (chunks.hasNext()) {
+                    chunks.next();
+                }
+            });
+        }
+    }
+
+    @Nested
+    class groupIdGenerator {
+        @Test
+        void sequentialIdsAreUniqueAndCarryNodeId() {
+            ChunkChopper chopper = new ChunkChopper.Builder()
+                    .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                    .groupIdGenerator(GroupIdGenerator.sequential(42))
+                    .build();
+
+            UUID first = chopper.chop(BYTES).get(0).getGroupId();
+            UUID second = chopper.chop(BYTES).get(0).getGroupId();
+
+            assertEquals(42, first.getMostSignificantBits());
+            assertEquals(42, second.getMostSignificantBits());
+            assertNotEquals(first, second);
+        }
+
+        @Test
+        void threadLocalRandomIdsAreVersion4() {
+            UUID groupId = new ChunkChopper.Builder()
+                    .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                    .groupIdGenerator(GroupIdGenerator.threadLocalRandom())
+                    .build()
+                    .chop(BYTES)
+                    .get(0)
+                    .getGroupId();
+
+            assertEquals(4, groupId.version());
+            assertEquals(2, groupId.variant());
+        }
+
+        @Test
+        void contentDerivedIdsAreDeterministic() {
+            ChunkChopper chopper = new ChunkChopper.Builder()
+                    .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                    .groupIdGenerator(GroupIdGenerator.contentDerived())
+                    .build();
+
+            UUID fromArray = chopper.chop(BYTES).get(0).getGroupId();
+            UUID fromBuffer = chopper.chop(ByteBuffer.wrap(BYTES)).get(0).getGroupId();
+
+            assertEquals(UUID.nameUUIDFromBytes(BYTES), fromArray);
+            assertEquals(fromArray, fromBuffer);
+            assertThrows(
+                    IllegalArgumentException.class, () -> chopper.chop(new ByteArrayInputStream(BYTES), BYTES.length));
+        }
+    }
+
+    @Nested
+    class contentDefined {
+        final byte[] blob = randomBytes(64 * 1024);
+        final ChunkChopper chopper =
+                new ChunkChopper.Builder().contentDefined(512, 2048, 8192).build();
+
+        @Test
+        void chunkSizesWithinBounds() {
+            List<Chunk> chunks = chopper.chop(blob);
+
+            long offset = 0;
+            for (Chunk chunk : chunks) {
+                assertEquals(offset, chunk.getOffset());
+                assertTrue(chunk.getByteSize() <= 8192);
+                assertTrue(chunk.getByteSize() >= 512 || chunk.getIndex() == chunks.size() - 1);
+                assertEquals(32, chunk.getFingerprint().length);
+                offset += chunk.getByteSize();
+            }
+            assertEquals(blob.length, offset);
+            List<Chunk> zeroCopyChunks = chopper.chop(ByteBuffer.wrap(blob));
+            assertEquals(chunks.size(), zeroCopyChunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                assertEquals(chunks.get(i).getOffset(), zeroCopyChunks.get(i).getOffset());
+                assertArrayEquals(
+                        chunks.get(i).getFingerprint(), zeroCopyChunks.get(i).getFingerprint());
+            }
+        }
+
+        @Test
+        void insertionOnlyChangesNearbyChunks() {
+            byte[] edited = new byte[blob.length + 1];
+            System.arraycopy(blob, 0, edited, 0, 100);
+            System.arraycopy(blob, 100, edited, 101, blob.length - 100);
+            Set<ByteBuffer> originalFingerprints = new HashSet<>();
+            chopper.chop(blob).forEach(chunk -> originalFingerprints.add(ByteBuffer.wrap(chunk.getFingerprint())));
+
+            List<Chunk> editedChunks = chopper.chop(edited);
+            long unchanged = editedChunks.stream()
+                    .filter(chunk -> originalFingerprints.contains(ByteBuffer.wrap(chunk.getFingerprint())))
+                    .count();
+
+            assertTrue(unchanged >= editedChunks.size() - 2);
+        }
+
+        @Test
+        void streamChoppingNotSupported() {
+            assertThrows(IllegalStateException.class, () -> chopper.chop(new ByteArrayInputStream(blob), blob.length));
+        }
+
+        byte[] randomBytes(int byteSize) {
+            byte[] bytes = new byte[byteSize];
+            new Random(42).nextBytes(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ChunkCodecTest {
+
+    static final byte[] BYTES = new byte[1000];
+    static final int CHUNK_BYTE_SIZE = 300;
+
+    static {
+        for (int i = 0; i < BYTES.length; i++) {
+            BYTES[i] = (byte) i;
+        }
+    }
+
+    @Test
+    void decodedChunksReferenceReceiveBuffer() {
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        ByteBuffer receiveBuffer = ByteBuffer.allocate(
+                chunks.stream().mapToInt(ChunkCodec::encodedByteSize).sum());
+        chunks.forEach(chunk -> ChunkCodec.encode(chunk, receiveBuffer));
+        receiveBuffer.flip();
+        ChunkStitcher stitcher = new ChunkStitcher.Builder().build();
+
+        Optional<byte[]> stitched = Optional.empty();
+        for (Chunk chunk : chunks) {
+            Chunk decoded = ChunkCodec.decode(receiveBuffer);
+            assertEquals(chunk, decoded);
+            assertEquals(chunk.getGroupSize(), decoded.getGroupSize());
+            assertEquals(chunk.getOffset(), decoded.getOffset());
+            assertEquals(chunk.getBlobByteSize(), decoded.getBlobByteSize());
+            assertTrue(decoded.getByteBuffer().isReadOnly());
+            assertEquals(chunk.getByteBuffer(), decoded.getByteBuffer());
+            stitched = stitcher.stitch(decoded);
+        }
+
+        assertFalse(receiveBuffer.hasRemaining());
+        assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+    }
+
+    @Test
+    void decodedChunkCopiedIntoHeapBuffer() {
+        Chunk chunk = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).get(1);
+        ByteBuffer encoded = ChunkCodec.encode(chunk);
+        ByteBuffer directEncoded = ByteBuffer.allocateDirect(encoded.remaining());
+        directEncoded.put(encoded.duplicate()).flip();
+
+        for (ByteBuffer receiveBuffer : new ByteBuffer[] {encoded, directEncoded}) {
+            Chunk decoded = ChunkCodec.decode(receiveBuffer);
+            assertTrue(decoded.getByteBuffer().isReadOnly());
+            ByteBuffer target = ByteBuffer.wrap(new byte[CHUNK_BYTE_SIZE + 20], 5, CHUNK_BYTE_SIZE + 10)
+                    .slice();
+            target.position(3);
+
+            decoded.copyBytesTo(target, 7);
+
+            assertEquals(3, target.position());
+            int copiedStart = target.arrayOffset() + 7;
+            assertArrayEquals(
+                    chunk.getBytes(),
+                    Arrays.copyOfRange(target.array(), copiedStart, copiedStart + chunk.getByteSize()));
+        }
+    }
+
+    @Test
+    void encodedByteSizeIsExact() {
+        Chunk chunk = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).get(3);
+
+        ByteBuffer encoded = ChunkCodec.encode(chunk);
+
+        assertEquals(2 * Long.BYTES + 1 + 1 + 1 + 2 + 2 + 1 + 100, encoded.remaining());
+    }
+
+    @Test
+    void groupIdPeekedWithoutDecoding() {
+        Chunk chunk = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).get(1);
+        ByteBuffer encoded = ChunkCodec.encode(chunk);
+
+        assertEquals(chunk.getGroupId().getMostSignificantBits(), ChunkCodec.peekGroupIdMostSignificantBits(encoded));
+        assertEquals(chunk.getGroupId().getLeastSignificantBits(), ChunkCodec.peekGroupIdLeastSignificantBits(encoded));
+        assertEquals(0, encoded.position());
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> ChunkCodec.peekGroupIdLeastSignificantBits(ByteBuffer.allocate(Long.BYTES)));
+    }
+
+    @Test
+    void truncatedChunk() {
+        ByteBuffer encoded = ChunkCodec.encode(
+                ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).get(0));
+        encoded.limit(encoded.limit() - 1);
+
+        assertThrows(IllegalArgumentException.class, () -> ChunkCodec.decode(encoded));
+    }
+
+    @Test
+    void referenceChunkCarriesFingerprintOnly() {
+        Chunk chunk = new ChunkChopper.Builder()
+                .contentDefined(16, 64, 256)
+                .build()
+                .chop(BYTES)
+                .get(0);
+
+        Chunk decoded = ChunkCodec.decode(ChunkCodec.encode(chunk.toReference()));
+
+        assertTrue(decoded.isReference());
+        assertArrayEquals(chunk.getFingerprint(), decoded.getFingerprint());
+        assertEquals(chunk.getOffset(), decoded.getOffset());
+        assertArrayEquals(
+                chunk.getFingerprint(),
+                ChunkCodec.decode(ChunkCodec.encode(chunk)).getFingerprint());
+    }
+
+    @Test
+    void referenceWithoutFingerprintRejected() {
+        Chunk chunk = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                .build()
+                .chop(BYTES)
+                .get(0);
+        ByteBuffer encoded = ChunkCodec.encode(chunk);
+        int flagsIndex = 2 * Long.BYTES;
+        encoded.put(flagsIndex, (byte) (encoded.get(flagsIndex) | 0x02));
+
+        assertThrows(IllegalArgumentException.class, () -> ChunkCodec.decode(encoded));
+    }
+
+    @Test
+    void checksumAndMerkleRootEncoded() {
+        Chunk chunk = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .checksumAlgorithm(ChecksumAlgorithm.SHA_256)
+                .build()
+                .chop(BYTES)
+                .get(1);
+
+        Chunk decoded = ChunkCodec.decode(ChunkCodec.encode(chunk));
+
+        assertEquals(ChecksumAlgorithm.SHA_256, decoded.getChecksumAlgorithm());
+        assertArrayEquals(chunk.getChecksum(), decoded.getChecksum());
+        assertArrayEquals(chunk.getMerkleRoot(), decoded.getMerkleRoot());
+    }
+
+    @Test
+    void parityChunkCountEncoded() {
+        List<Chunk> chunks = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .parityChunks(2)
+                .build()
+                .chop(BYTES);
+        Chunk parityChunk = chunks.get(chunks.size() - 1);
+
+        Chunk decoded = ChunkCodec.decode(ChunkCodec.encode(parityChunk));
+
+        assertEquals(2, decoded.getParityChunkCount());
+        assertEquals(parityChunk.getOffset(), decoded.getOffset());
+        assertEquals(parityChunk.getByteBuffer(), decoded.getByteBuffer());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ChunkRouterTest {
+
+    static final List<String> NODE_IDS = Arrays.asList("node-a", "node-b", "node-c");
+    static final int CHUNK_BYTE_SIZE = 10;
+
+    final Map<String, ChunkRouter> routers = new HashMap<>();
+    final Map<UUID, String> stitchingNodes = new ConcurrentHashMap<>();
+
+    ChunkRouter startNode(String nodeId) {
+        ChunkRouter router = new ChunkRouter.Builder()
+                .localNode(nodeId, new ChunkStitcher.Builder().build())
+                .nodes(NODE_IDS)
+                .transport((ownerId, chunk) -> routers.get(ownerId)
+                        .receive(chunk)
+                        .ifPresent(bytes -> stitchingNodes.put(chunk.getGroupId(), ownerId)))
+                .build();
+        routers.put(nodeId, router);
+        return router;
+    }
+
+    @Test
+    void eachGroupStitchedOnItsOwnerOnly() {
+        NODE_IDS.forEach(this::startNode);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        Random random = new Random(42);
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            byte[] blob = new byte[100 + random.nextInt(100)];
+            random.nextBytes(blob);
+            chunks.addAll(chopper.chop(blob));
+        }
+        Collections.shuffle(chunks, random);
+
+        for (Chunk chunk : chunks) {
+            String receivingNodeId = NODE_IDS.get(random.nextInt(NODE_IDS.size()));
+            routers.get(receivingNodeId)
+                    .stitch(chunk)
+                    .ifPresent(bytes -> assertNull(stitchingNodes.put(chunk.getGroupId(), receivingNodeId)));
+        }
+
+        assertEquals(30, stitchingNodes.size());
+        stitchingNodes.forEach(
+                (groupId, nodeId) -> assertEquals(routers.get("node-a").ownerOf(groupId), nodeId));
+        assertEquals(3, stitchingNodes.values().stream().distinct().count());
+    }
+
+    @Test
+    void onlyJoiningNodeWinsGroups() {
+        ChunkRouter router = startNode("node-a");
+        List<UUID> groupIds =
+                IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+        Map<UUID, String> owners = groupIds.stream().collect(Collectors.toMap(id -> id, router::ownerOf));
+
+        router.setNodes(Arrays.asList("node-a", "node-b", "node-c", "node-d"));
+
+        long moved = groupIds.stream()
+                .filter(groupId -> !router.ownerOf(groupId).equals(owners.get(groupId)))
+                .peek(groupId -> assertEquals("node-d", router.ownerOf(groupId)))
+                .count();
+        assertTrue(moved > 2_000 && moved < 3_000, "moved " + moved);
+    }
+
+    @Test
+    void onlyLeavingNodeGroupsMoved() {
+        ChunkRouter router = startNode("node-a");
+        List<UUID> groupIds =
+                IntStream.range(0, 10_000).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+        Map<UUID, String> owners = groupIds.stream().collect(Collectors.toMap(id -> id, router::ownerOf));
+
+        router.setNodes(Arrays.asList("node-a", "node-c"));
+
+        for (UUID groupId : groupIds) {
+            if (!owners.get(groupId).equals("node-b")) {
+                assertEquals(owners.get(groupId), router.ownerOf(groupId));
+            }
+        }
+        Map<String, Long> ownedCounts =
+                owners.values().stream().collect(Collectors.groupingBy(nodeId -> nodeId, Collectors.counting()));
+        ownedCounts.values().forEach(count -> assertTrue(count > 3_000 && count < 3_700, "owned " + count));
+    }
+
+    @Test
+    void emptyNodesRejected() {
+        ChunkRouter.Builder builder = new ChunkRouter.Builder()
+                .localNode("node-a", new ChunkStitcher.Builder().build())
+                .transport((ownerId, chunk) -> {});
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+}
@@ -26,13 +26,29 @@ package chunk4j;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class ChunkStitcherTest {
 
@@ -75,6 +91,42 @@ class ChunkStitcherTest {
         }
     }
 
+    @Nested
+    class maxPendingByteSize {
+
+        @Test
+        void lessThanNeeded() {
+            int originalDataItems = 100;
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .maxPendingByteSize(BYTES.length * 2L)
+                    .build();
+            List<List<Chunk>> groups = new ArrayList<>();
+            ChunkChopper chunkChopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+            for (int i = 0; i < originalDataItems; i++) {
+                List<Chunk> chunks = chunkChopper.chop(BYTES);
+                tot.stitch(chunks.get(0));
+                groups.add(chunks);
+            }
+
+            long allStitchedItems = groups.stream()
+                    .filter(chunks -> chunks.stream().skip(1).map(tot::stitch).anyMatch(Optional::isPresent))
+                    .count();
+
+            assertTrue(
+                    allStitchedItems < originalDataItems,
+                    "stitched and restored items [" + allStitchedItems + "] should be less than original items ["
+                            + originalDataItems + "] due to insufficient max pending byte size");
+        }
+
+        @Test
+        void notCombinedWithMaxGroups() {
+            ChunkStitcher.Builder builder =
+                    new ChunkStitcher.Builder().maxPendingByteSize(BYTES.length).maxStitchingGroups(2);
+
+            assertThrows(IllegalArgumentException.class, builder::build);
+        }
+    }
+
     @Nested
     class maxStitchTime {
 
@@ -101,6 +153,719 @@ class ChunkStitcherTest {
         }
     }
 
+    @Nested
+    class concurrentChunks {
+
+        @Test
+        void sameGroupStitchedConcurrently() throws InterruptedException, ExecutionException {
+            byte[] bytes = new byte[100_000];
+            new Random().nextBytes(bytes);
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            List<Chunk> chunks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                chunks.addAll(ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(bytes));
+            }
+            chunks.addAll(chunks.subList(0, 100));
+            Collections.shuffle(chunks);
+
+            ExecutorService executorService = Executors.newFixedThreadPool(16);
+            List<Future<Optional<byte[]>>> allStitchedFutures = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                allStitchedFutures.add(executorService.submit(() -> tot.stitch(chunk)));
+            }
+            List<byte[]> allStitched = new ArrayList<>();
+            for (Future<Optional<byte[]>> f : allStitchedFutures) {
+                f.get().ifPresent(allStitched::add);
+            }
+            executorService.shutdown();
+
+            assertEquals(10, allStitched.size());
+            allStitched.forEach(stitched -> assertArrayEquals(bytes, stitched));
+        }
+    }
+
+    @Nested
+    class duplicateChunks {
+
+        @Test
+        void ignoredUntilGroupComplete() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+            Chunk last = chunks.get(chunks.size() - 1);
+
+            for (Chunk chunk : chunks.subList(0, chunks.size() - 1)) {
+                assertFalse(tot.stitch(chunk).isPresent());
+                assertFalse(tot.stitch(chunk).isPresent());
+            }
+
+            assertArrayEquals(BYTES, tot.stitch(last).orElseThrow(NoSuchElementException::new));
+        }
+    }
+
+    @Nested
+    class positionedChunks {
+
+        @Test
+        void outOfOrderChunksCopiedToTheirOffsets() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            List<Chunk> chunks =
+                    new ArrayList<>(ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES));
+            Collections.reverse(chunks);
+
+            Optional<byte[]> stitched = Optional.empty();
+            for (Chunk chunk : chunks) {
+                assertEquals((long) chunk.getIndex() * CHUNK_BYTE_SIZE, chunk.getOffset());
+                assertEquals(BYTES.length, chunk.getBlobByteSize());
+                stitched = tot.stitch(chunk);
+            }
+
+            assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void chunksWithoutOffsetsPositionedByTheirGroup() {
+            byte[] bytes = new byte[CHUNK_BYTE_SIZE * 10 + 3];
+            new Random().nextBytes(bytes);
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            List<Chunk> legacy = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(bytes).stream()
+                    .map(chunk -> Chunk.builder()
+                            .groupId(chunk.getGroupId())
+                            .index(chunk.getIndex())
+                            .groupSize(chunk.getGroupSize())
+                            .bytes(chunk.getBytes())
+                            .build())
+                    .collect(Collectors.toList());
+            Collections.shuffle(legacy);
+
+            List<byte[]> stitched = new ArrayList<>();
+            for (Chunk chunk : legacy) {
+                tot.stitch(chunk).ifPresent(stitched::add);
+            }
+
+            assertEquals(1, stitched.size());
+            assertArrayEquals(bytes, stitched.get(0));
+        }
+
+        @Test
+        void serialVersionKeptForEarlierProducers() {
+            assertEquals(
+                    -1879320933982945956L, ObjectStreamClass.lookup(Chunk.class).getSerialVersionUID());
+        }
+    }
+
+    @Nested
+    class offHeap {
+
+        @Test
+        void stitchedIntoDirectBuffer() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().offHeap(true).build();
+            Optional<ByteBuffer> stitched = Optional.empty();
+
+            for (Chunk chunk : ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES)) {
+                stitched = tot.stitchToBuffer(chunk);
+            }
+
+            ByteBuffer stitchedBuffer = stitched.orElseThrow(NoSuchElementException::new);
+            assertTrue(stitchedBuffer.isDirect());
+            assertEquals(ByteBuffer.wrap(BYTES), stitchedBuffer);
+        }
+
+        @Test
+        void stitchedIntoRecycledDirectBuffers() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().offHeap(true).build();
+            ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+            byte[] otherBytes = new byte[BYTES.length - 1];
+            Arrays.fill(otherBytes, (byte) 1);
+
+            for (byte[] bytes : Arrays.asList(otherBytes, BYTES, otherBytes)) {
+                Optional<byte[]> stitched = Optional.empty();
+                for (Chunk chunk : chopper.chop(bytes)) {
+                    stitched = tot.stitch(chunk);
+                }
+                assertArrayEquals(bytes, stitched.orElseThrow(NoSuchElementException::new));
+            }
+        }
+    }
+
+    @Nested
+    class chunkStore {
+        final ChunkChopper chopper =
+                new ChunkChopper.Builder().contentDefined(16, 64, 256).build();
+
+        @Test
+        void referenceChunksResolvedFromStore() {
+            byte[] blob = new byte[4096];
+            new Random(7).nextBytes(blob);
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .chunkStore(InMemoryChunkStore.ofMaxByteSize(1 << 20))
+                    .build();
+            chopper.chop(blob).forEach(tot::stitch);
+
+            Optional<byte[]> restitched = Optional.empty();
+            for (Chunk chunk : chopper.chop(blob)) {
+                restitched = tot.stitch(chunk.toReference());
+            }
+
+            assertArrayEquals(blob, restitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void unresolvableReferenceChunk() {
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .chunkStore(InMemoryChunkStore.ofMaxByteSize(1 << 20))
+                    .build();
+            Chunk reference = chopper.chop(BYTES).get(0).toReference();
+
+            assertThrows(IllegalArgumentException.class, () -> tot.stitch(reference));
+        }
+
+        @Test
+        void mismatchingFingerprintRejected() {
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .chunkStore(InMemoryChunkStore.ofMaxByteSize(1 << 20))
+                    .build();
+            Chunk chunk = chopper.chop(BYTES).get(0);
+            Chunk forged = chunk.toBuilder()
+                    .bytes(new byte[chunk.getByteSize()])
+                    .fingerprint(new byte[32])
+                    .build();
+
+            assertThrows(IllegalArgumentException.class, () -> tot.stitch(forged));
+        }
+    }
+
+    @Nested
+    class compression {
+        final ChunkChopper chopper = new ChunkChopper.Builder()
+                .chunkByteCapacity(8192)
+                .compressionCodec(DeflateCodec.ofLevel(Deflater.BEST_SPEED))
+                .build();
+
+        @Test
+        void compressibleChunksRestored() {
+            byte[] text = new byte[100_000];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = (byte) ('a' + i % 7);
+            }
+            List<Chunk> chunks = chopper.chop(ByteBuffer.wrap(text));
+            Collections.shuffle(chunks);
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            Optional<byte[]> stitched = Optional.empty();
+            for (Chunk chunk : chunks) {
+                assertEquals(DeflateCodec.ID, chunk.getCompressionId());
+                assertTrue(chunk.getByteSize() < 8192);
+                stitched = tot.stitch(ChunkCodec.decode(ChunkCodec.encode(chunk)));
+            }
+
+            assertArrayEquals(text, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void incompressibleChunksLeftUncompressed() {
+            byte[] random = new byte[100_000];
+            new Random(3).nextBytes(random);
+
+            assertTrue(chopper.chop(random).stream().allMatch(chunk -> chunk.getCompressionId() == 0));
+        }
+
+        @Test
+        void decompressedSizeBounded() {
+            Chunk chunk = chopper.chop(new byte[8192]).get(0);
+            Chunk oversized = chunk.toBuilder().blobByteSize(100).build();
+
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> new ChunkStitcher.Builder().build().stitch(oversized));
+        }
+
+        @Test
+        void codecReusableAfterMalformedStream() {
+            DeflateCodec codec = DeflateCodec.ofLevel(Deflater.BEST_SPEED);
+            byte[] text = new byte[1000];
+            Arrays.fill(text, (byte) 'a');
+            ByteBuffer compressed = codec.compress(ByteBuffer.wrap(text));
+            byte[] malformed = new byte[compressed.remaining()];
+            compressed.duplicate().get(malformed);
+            Arrays.fill(malformed, 2, malformed.length, (byte) 0xFF);
+
+            assertThrows(IllegalArgumentException.class, () -> codec.decompress(ByteBuffer.wrap(malformed), 1000));
+
+            for (int i = 0; i < 3; i++) {
+                ByteBuffer restored = codec.decompress(codec.compress(ByteBuffer.wrap(text)), 1000);
+                byte[] restoredBytes = new byte[restored.remaining()];
+                restored.get(restoredBytes);
+                assertArrayEquals(text, restoredBytes);
+            }
+        }
+
+        @Test
+        void codecsRegisteredAfterBuildNotShared() {
+            CompressionCodec identity = new CompressionCodec() {
+                @Override
+                public byte getId() {
+                    return 7;
+                }
+
+                @Override
+                public ByteBuffer compress(ByteBuffer uncompressed) {
+                    return uncompressed.duplicate();
+                }
+
+                @Override
+                public ByteBuffer decompress(ByteBuffer compressed, int maxByteSize) {
+                    return compressed.duplicate();
+                }
+            };
+            Chunk chunk = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).get(0).toBuilder()
+                    .compressionId(identity.getId())
+                    .build();
+            ChunkStitcher.Builder builder = new ChunkStitcher.Builder();
+            ChunkStitcher builtBefore = builder.build();
+
+            builder.compressionCodec(identity);
+
+            assertThrows(IllegalArgumentException.class, () -> builtBefore.stitch(chunk));
+            assertFalse(builder.build().stitch(chunk).isPresent());
+        }
+    }
+
+    @Nested
+    class checksum {
+        final ChunkChopper chopper = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                .build();
+
+        @Test
+        void corruptChunkDroppedAndReported() {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            Chunk chunk = chunks.get(5);
+            byte[] corruptBytes = chunk.getBytes().clone();
+            corruptBytes[0]++;
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            CorruptChunkException e = assertThrows(
+                    CorruptChunkException.class,
+                    () -> tot.stitch(chunk.toBuilder().bytes(corruptBytes).build()));
+
+            assertEquals(chunk.getGroupId(), e.getGroupId());
+            assertArrayEquals(new int[] {5}, e.getChunkIndexes());
+            Optional<byte[]> stitched = Optional.empty();
+            for (Chunk resent : chunks) {
+                stitched = tot.stitch(resent);
+            }
+            assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void groupNotMatchingMerkleRootDiscarded() {
+            List<Chunk> chunks = new ArrayList<>(chopper.chop(BYTES));
+            Chunk chunk = chunks.get(5);
+            byte[] tamperedBytes = chunk.getBytes().clone();
+            tamperedBytes[0]++;
+            chunks.set(
+                    5,
+                    chunk.toBuilder()
+                            .bytes(tamperedBytes)
+                            .checksum(ChecksumAlgorithm.CRC32.checksum(ByteBuffer.wrap(tamperedBytes)))
+                            .build());
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            chunks.subList(0, chunks.size() - 1).forEach(tot::stitch);
+
+            CorruptChunkException e =
+                    assertThrows(CorruptChunkException.class, () -> tot.stitch(chunks.get(chunks.size() - 1)));
+
+            assertEquals(chunks.size(), e.getChunkIndexes().length);
+        }
+
+        @Test
+        void onlyMismatchingChunkOfCorruptGroupReported() {
+            List<Chunk> chunks = new ArrayList<>(chopper.chop(BYTES));
+            Chunk chunk = chunks.get(5);
+            byte[] tamperedBytes = chunk.getBytes().clone();
+            tamperedBytes[0]++;
+            Chunk misplaced = chunk.toBuilder()
+                    .offset(chunks.get(4).getOffset())
+                    .bytes(tamperedBytes)
+                    .checksum(ChecksumAlgorithm.CRC32.checksum(ByteBuffer.wrap(tamperedBytes)))
+                    .build();
+            chunks.remove(5);
+            chunks.add(0, misplaced);
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            chunks.subList(0, chunks.size() - 1).forEach(tot::stitch);
+
+            CorruptChunkException e =
+                    assertThrows(CorruptChunkException.class, () -> tot.stitch(chunks.get(chunks.size() - 1)));
+
+            assertArrayEquals(new int[] {5}, e.getChunkIndexes());
+        }
+    }
+
+    @Nested
+    class tombstones {
+        final ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+
+        @Test
+        void lateDuplicatesOfCompletedGroupDropped() {
+            ChunkStitcher tot =
+                    new ChunkStitcher.Builder().tombstoneCapacity(10).build();
+            List<Chunk> chunks = chopper.chop(BYTES);
+            chunks.forEach(tot::stitch);
+
+            for (Chunk duplicate : chunks) {
+                assertFalse(tot.stitch(duplicate).isPresent());
+            }
+        }
+
+        @Test
+        void oldestCompletedGroupsForgotten() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().tombstoneCapacity(1).build();
+            List<Chunk> oldest = chopper.chop(BYTES);
+            oldest.forEach(tot::stitch);
+            chopper.chop(BYTES).forEach(tot::stitch);
+            chopper.chop(BYTES).forEach(tot::stitch);
+
+            Optional<byte[]> restitched = Optional.empty();
+            for (Chunk chunk : oldest) {
+                restitched = tot.stitch(chunk);
+            }
+
+            assertArrayEquals(BYTES, restitched.orElseThrow(NoSuchElementException::new));
+        }
+    }
+
+    @Nested
+    class missingChunks {
+        final List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+
+        @Test
+        void reportedOnDemand() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+            for (Chunk chunk : chunks) {
+                if (chunk.getIndex() != 3 && chunk.getIndex() != 70) {
+                    tot.stitch(chunk);
+                }
+            }
+
+            assertArrayEquals(
+                    new int[] {3, 70},
+                    tot.missingChunkIndexes(chunks.get(0).getGroupId()).orElseThrow(NoSuchElementException::new));
+            assertFalse(tot.missingChunkIndexes(UUID.randomUUID()).isPresent());
+        }
+
+        @Test
+        void reportedShortlyBeforeExpiry() throws Exception {
+            CompletableFuture<int[]> notified = new CompletableFuture<>();
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .maxStitchTime(Duration.ofMillis(500))
+                    .missingChunksListener(
+                            Duration.ofMillis(300),
+                            (groupId, missingChunkIndexes) -> notified.complete(missingChunkIndexes))
+                    .build();
+
+            chunks.subList(0, chunks.size() - 1).forEach(tot::stitch);
+
+            assertArrayEquals(new int[] {chunks.size() - 1}, notified.get(1, TimeUnit.SECONDS));
+            Optional<byte[]> stitched = tot.stitch(chunks.get(chunks.size() - 1));
+            assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void notifierThreadStoppedOnClose() throws Exception {
+            Set<Thread> threadsBefore = Thread.getAllStackTraces().keySet();
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .maxStitchTime(Duration.ofMinutes(1))
+                    .missingChunksListener(Duration.ofSeconds(30), (groupId, missingChunkIndexes) -> {})
+                    .build();
+            tot.stitch(chunks.get(0));
+            List<Thread> notifierThreads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> !threadsBefore.contains(thread))
+                    .filter(thread -> thread.getName().equals("chunk4j-missing-chunks-notifier"))
+                    .collect(Collectors.toList());
+            assertEquals(1, notifierThreads.size());
+
+            tot.close();
+
+            notifierThreads.get(0).join(TimeUnit.SECONDS.toMillis(5));
+            assertFalse(notifierThreads.get(0).isAlive());
+            assertThrows(IllegalStateException.class, () -> tot.stitch(chunks.get(1)));
+        }
+    }
+
+    @Nested
+    class parity {
+        final byte[] blob = new byte[995];
+        final ChunkChopper chopper = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                .parityChunks(4)
+                .build();
+
+        {
+            new Random(42).nextBytes(blob);
+        }
+
+        @Test
+        void lostDataChunksRestoredFromParityChunks() {
+            List<Chunk> chunks = new ArrayList<>(chopper.chop(blob));
+            assertEquals(104, chunks.size());
+            chunks.remove(99);
+            chunks.remove(50);
+            chunks.remove(7);
+            chunks.remove(0);
+            Collections.shuffle(chunks, new Random(7));
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            Optional<byte[]> stitched = Optional.empty();
+            for (Chunk chunk : chunks) {
+                stitched = tot.stitch(chunk);
+            }
+
+            assertArrayEquals(blob, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void streamChoppedChunksRestoredFromParityChunks() {
+            List<Chunk> chunks = new ArrayList<>();
+            chopper.chop(new ByteArrayInputStream(blob), blob.length).forEachRemaining(chunks::add);
+            chunks.remove(99);
+            chunks.remove(3);
+            ChunkStitcher tot =
+                    new ChunkStitcher.Builder().tombstoneCapacity(10).build();
+
+            List<byte[]> stitched = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                tot.stitch(chunk).ifPresent(stitched::add);
+            }
+
+            assertEquals(1, stitched.size());
+            assertArrayEquals(blob, stitched.get(0));
+        }
+
+        @Test
+        void lostDataChunksRestoredFromParityStripes() {
+            byte[] largeBlob = new byte[CHUNK_BYTE_SIZE * 300];
+            new Random(42).nextBytes(largeBlob);
+            List<Chunk> chunks = new ArrayList<>(chopper.chop(largeBlob));
+            assertEquals(308, chunks.size());
+            chunks.removeIf(chunk -> chunk.getIndex() < 4 || (chunk.getIndex() >= 200 && chunk.getIndex() < 204));
+            Collections.shuffle(chunks, new Random(7));
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            Optional<byte[]> stitched = Optional.empty();
+            for (Chunk chunk : chunks) {
+                stitched = tot.stitch(chunk);
+            }
+
+            assertArrayEquals(largeBlob, stitched.orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void streamChoppedChunksRestoredFromParityStripes() {
+            byte[] largeBlob = new byte[CHUNK_BYTE_SIZE * 300 - 5];
+            new Random(42).nextBytes(largeBlob);
+            List<Chunk> chunks = new ArrayList<>();
+            chopper.chop(new ByteArrayInputStream(largeBlob), largeBlob.length).forEachRemaining(chunks::add);
+            assertEquals(308, chunks.size());
+            chunks.removeIf(chunk -> chunk.getIndex() == 10 || chunk.getIndex() == 299 || chunk.getIndex() == 305);
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            List<byte[]> stitched = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                tot.stitch(chunk).ifPresent(stitched::add);
+            }
+
+            assertEquals(1, stitched.size());
+            assertArrayEquals(largeBlob, stitched.get(0));
+        }
+
+        @Test
+        void tooManyLostChunks() {
+            List<Chunk> chunks = new ArrayList<>(chopper.chop(blob));
+            chunks.subList(10, 15).clear();
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            chunks.forEach(chunk -> assertFalse(tot.stitch(chunk).isPresent()));
+            assertArrayEquals(
+                    new int[] {10, 11, 12, 13, 14},
+                    tot.missingChunkIndexes(chunks.get(0).getGroupId()).orElseThrow(NoSuchElementException::new));
+        }
+
+        @Test
+        void notCombinableWithCompression() {
+            ChunkChopper.Builder builder = new ChunkChopper.Builder()
+                    .compressionCodec(DeflateCodec.ofLevel(Deflater.BEST_SPEED))
+                    .parityChunks(1);
+
+            assertThrows(IllegalArgumentException.class, builder::build);
+        }
+    }
+
+    @Nested
+    class durableLog {
+        final ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+
+        @Test
+        void pendingGroupRebuiltAfterRestart(@TempDir Path logDirectory) {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            try (ChunkStitcher stopped =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                chunks.subList(0, 60).forEach(stopped::stitch);
+            }
+
+            try (ChunkStitcher restarted =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                assertArrayEquals(
+                        IntStream.range(60, chunks.size()).toArray(),
+                        restarted
+                                .missingChunkIndexes(chunks.get(0).getGroupId())
+                                .orElseThrow(NoSuchElementException::new));
+                Optional<byte[]> stitched = Optional.empty();
+                for (Chunk chunk : chunks.subList(60, chunks.size())) {
+                    stitched = restarted.stitch(chunk);
+                }
+                assertArrayEquals(BYTES, stitched.orElseThrow(NoSuchElementException::new));
+            }
+        }
+
+        @Test
+        void completedGroupsNotRebuilt(@TempDir Path logDirectory) {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            try (ChunkStitcher stopped =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                chunks.forEach(stopped::stitch);
+            }
+
+            try (ChunkStitcher restarted =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                assertFalse(restarted
+                        .missingChunkIndexes(chunks.get(0).getGroupId())
+                        .isPresent());
+            }
+        }
+
+        @Test
+        void groupResentAfterCompletionRebuilt(@TempDir Path logDirectory) {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            try (ChunkStitcher stopped = new ChunkStitcher.Builder()
+                    .tombstoneCapacity(0)
+                    .durableLog(logDirectory)
+                    .build()) {
+                chunks.forEach(stopped::stitch);
+                chunks.subList(0, 60).forEach(stopped::stitch);
+            }
+
+            try (ChunkStitcher restarted =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                assertArrayEquals(
+                        IntStream.range(60, chunks.size()).toArray(),
+                        restarted
+                                .missingChunkIndexes(chunks.get(0).getGroupId())
+                                .orElseThrow(NoSuchElementException::new));
+            }
+        }
+
+        @Test
+        void chunkCompletingGroupLeftOutOfReplay(@TempDir Path logDirectory) {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            try (ChunkLog chunkLog = ChunkLog.open(logDirectory, ChunkLog.DEFAULT_SEGMENT_BYTE_SIZE)) {
+                chunks.forEach(chunk -> chunkLog.append(chunk, () -> true));
+            }
+
+            try (ChunkStitcher restarted =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build()) {
+                assertArrayEquals(
+                        new int[] {chunks.size() - 1},
+                        restarted
+                                .missingChunkIndexes(chunks.get(0).getGroupId())
+                                .orElseThrow(NoSuchElementException::new));
+            }
+        }
+
+        @Test
+        void chunksRejectedAfterClose(@TempDir Path logDirectory) {
+            List<Chunk> chunks = chopper.chop(BYTES);
+            ChunkStitcher closed =
+                    new ChunkStitcher.Builder().durableLog(logDirectory).build();
+            closed.close();
+
+            assertThrows(IllegalStateException.class, () -> closed.stitch(chunks.get(0)));
+        }
+
+        @Test
+        void segmentsCompactedAsGroupsComplete(@TempDir Path logDirectory) throws Exception {
+            List<Chunk> pending = chopper.chop(BYTES);
+            try (ChunkStitcher stopped = new ChunkStitcher.Builder()
+                    .durableLog(logDirectory)
+                    .durableLogSegmentByteSize(4096)
+                    .build()) {
+                pending.subList(0, 10).forEach(stopped::stitch);
+                for (int i = 0; i < 50; i++) {
+                    chopper.chop(BYTES).forEach(stopped::stitch);
+                }
+            }
+
+            try (Stream<Path> segments = Files.list(logDirectory)) {
+                assertTrue(segments.count() <= 2 * ChunkLog.STRIPES);
+            }
+            try (ChunkStitcher restarted = new ChunkStitcher.Builder()
+                    .durableLog(logDirectory)
+                    .durableLogSegmentByteSize(4096)
+                    .build()) {
+                assertEquals(
+                        pending.size() - 10,
+                        restarted
+                                .missingChunkIndexes(pending.get(0).getGroupId())
+                                .orElseThrow(NoSuchElementException::new)
+                                .length);
+            }
+        }
+    }
+
+    @Nested
+    class spill {
+
+        @Test
+        void oversizedGroupStitchedIntoMappedFile(@TempDir Path spillDirectory) {
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .spillGroupByteSize(BYTES.length)
+                    .spillDirectory(spillDirectory)
+                    .build();
+            Optional<ByteBuffer> stitched = Optional.empty();
+
+            for (Chunk chunk : ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES)) {
+                stitched = tot.stitchToBuffer(chunk);
+            }
+
+            ByteBuffer stitchedBuffer = stitched.orElseThrow(NoSuchElementException::new);
+            assertTrue(stitchedBuffer.isDirect());
+            assertEquals(ByteBuffer.wrap(BYTES), stitchedBuffer);
+        }
+
+        @Test
+        void groupsBeyondPendingByteSizeStitchedIntoMappedFile() {
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .spillPendingByteSize(BYTES.length)
+                    .build();
+            ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+            List<Chunk> onHeap = chopper.chop(BYTES);
+            List<Chunk> spilled = chopper.chop(BYTES);
+            tot.stitch(onHeap.get(0));
+
+            Optional<ByteBuffer> stitched = Optional.empty();
+            for (Chunk chunk : spilled) {
+                stitched = tot.stitchToBuffer(chunk);
+            }
+
+            assertTrue(stitched.orElseThrow(NoSuchElementException::new).isDirect());
+            for (Chunk chunk : onHeap.subList(1, onHeap.size())) {
+                stitched = tot.stitchToBuffer(chunk);
+            }
+            assertFalse(stitched.orElseThrow(NoSuchElementException::new).isDirect());
+        }
+    }
+
     @Nested
     class maxStitchingSize {
 
@@ -120,4 +885,65 @@ class ChunkStitcherTest {
             });
         }
     }
+
+    @Nested
+    class stitchToListener {
+        final List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        final ConcurrentMap<UUID, byte[]> stitched = new ConcurrentHashMap<>();
+
+        @Test
+        void completedGroupDeliveredToListener() {
+            ChunkStitcher tot = new ChunkStitcher.Builder()
+                    .tombstoneCapacity(10)
+                    .stitchListener(stitched::put)
+                    .build();
+
+            for (Chunk chunk : chunks.subList(0, chunks.size() - 1)) {
+                assertEquals(StitchStatus.PENDING, tot.stitchToListener(chunk));
+            }
+            assertTrue(stitched.isEmpty());
+            assertEquals(StitchStatus.COMPLETED, tot.stitchToListener(chunks.get(chunks.size() - 1)));
+
+            assertArrayEquals(BYTES, stitched.get(chunks.get(0).getGroupId()));
+            assertEquals(StitchStatus.DROPPED, tot.stitchToListener(chunks.get(0)));
+        }
+
+        @Test
+        void duplicateOfPendingGroupDropped() {
+            ChunkStitcher tot =
+                    new ChunkStitcher.Builder().stitchListener(stitched::put).build();
+            assertEquals(StitchStatus.PENDING, tot.stitchToListener(chunks.get(0)));
+
+            assertEquals(StitchStatus.DROPPED, tot.stitchToListener(chunks.get(0)));
+
+            for (Chunk chunk : chunks.subList(1, chunks.size() - 1)) {
+                assertEquals(StitchStatus.PENDING, tot.stitchToListener(chunk));
+            }
+            assertEquals(StitchStatus.COMPLETED, tot.stitchToListener(chunks.get(chunks.size() - 1)));
+            assertArrayEquals(BYTES, stitched.get(chunks.get(0).getGroupId()));
+        }
+
+        @Test
+        void decodedChunksStitched() {
+            ByteBuffer receiveBuffer = ByteBuffer.allocate(
+                    chunks.stream().mapToInt(ChunkCodec::encodedByteSize).sum());
+            chunks.forEach(chunk -> ChunkCodec.encode(chunk, receiveBuffer));
+            receiveBuffer.flip();
+            ChunkStitcher tot =
+                    new ChunkStitcher.Builder().stitchListener(stitched::put).build();
+
+            while (receiveBuffer.hasRemaining()) {
+                tot.stitchToListener(ChunkCodec.decode(receiveBuffer));
+            }
+
+            assertArrayEquals(BYTES, stitched.get(chunks.get(0).getGroupId()));
+        }
+
+        @Test
+        void listenerRequired() {
+            ChunkStitcher tot = new ChunkStitcher.Builder().build();
+
+            assertThrows(IllegalStateException.class, () -> tot.stitchToListener(chunks.get(0)));
+        }
+    }
 }
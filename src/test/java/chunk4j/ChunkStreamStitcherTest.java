@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class ChunkStreamStitcherTest {
+
+    static final byte[] BYTES = new byte[1000];
+    static final int CHUNK_BYTE_SIZE = 10;
+
+    static {
+        for (int i = 0; i < BYTES.length; i++) {
+            BYTES[i] = (byte) i;
+        }
+    }
+
+    final Map<UUID, ByteArrayOutputStream> outputs = new ConcurrentHashMap<>();
+    final ChunkStreamStitcher tot = new ChunkStreamStitcher.Builder()
+            .outputStreamFactory(groupId -> outputs.computeIfAbsent(groupId, k -> new ByteArrayOutputStream()))
+            .build();
+
+    @Test
+    void writesContiguousBytesAsSoonAsAvailable() {
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        UUID groupId = chunks.get(0).getGroupId();
+
+        assertFalse(tot.stitch(chunks.get(1)));
+        assertEquals(0, outputs.get(groupId).size());
+        assertFalse(tot.stitch(chunks.get(0)));
+        assertEquals(2 * CHUNK_BYTE_SIZE, outputs.get(groupId).size());
+        for (Chunk chunk : chunks.subList(2, chunks.size() - 1)) {
+            assertFalse(tot.stitch(chunk));
+        }
+
+        assertTrue(tot.stitch(chunks.get(chunks.size() - 1)));
+        assertArrayEquals(BYTES, outputs.get(groupId).toByteArray());
+    }
+
+    @Test
+    void chunksInRandomOrder() {
+        List<Chunk> chunks =
+                new ArrayList<>(ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES));
+        Collections.shuffle(chunks);
+
+        long completed = chunks.stream().filter(tot::stitch).count();
+
+        assertEquals(1, completed);
+        assertArrayEquals(BYTES, outputs.values().iterator().next().toByteArray());
+    }
+
+    @Test
+    void chunksWithoutOffsetsWrittenInIndexOrder() {
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES).stream()
+                .map(chunk -> Chunk.builder()
+                        .groupId(chunk.getGroupId())
+                        .index(chunk.getIndex())
+                        .groupSize(chunk.getGroupSize())
+                        .bytes(chunk.getBytes())
+                        .build())
+                .collect(Collectors.toList());
+        Collections.reverse(chunks);
+
+        long completed = chunks.stream().filter(tot::stitch).count();
+
+        assertEquals(1, completed);
+        assertArrayEquals(BYTES, outputs.get(chunks.get(0).getGroupId()).toByteArray());
+    }
+
+    @Test
+    void missingChunksReported() {
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        UUID groupId = chunks.get(0).getGroupId();
+
+        tot.stitch(chunks.get(1));
+        tot.stitch(chunks.get(3));
+
+        int[] missing = tot.missingChunkIndexes(groupId).orElseThrow(NoSuchElementException::new);
+        assertEquals(chunks.size() - 2, missing.length);
+        assertEquals(0, missing[0]);
+        assertEquals(2, missing[1]);
+        assertEquals(4, missing[2]);
+    }
+
+    @Test
+    void parityChunksRejected() {
+        List<Chunk> chunks = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .parityChunks(2)
+                .build()
+                .chop(BYTES);
+
+        assertThrows(IllegalArgumentException.class, () -> tot.stitch(chunks.get(chunks.size() - 1)));
+        assertTrue(outputs.isEmpty());
+    }
+
+    @Test
+    void referenceChunksRejected() {
+        Chunk chunk = new ChunkChopper.Builder()
+                .contentDefined(16, 64, 256)
+                .build()
+                .chop(BYTES)
+                .get(0);
+
+        assertThrows(IllegalArgumentException.class, () -> tot.stitch(chunk.toReference()));
+        assertTrue(outputs.isEmpty());
+    }
+
+    @Test
+    void slowChannelDoesNotHoldUpOtherGroups() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Chunk> slow = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        List<Chunk> fast = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        UUID slowGroupId = slow.get(0).getGroupId();
+        ChunkStreamStitcher stitcher = new ChunkStreamStitcher.Builder()
+                .outputStreamFactory(groupId -> groupId.equals(slowGroupId)
+                        ? new ByteArrayOutputStream() {
+                            @Override
+                            public synchronized void write(byte[] b, int off, int len) {
+                                writing.countDown();
+                                try {
+                                    release.await();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                                super.write(b, off, len);
+                            }
+                        }
+                        : outputs.computeIfAbsent(groupId, k -> new ByteArrayOutputStream()))
+                .build();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> slowStitch = executor.submit(() -> stitcher.stitch(slow.get(0)));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            long completed = fast.stream().filter(stitcher::stitch).count();
+
+            assertEquals(1, completed);
+            assertArrayEquals(BYTES, outputs.get(fast.get(0).getGroupId()).toByteArray());
+            release.countDown();
+            assertFalse(slowStitch.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void slowCloseOfEvictedGroupDoesNotHoldUpOtherGroups() throws Exception {
+        CountDownLatch closing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        List<Chunk> evicted = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+        UUID evictedGroupId = evicted.get(0).getGroupId();
+        ChunkStreamStitcher stitcher = new ChunkStreamStitcher.Builder()
+                .maxStitchTime(Duration.ofMillis(50))
+                .outputStreamFactory(groupId -> groupId.equals(evictedGroupId)
+                        ? new ByteArrayOutputStream() {
+                            @Override
+                            public void close() {
+                                closing.countDown();
+                                try {
+                                    release.await();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                                closed.countDown();
+                            }
+                        }
+                        : outputs.computeIfAbsent(groupId, k -> new ByteArrayOutputStream()))
+                .build();
+        try {
+            stitcher.stitch(evicted.get(0));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            do {
+                List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+                assertEquals(1, chunks.stream().filter(stitcher::stitch).count());
+                assertArrayEquals(BYTES, outputs.get(chunks.get(0).getGroupId()).toByteArray());
+            } while (!closing.await(50, TimeUnit.MILLISECONDS) && System.nanoTime() < deadline);
+
+            assertEquals(0, closing.getCount());
+            List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(BYTES);
+            assertEquals(1, chunks.stream().filter(stitcher::stitch).count());
+            assertEquals(1, closed.getCount());
+            release.countDown();
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+    }
+}
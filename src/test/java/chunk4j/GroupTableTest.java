@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+class GroupTableTest {
+
+    static void put(GroupTable<UUID> table, UUID groupId, long deadlineNanos) {
+        table.put(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits(), groupId, deadlineNanos);
+    }
+
+    static UUID get(GroupTable<UUID> table, UUID groupId) {
+        return table.get(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits());
+    }
+
+    static UUID remove(GroupTable<UUID> table, UUID groupId) {
+        return table.remove(groupId.getMostSignificantBits(), groupId.getLeastSignificantBits());
+    }
+
+    static List<UUID> randomIds(Random random, int count) {
+        List<UUID> groupIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            groupIds.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return groupIds;
+    }
+
+    @Nested
+    class slots {
+
+        @Test
+        void groupsFoundAcrossResizes() {
+            GroupTable<UUID> tot = new GroupTable<>();
+            List<UUID> groupIds = randomIds(new Random(1), 10_000);
+
+            for (int i = 0; i < groupIds.size(); i++) {
+                put(tot, groupIds.get(i), i);
+            }
+
+            assertEquals(groupIds.size(), tot.size());
+            groupIds.forEach(groupId -> assertEquals(groupId, get(tot, groupId)));
+            assertNull(get(tot, new UUID(0, 0)));
+        }
+
+        @Test
+        void removalsShiftBackCollidingRuns() {
+            Random random = new Random(2);
+            for (int round = 0; round < 1_000; round++) {
+                GroupTable<UUID> tot = new GroupTable<>();
+                List<UUID> groupIds = randomIds(random, 12);
+                groupIds.forEach(groupId -> put(tot, groupId, 0));
+                Collections.shuffle(groupIds, random);
+
+                for (int i = 0; i < groupIds.size(); i++) {
+                    assertEquals(groupIds.get(i), remove(tot, groupIds.get(i)));
+                    assertNull(get(tot, groupIds.get(i)));
+                    for (UUID remaining : groupIds.subList(i + 1, groupIds.size())) {
+                        assertEquals(remaining, get(tot, remaining));
+                    }
+                }
+                assertEquals(0, tot.size());
+            }
+        }
+
+        @Test
+        void clearedTableReusable() {
+            GroupTable<UUID> tot = new GroupTable<>();
+            List<UUID> groupIds = randomIds(new Random(3), 100);
+            groupIds.forEach(groupId -> put(tot, groupId, 0));
+
+            tot.clear();
+
+            assertEquals(0, tot.size());
+            assertNull(tot.pollEldest());
+            groupIds.forEach(groupId -> assertNull(get(tot, groupId)));
+            put(tot, groupIds.get(0), 0);
+            assertEquals(groupIds.get(0), tot.pollEldest());
+        }
+    }
+
+    @Nested
+    class records {
+
+        @Test
+        void eldestPolledInInsertionOrderAsRingGrows() {
+            GroupTable<UUID> tot = new GroupTable<>();
+            List<UUID> groupIds = randomIds(new Random(4), 1_000);
+            for (int i = 0; i < groupIds.size(); i++) {
+                put(tot, groupIds.get(i), i);
+            }
+
+            for (UUID groupId : groupIds) {
+                assertEquals(groupId, tot.pollEldest());
+            }
+            assertNull(tot.pollEldest());
+        }
+
+        @Test
+        void recordsOfRemovedGroupsPurged() {
+            GroupTable<UUID> tot = new GroupTable<>();
+            List<UUID> groupIds = randomIds(new Random(5), 10_000);
+            UUID eldest = groupIds.get(0);
+            put(tot, eldest, 0);
+
+            for (int i = 1; i < groupIds.size(); i++) {
+                put(tot, groupIds.get(i), i);
+                remove(tot, groupIds.get(i));
+            }
+
+            assertEquals(1, tot.size());
+            assertEquals(0, tot.eldestDeadlineNanos());
+            assertEquals(eldest, tot.pollEldest());
+            assertEquals(Long.MAX_VALUE, tot.eldestDeadlineNanos());
+        }
+
+        @Test
+        void groupReinsertedUnderSameIdBecomesYoungest() {
+            GroupTable<UUID> tot = new GroupTable<>();
+            List<UUID> groupIds = randomIds(new Random(6), 2);
+            UUID reinserted = groupIds.get(0);
+            UUID other = groupIds.get(1);
+            put(tot, reinserted, 1);
+            put(tot, other, 2);
+
+            remove(tot, reinserted);
+            put(tot, reinserted, 3);
+
+            assertNull(tot.pollExpired(1));
+            assertEquals(other, tot.pollExpired(2));
+            assertNull(tot.pollExpired(2));
+            assertEquals(3, tot.eldestDeadlineNanos());
+            assertEquals(reinserted, tot.pollExpired(3));
+            assertEquals(0, tot.size());
+        }
+    }
+
+    @Test
+    void matchesReferenceModelUnderRandomOperations() {
+        Random random = new Random(7);
+        List<UUID> groupIds = randomIds(random, 64);
+        Map<UUID, Long> model = new LinkedHashMap<>();
+        GroupTable<UUID> tot = new GroupTable<>();
+        long now = 0;
+
+        for (int step = 0; step < 100_000; step++) {
+            UUID groupId = groupIds.get(random.nextInt(groupIds.size()));
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    if (!model.containsKey(groupId)) {
+                        model.put(groupId, ++now);
+                        put(tot, groupId, now);
+                    }
+                    break;
+                case 2:
+                    assertEquals(model.remove(groupId) != null ? groupId : null, remove(tot, groupId));
+                    break;
+                default:
+                    UUID eldest =
+                            model.isEmpty() ? null : model.keySet().iterator().next();
+                    if (eldest != null) {
+                        model.remove(eldest);
+                    }
+                    assertEquals(eldest, tot.pollEldest());
+            }
+            assertEquals(model.size(), tot.size());
+            assertEquals(model.containsKey(groupId) ? groupId : null, get(tot, groupId));
+        }
+    }
+}
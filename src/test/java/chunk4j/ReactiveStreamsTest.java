@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+class ReactiveStreamsTest {
+
+    static final int CHUNK_BYTE_SIZE = 10;
+    static final int BLOB_BYTE_SIZE = 100;
+
+    final List<byte[]> blobs = new ArrayList<>();
+    final List<Chunk> chunks = new ArrayList<>();
+    final AtomicInteger pulledChunks = new AtomicInteger();
+
+    {
+        Random random = new Random(42);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        for (int i = 0; i < 5; i++) {
+            byte[] blob = new byte[BLOB_BYTE_SIZE];
+            random.nextBytes(blob);
+            blobs.add(blob);
+            chunks.addAll(chopper.chop(blob));
+        }
+    }
+
+    Iterator<Chunk> countingIterator() {
+        Iterator<Chunk> iterator = chunks.iterator();
+        return new Iterator<Chunk>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Chunk next() {
+                pulledChunks.incrementAndGet();
+                return iterator.next();
+            }
+        };
+    }
+
+    static class RecordingSubscriber<T> implements Subscriber<T> {
+        final List<T> items = new ArrayList<>();
+        Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @Nested
+    class chunkPublisher {
+
+        @Test
+        void chunksPulledOnDemand() {
+            RecordingSubscriber<Chunk> subscriber = new RecordingSubscriber<>();
+            ChunkPublisher.of(countingIterator()).subscribe(subscriber);
+            assertEquals(0, pulledChunks.get());
+
+            subscriber.subscription.request(3);
+
+            assertEquals(chunks.subList(0, 3), subscriber.items);
+            assertEquals(3, pulledChunks.get());
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertEquals(chunks, subscriber.items);
+            assertTrue(subscriber.completed);
+        }
+
+        @Test
+        void secondSubscriberRejected() {
+            ChunkPublisher tot = ChunkPublisher.of(countingIterator());
+            tot.subscribe(new RecordingSubscriber<>());
+            RecordingSubscriber<Chunk> second = new RecordingSubscriber<>();
+
+            tot.subscribe(second);
+
+            assertTrue(second.error instanceof IllegalStateException);
+        }
+
+        @Test
+        void nonPositiveRequestFails() {
+            RecordingSubscriber<Chunk> subscriber = new RecordingSubscriber<>();
+            ChunkPublisher.of(countingIterator()).subscribe(subscriber);
+
+            subscriber.subscription.request(0);
+
+            assertTrue(subscriber.error instanceof IllegalArgumentException);
+            assertTrue(subscriber.items.isEmpty());
+        }
+
+        @Test
+        void readAheadFailureSignaledNotThrown() {
+            Iterator<Chunk> failingAfterOne = new Iterator<Chunk>() {
+                boolean pulled;
+
+                @Override
+                public boolean hasNext() {
+                    if (pulled) {
+                        throw new IllegalStateException("stream failed");
+                    }
+                    return true;
+                }
+
+                @Override
+                public Chunk next() {
+                    pulled = true;
+                    return chunks.get(0);
+                }
+            };
+            RecordingSubscriber<Chunk> subscriber = new RecordingSubscriber<>();
+            ChunkPublisher.of(failingAfterOne).subscribe(subscriber);
+
+            assertDoesNotThrow(() -> subscriber.subscription.request(1));
+
+            assertEquals(chunks.subList(0, 1), subscriber.items);
+            assertTrue(subscriber.error instanceof IllegalStateException);
+        }
+    }
+
+    @Nested
+    class stitchingProcessor {
+        final StitchingProcessor tot =
+                new StitchingProcessor.Builder().prefetch(4).build();
+        final RecordingSubscriber<byte[]> subscriber = new RecordingSubscriber<>();
+
+        @Test
+        void chunksPulledOnlyAsBlobsDemanded() {
+            ChunkPublisher.of(countingIterator()).subscribe(tot);
+            tot.subscribe(subscriber);
+            assertEquals(0, pulledChunks.get());
+
+            subscriber.subscription.request(1);
+
+            assertEquals(1, subscriber.items.size());
+            assertArrayEquals(blobs.get(0), subscriber.items.get(0));
+            assertEquals(BLOB_BYTE_SIZE / CHUNK_BYTE_SIZE + 2, pulledChunks.get());
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertEquals(blobs.size(), subscriber.items.size());
+            for (int i = 0; i < blobs.size(); i++) {
+                assertArrayEquals(blobs.get(i), subscriber.items.get(i));
+            }
+            assertTrue(subscriber.completed);
+        }
+
+        @Test
+        void cancelStopsChunkIntake() {
+            ChunkPublisher.of(countingIterator()).subscribe(tot);
+            tot.subscribe(subscriber);
+            subscriber.subscription.request(1);
+
+            subscriber.subscription.cancel();
+            subscriber.subscription.request(1);
+
+            assertEquals(1, subscriber.items.size());
+            assertEquals(BLOB_BYTE_SIZE / CHUNK_BYTE_SIZE + 2, pulledChunks.get());
+        }
+
+        @Test
+        void stitchFailureSignaledDownstream() {
+            Chunk outOfBounds = chunks.get(0).toBuilder().index(-1).build();
+            ChunkPublisher.of(Collections.singletonList(outOfBounds).iterator()).subscribe(tot);
+            tot.subscribe(subscriber);
+
+            subscriber.subscription.request(1);
+
+            assertTrue(subscriber.error instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2021 Qingtian Wang
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package chunk4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ShardedChunkStitcherTest {
+
+    static final int CHUNK_BYTE_SIZE = 10;
+
+    final Map<UUID, byte[]> stitched = new ConcurrentHashMap<>();
+    final Map<UUID, String> stitchingThreads = new ConcurrentHashMap<>();
+
+    @Test
+    void chunksFromConcurrentProducersStitchedOncePerGroup() throws Exception {
+        int groupCount = 200;
+        CountDownLatch allStitched = new CountDownLatch(groupCount);
+        Map<UUID, byte[]> originals = new ConcurrentHashMap<>();
+        List<Chunk> chunks = new ArrayList<>();
+        Random random = new Random(42);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        for (int i = 0; i < groupCount; i++) {
+            byte[] blob = new byte[50 + random.nextInt(100)];
+            random.nextBytes(blob);
+            List<Chunk> groupChunks = chopper.chop(blob);
+            originals.put(groupChunks.get(0).getGroupId(), blob);
+            chunks.addAll(groupChunks);
+        }
+        Collections.shuffle(chunks, random);
+        ExecutorService producers = Executors.newFixedThreadPool(8);
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(4)
+                .listener((groupId, originalBytes) -> {
+                    assertNull(stitched.put(groupId, originalBytes));
+                    stitchingThreads.put(groupId, Thread.currentThread().getName());
+                    allStitched.countDown();
+                })
+                .build()) {
+
+            chunks.forEach(chunk -> producers.execute(() -> assertTrue(tot.stitch(chunk))));
+
+            assertTrue(
+                    allStitched.await(5, TimeUnit.SECONDS),
+                    () -> "remaining " + allStitched.getCount() + " of " + groupCount + " groups");
+        } finally {
+            producers.shutdown();
+        }
+        assertEquals(groupCount, stitched.size());
+        originals.forEach((groupId, blob) -> assertArrayEquals(blob, stitched.get(groupId)));
+        assertEquals(4, stitchingThreads.values().stream().distinct().count());
+    }
+
+    @Test
+    void expiredGroupNotCompleted() throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+        CountDownLatch otherStitched = new CountDownLatch(1);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        List<Chunk> expiring = chopper.chop(new byte[100]);
+        List<Chunk> other = chopper.chop(new byte[100]);
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(1)
+                .maxStitchTime(Duration.ofMillis(50))
+                .evictionListener((groupId, byExpiry) -> {
+                    if (byExpiry && groupId.equals(expiring.get(0).getGroupId())) {
+                        expired.countDown();
+                    }
+                })
+                .listener((groupId, originalBytes) -> {
+                    stitched.put(groupId, originalBytes);
+                    otherStitched.countDown();
+                })
+                .build()) {
+            expiring.subList(0, 5).forEach(tot::stitch);
+            assertTrue(expired.await(5, TimeUnit.SECONDS));
+
+            expiring.subList(5, expiring.size()).forEach(tot::stitch);
+            other.forEach(tot::stitch);
+
+            assertTrue(otherStitched.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Collections.singleton(other.get(0).getGroupId()), stitched.keySet());
+    }
+
+    @Test
+    void lateDuplicatesOfCompletedGroupDropped() throws Exception {
+        CountDownLatch otherStitched = new CountDownLatch(1);
+        List<UUID> stitchedGroupIds = Collections.synchronizedList(new ArrayList<>());
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        List<Chunk> completed = chopper.chop(new byte[100]);
+        List<Chunk> other = chopper.chop(new byte[100]);
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(1)
+                .tombstoneCapacity(16)
+                .listener((groupId, originalBytes) -> {
+                    stitchedGroupIds.add(groupId);
+                    if (groupId.equals(other.get(0).getGroupId())) {
+                        otherStitched.countDown();
+                    }
+                })
+                .build()) {
+            completed.forEach(tot::stitch);
+            completed.forEach(tot::stitch);
+            other.forEach(tot::stitch);
+
+            assertTrue(otherStitched.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Arrays.asList(completed.get(0).getGroupId(), other.get(0).getGroupId()), stitchedGroupIds);
+    }
+
+    @Test
+    void chunksRejectedOnceClosed() {
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(new byte[100]);
+        ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .listener((groupId, originalBytes) -> {})
+                .build();
+
+        tot.close();
+
+        assertThrows(IllegalStateException.class, () -> tot.stitch(chunks.get(0)));
+    }
+
+    @Test
+    void eldestGroupEvictedWhenShardFull() throws Exception {
+        CountDownLatch youngerStitched = new CountDownLatch(2);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        List<Chunk> eldest = chopper.chop(new byte[100]);
+        List<Chunk> younger = chopper.chop(new byte[100]);
+        List<Chunk> youngest = chopper.chop(new byte[100]);
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(1)
+                .maxStitchingGroups(2)
+                .listener((groupId, originalBytes) -> {
+                    stitched.put(groupId, originalBytes);
+                    youngerStitched.countDown();
+                })
+                .build()) {
+            tot.stitch(eldest.get(0));
+            tot.stitch(younger.get(0));
+            tot.stitch(youngest.get(0));
+
+            younger.subList(1, younger.size()).forEach(tot::stitch);
+            youngest.subList(1, youngest.size()).forEach(tot::stitch);
+
+            assertTrue(youngerStitched.await(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, stitched.size());
+        assertFalse(stitched.containsKey(eldest.get(0).getGroupId()));
+    }
+
+    @Test
+    void encodedChunksStitchedFromReusedBuffer() throws Exception {
+        CountDownLatch groupStitched = new CountDownLatch(1);
+        byte[] original = new byte[100];
+        new Random(42).nextBytes(original);
+        List<Chunk> chunks = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE).chop(original);
+        ByteBuffer buffer = ByteBuffer.allocate(ChunkCodec.encodedByteSize(chunks.get(0)));
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(2)
+                .listener((groupId, originalBytes) -> {
+                    stitched.put(groupId, originalBytes);
+                    groupStitched.countDown();
+                })
+                .build()) {
+
+            for (Chunk chunk : chunks) {
+                buffer.clear();
+                ChunkCodec.encode(chunk, buffer);
+                buffer.flip();
+                assertTrue(tot.stitch(buffer));
+                assertFalse(buffer.hasRemaining());
+                Arrays.fill(buffer.array(), (byte) 0);
+            }
+
+            assertTrue(groupStitched.await(5, TimeUnit.SECONDS));
+        }
+        assertArrayEquals(original, stitched.get(chunks.get(0).getGroupId()));
+    }
+
+    @Test
+    void encodedChunkLeftInBufferWhenInboxFull() throws Exception {
+        CountDownLatch listenerEntered = new CountDownLatch(1);
+        CountDownLatch listenerReleased = new CountDownLatch(1);
+        ChunkChopper chopper = ChunkChopper.ofByteSize(CHUNK_BYTE_SIZE);
+        List<Chunk> blocking = chopper.chop(new byte[CHUNK_BYTE_SIZE]);
+        List<Chunk> queued = chopper.chop(new byte[100]);
+        ByteBuffer rejected = ChunkCodec.encode(chopper.chop(new byte[100]).get(0));
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .shards(1)
+                .inboxCapacity(1)
+                .listener((groupId, originalBytes) -> {
+                    listenerEntered.countDown();
+                    try {
+                        listenerReleased.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                })
+                .build()) {
+            assertTrue(tot.stitch(blocking.get(0)));
+            assertTrue(listenerEntered.await(5, TimeUnit.SECONDS));
+            assertTrue(tot.stitch(queued.get(0)));
+
+            assertFalse(tot.stitch(rejected));
+
+            assertEquals(0, rejected.position());
+            listenerReleased.countDown();
+        }
+    }
+
+    @Test
+    void unsupportedChunkRejectedOnCallingThread() {
+        List<Chunk> chunks = new ChunkChopper.Builder()
+                .chunkByteCapacity(CHUNK_BYTE_SIZE)
+                .parityChunks(1)
+                .build()
+                .chop(new byte[100]);
+        try (ShardedChunkStitcher tot = new ShardedChunkStitcher.Builder()
+                .listener((groupId, originalBytes) -> {})
+                .build()) {
+
+            assertThrows(IllegalArgumentException.class, () -> tot.stitch(chunks.get(chunks.size() - 1)));
+        }
+    }
+}